@@ -0,0 +1,8 @@
+package thirdparty.paymentgateway;
+
+public interface BatchTicketPaymentService extends TicketPaymentService {
+
+    // Takes one payment per index; both arrays have the same length.
+    void makePayments(long[] accountIds, int[] totalAmountsToPay);
+
+}
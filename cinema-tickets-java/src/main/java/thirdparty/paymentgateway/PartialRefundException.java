@@ -0,0 +1,16 @@
+package thirdparty.paymentgateway;
+
+// A batch refund stopped part-way: the entries before getRefunded() were refunded and the rest were not
+public class PartialRefundException extends RuntimeException {
+
+    private final int refunded;
+
+    public PartialRefundException(int refunded, Throwable cause) {
+        super("Batch refund stopped after " + refunded + " refunds", cause);
+        this.refunded = refunded;
+    }
+
+    public int getRefunded() {
+        return refunded;
+    }
+}
@@ -0,0 +1,21 @@
+package thirdparty.paymentgateway;
+
+public interface RefundableTicketPaymentService extends TicketPaymentService {
+
+    // Refunds, or voids if not yet settled, a payment previously taken with makePayment.
+    void refundPayment(long accountId, int totalAmountToRefund);
+
+    // Refunds one payment per index; gateways that can settle several refunds in one call should override this.
+    // Throws PartialRefundException when it knows how many entries were refunded before failing; any other
+    // exception leaves the outcome of every entry unknown.
+    default void refundPayments(long[] accountIds, int[] totalAmountsToRefund) {
+        for (int i = 0; i < accountIds.length; i++) {
+            try {
+                refundPayment(accountIds[i], totalAmountsToRefund[i]);
+            } catch (RuntimeException e) {
+                throw new PartialRefundException(i, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,8 @@
+package thirdparty.seatbooking;
+
+public interface BatchSeatReservationService extends SeatReservationService {
+
+    // Makes one reservation per index; both arrays have the same length.
+    void reserveSeats(long[] accountIds, int[] totalSeatsToAllocate);
+
+}
@@ -0,0 +1,81 @@
+package uk.gov.dwp.uc.pairtest;
+
+import uk.gov.dwp.uc.pairtest.admission.AdmissionController;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Sheds excess purchase requests before they reach the wrapped {@link TicketService}, so a flood of
+ * requests from one account, valid or not, costs neither validation, logging nor gateway calls. Shed
+ * requests get the shared, stackless {@link PurchaseRejection#RATE_LIMITED} exception, so shedding
+ * does not allocate.
+ */
+public class AdmissionControlledTicketService implements TicketService {
+    private final TicketService ticketService;
+    private final AdmissionController admission;
+    private final PurchaseMetrics metrics;
+
+    public AdmissionControlledTicketService(TicketService ticketService, AdmissionController admission, PurchaseMetrics metrics) {
+        this.ticketService = Objects.requireNonNull(ticketService, "TicketService must not be null");
+        this.admission = Objects.requireNonNull(admission, "AdmissionController must not be null");
+        this.metrics = Objects.requireNonNull(metrics, "PurchaseMetrics must not be null");
+    }
+
+    @Override
+    public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException {
+        if (!admission.tryAdmit(accountId)) {
+            throw shed();
+        }
+        ticketService.purchaseTickets(accountId, ticketTypeRequests);
+    }
+
+    @Override
+    public void purchaseTickets(long accountId, int adults, int children, int infants) throws InvalidPurchaseException {
+        if (!admission.tryAdmit(accountId)) {
+            throw shed();
+        }
+        ticketService.purchaseTickets(accountId, adults, children, infants);
+    }
+
+    // Each order is admitted on its own; shed orders are reported as rejected in their place
+    @Override
+    public List<PurchaseResult> purchaseTicketsBatch(List<PurchaseOrder> orders) {
+        Objects.requireNonNull(orders, "Orders must not be null");
+        PurchaseResult[] results = new PurchaseResult[orders.size()];
+        List<PurchaseOrder> admitted = new ArrayList<>(orders.size());
+        for (int i = 0; i < results.length; i++) {
+            PurchaseOrder order = orders.get(i);
+            if (order != null && !admission.tryAdmit(order.getAccountId())) {
+                metrics.rejected(PurchaseRejection.RATE_LIMITED);
+                results[i] = PurchaseResult.rejected(order.getAccountId(), PurchaseRejection.RATE_LIMITED);
+            } else {
+                admitted.add(order);
+            }
+        }
+        if (admitted.size() == results.length) {
+            return ticketService.purchaseTicketsBatch(orders);
+        }
+        List<PurchaseResult> admittedResults = admitted.isEmpty() ? List.of() : ticketService.purchaseTicketsBatch(admitted);
+        int next = 0;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = admittedResults.get(next++);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private InvalidPurchaseException shed() {
+        metrics.rejected(PurchaseRejection.RATE_LIMITED);
+        return PurchaseRejection.RATE_LIMITED.exception();
+    }
+}
@@ -0,0 +1,15 @@
+package uk.gov.dwp.uc.pairtest;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncTicketService {
+
+    // Invalid requests complete normally with a rejected result; gateway failures and payment timeouts complete exceptionally.
+    // A reservation that times out completes normally with an OUTCOME_UNKNOWN result: the customer has paid and the purchase
+    // may still stand, so it must not be retried as if nothing was bought. Its settlement gives the final result.
+    CompletableFuture<PurchaseResult> purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests);
+
+}
@@ -0,0 +1,233 @@
+package uk.gov.dwp.uc.pairtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.CompensationOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.OutcomeUnknownException;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Non-blocking front end for {@link TicketServiceImpl}. Validation and pricing run on the caller's
+ * thread; the payment and reservation calls run on the supplied executor, each with its own timeout,
+ * so a slow gateway never holds the caller. A timed-out call is not abandoned: a payment that goes
+ * through after its timeout is refunded, and a reservation that outlives its timeout completes the
+ * caller's future with an OUTCOME_UNKNOWN result whose settlement reports whether the purchase stood
+ * or was refunded once the reservation returns. At most {@code maxInFlight} purchases may be waiting on
+ * the gateways at once; beyond that new purchases fail fast with {@link RejectedExecutionException}.
+ */
+public class AsyncTicketServiceImpl implements AsyncTicketService, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncTicketServiceImpl.class);
+    private final TicketServiceImpl ticketService;
+    private final TicketPaymentService paymentService;
+    private final SeatReservationService reservationService;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final PurchaseMetrics metrics;
+    private final long paymentTimeoutNanos;
+    private final long reservationTimeoutNanos;
+
+    public AsyncTicketServiceImpl(TicketServiceImpl ticketService, ExecutorService executor, int maxInFlight,
+                                  Duration paymentTimeout, Duration reservationTimeout) {
+        this.ticketService = Objects.requireNonNull(ticketService, "TicketService must not be null");
+        this.executor = Objects.requireNonNull(executor, "Executor must not be null");
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Maximum in-flight purchases must be positive");
+        }
+        this.inFlight = new Semaphore(maxInFlight);
+        this.paymentTimeoutNanos = Objects.requireNonNull(paymentTimeout, "Payment timeout must not be null").toNanos();
+        this.reservationTimeoutNanos = Objects.requireNonNull(reservationTimeout, "Reservation timeout must not be null").toNanos();
+        this.paymentService = ticketService.getPaymentService();
+        this.reservationService = ticketService.getReservationService();
+        this.metrics = ticketService.getMetrics();
+    }
+
+    // Virtual threads when the runtime has them (Java 21+), otherwise a cached pool of daemon threads
+    public static ExecutorService newGatewayExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.debug("Virtual threads unavailable, using a cached thread pool for gateway calls");
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "ticket-gateway");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public CompletableFuture<PurchaseResult> purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        PurchaseResult quote;
+        long started = System.nanoTime();
+        try {
+            quote = ticketService.quote(accountId, ticketTypeRequests);
+        } catch (InvalidPurchaseException e) {
+            metrics.rejected(e.getRejection());
+            return CompletableFuture.completedFuture(PurchaseResult.rejected(accountId, e));
+        }
+
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many purchases in flight"));
+        }
+        try {
+            ticketService.acquireAllowance(accountId, quote.getTotalTickets());
+        } catch (InvalidPurchaseException e) {
+            metrics.rejected(e.getRejection());
+            inFlight.release();
+            return CompletableFuture.completedFuture(PurchaseResult.rejected(accountId, e));
+        }
+
+        metrics.recordValidation(System.nanoTime() - started);
+        long account = accountId;
+        CompletableFuture<PurchaseResult> result;
+        try {
+            CompletableFuture<Void> payment = CompletableFuture
+                    .runAsync(() -> timed(() -> paymentService.makePayment(account, quote.getTotalAmountPaid()), true), executor);
+            result = payment.copy()
+                    .orTimeout(paymentTimeoutNanos, TimeUnit.NANOSECONDS)
+                    .whenComplete((paid, failure) -> {
+                        if (isTimeout(failure)) {
+                            // The payment call is still running; if it goes through, nothing will be reserved for it
+                            payment.thenRun(() -> refundLatePayment(quote));
+                        } else if (unwrap(failure) instanceof OutcomeUnknownException) {
+                            // The gateway could not say whether it charged, and nothing will be reserved for it
+                            ticketService.refundUncertainPayment(quote.getAccountId(), quote.getTotalAmountPaid(), (RuntimeException) unwrap(failure));
+                        }
+                    })
+                    .thenCompose(paid -> reserve(quote));
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            ticketService.releaseAllowance(account, quote.getTotalTickets());
+            return CompletableFuture.failedFuture(e);
+        }
+        // A timed-out gateway call keeps running on its thread; the permit is returned once the caller has an answer
+        return result.whenComplete((purchase, failure) -> {
+            inFlight.release();
+            if (purchase != null && purchase.isSuccess()) {
+                metrics.ticketsSold(purchase.getAdultTickets(), purchase.getChildTickets(), purchase.getInfantTickets());
+            }
+            if (failure != null) {
+                ticketService.releaseAllowance(account, quote.getTotalTickets());
+                LOGGER.warn("Ticket purchase failed for account ID: {}", account, failure);
+            }
+        });
+    }
+
+    // Reserve seats for a paid purchase. Seats cannot be given back, so a reservation that outlives its timeout
+    // is left to finish: the caller gets OUTCOME_UNKNOWN, and the purchase stands if the reservation succeeds and is refunded if not.
+    private CompletableFuture<PurchaseResult> reserve(PurchaseResult quote) {
+        CompletableFuture<Void> reservation;
+        try {
+            reservation = CompletableFuture.runAsync(
+                    () -> timed(() -> reservationService.reserveSeat(quote.getAccountId(), quote.getTotalSeatsReserved()), false), executor);
+        } catch (RejectedExecutionException e) {
+            reservation = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Void> underlying = reservation;
+        return reservation.copy()
+                .orTimeout(reservationTimeoutNanos, TimeUnit.NANOSECONDS)
+                .handle((reserved, failure) -> {
+                    if (failure == null) {
+                        return audited(quote);
+                    }
+                    if (isTimeout(failure)) {
+                        CompletableFuture<PurchaseResult> settlement = underlying.handle((lateReserved, lateFailure) -> settleLateReservation(quote, lateFailure));
+                        // The reservation may have returned in the meantime, and then its outcome is known
+                        if (settlement.isDone()) {
+                            return settlement.join();
+                        }
+                        settlement.thenAccept(late -> {
+                            if (late.isSuccess()) {
+                                metrics.ticketsSold(late.getAdultTickets(), late.getChildTickets(), late.getInfantTickets());
+                            }
+                        });
+                        return PurchaseResult.outcomeUnknown(quote, "Seat reservation did not respond within "
+                                + TimeUnit.NANOSECONDS.toMillis(reservationTimeoutNanos) + " ms", settlement);
+                    }
+                    return compensate(quote, failure);
+                });
+    }
+
+    private static boolean isTimeout(Throwable failure) {
+        return unwrap(failure) instanceof TimeoutException;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    // The caller was told the payment timed out, and nothing was reserved for it, so a payment that goes through later is refunded
+    private void refundLatePayment(PurchaseResult quote) {
+        if (ticketService.compensate(quote.getAccountId(), quote.getTotalAmountPaid()) == null) {
+            LOGGER.error("Payment of {} for account ID: {} went through after timing out and there is no compensation worker to refund it",
+                    quote.getTotalAmountPaid(), quote.getAccountId());
+        }
+    }
+
+    private PurchaseResult settleLateReservation(PurchaseResult quote, Throwable failure) {
+        if (failure == null) {
+            LOGGER.warn("Seats for account ID: {} were reserved after the reservation timed out; the purchase stands", quote.getAccountId());
+            return audited(quote);
+        }
+        Throwable cause = unwrap(failure);
+        ticketService.releaseAllowance(quote.getAccountId(), quote.getTotalTickets());
+        CompletableFuture<CompensationOutcome> refund = ticketService.compensate(quote.getAccountId(), quote.getTotalAmountPaid());
+        if (refund == null) {
+            LOGGER.error("Seat reservation for account ID: {} failed after timing out and there is no compensation worker to refund {}",
+                    quote.getAccountId(), quote.getTotalAmountPaid(), cause);
+        }
+        return PurchaseResult.reservationFailed(quote, cause.getMessage() != null ? cause.getMessage() : cause.toString(), refund);
+    }
+
+    private PurchaseResult audited(PurchaseResult purchase) {
+        ticketService.audit(purchase);
+        return purchase;
+    }
+
+    // Time a gateway call on the executor thread, so a call that outlives its timeout is still recorded in full
+    private void timed(Runnable gatewayCall, boolean payment) {
+        long started = System.nanoTime();
+        try {
+            gatewayCall.run();
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            if (payment) {
+                metrics.recordPayment(elapsed);
+            } else {
+                metrics.recordReservation(elapsed);
+            }
+        }
+    }
+
+    // Payment was taken but the reservation failed; refunded when a compensation worker is configured
+    private PurchaseResult compensate(PurchaseResult quote, Throwable failure) {
+        Throwable cause = unwrap(failure);
+        CompletableFuture<CompensationOutcome> refund = ticketService.compensate(quote.getAccountId(), quote.getTotalAmountPaid());
+        if (refund == null) {
+            throw failure instanceof CompletionException ? (CompletionException) failure : new CompletionException(failure);
+        }
+        ticketService.releaseAllowance(quote.getAccountId(), quote.getTotalTickets());
+        return PurchaseResult.reservationFailed(quote, cause.getMessage() != null ? cause.getMessage() : cause.toString(), refund);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -34,7 +34,7 @@ public class DefaultConfigurationLoader implements ConfigurationLoader {
         }
     }
 
-    private Properties loadPropertiesFromStream(InputStream input) throws IOException {
+    protected Properties loadPropertiesFromStream(InputStream input) throws IOException {
         Properties properties = new Properties();
         try {
             properties.load(input);
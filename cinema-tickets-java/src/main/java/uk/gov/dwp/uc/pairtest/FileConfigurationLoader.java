@@ -0,0 +1,30 @@
+package uk.gov.dwp.uc.pairtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Properties;
+
+// Loads prices from a file on disk rather than the classpath, so they can be edited and reloaded at runtime
+public class FileConfigurationLoader extends DefaultConfigurationLoader {
+    private final Path pricesFile;
+
+    public FileConfigurationLoader(Path pricesFile) {
+        this.pricesFile = Objects.requireNonNull(pricesFile, "Prices file must not be null");
+    }
+
+    @Override
+    public Properties loadProperties() {
+        try (InputStream input = Files.newInputStream(pricesFile)) {
+            return loadPropertiesFromStream(input);
+        } catch (IOException e) {
+            throw new TicketServiceImpl.ConfigurationException("Failed to load ticket prices from " + pricesFile, e);
+        }
+    }
+
+    public Path getPricesFile() {
+        return pricesFile;
+    }
+}
@@ -0,0 +1,308 @@
+package uk.gov.dwp.uc.pairtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.OutcomeUnknownException;
+import uk.gov.dwp.uc.pairtest.exception.SeatsUnavailableException;
+import uk.gov.dwp.uc.pairtest.inventory.SeatAllocation;
+import uk.gov.dwp.uc.pairtest.inventory.ShowingSeatMap;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Routes purchases for a showing to the single shard that owns it. Each shard is one event-loop thread
+ * holding its showings' seat maps in a plain map that no other thread touches, so seat selection
+ * never contends across shards and shard state needs no locks; the only cross-thread hand-off is the
+ * shard's task queue. Shards are chosen by a pluggable {@link ShowingPartitioner}.
+ * <p>
+ * Validation, pricing and the account allowance run on the caller's thread through
+ * {@link TicketServiceImpl}. The owning shard then holds the seats, and payment is taken on the payment
+ * executor, off the shard's thread, so a slow gateway never stalls a shard's loop. If payment fails the
+ * seats go back to the shard, so a customer is never charged for seats that are gone. The ticket
+ * service's own seat reservation service is not used.
+ */
+public class ShardedTicketService implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedTicketService.class);
+    private final TicketServiceImpl ticketService;
+    private final TicketPaymentService paymentService;
+    private final PurchaseMetrics metrics;
+    private final ShowingPartitioner partitioner;
+    private final Shard[] shards;
+    private final ExecutorService paymentExecutor;
+    // Whether close shuts the payment executor down, which it does only when it created the executor
+    private final boolean ownsPaymentExecutor;
+
+    public ShardedTicketService(TicketServiceImpl ticketService, int shardCount, ShowingPartitioner partitioner, int maxQueuedPerShard) {
+        this(ticketService, shardCount, partitioner, maxQueuedPerShard, AsyncTicketServiceImpl.newGatewayExecutor(), true);
+    }
+
+    public ShardedTicketService(TicketServiceImpl ticketService, int shardCount, ShowingPartitioner partitioner, int maxQueuedPerShard,
+                                ExecutorService paymentExecutor) {
+        this(ticketService, shardCount, partitioner, maxQueuedPerShard, Objects.requireNonNull(paymentExecutor, "Executor must not be null"), false);
+    }
+
+    private ShardedTicketService(TicketServiceImpl ticketService, int shardCount, ShowingPartitioner partitioner, int maxQueuedPerShard,
+                                 ExecutorService paymentExecutor, boolean ownsPaymentExecutor) {
+        this.ticketService = Objects.requireNonNull(ticketService, "TicketService must not be null");
+        this.partitioner = Objects.requireNonNull(partitioner, "ShowingPartitioner must not be null");
+        if (shardCount <= 0 || maxQueuedPerShard <= 0) {
+            throw new IllegalArgumentException("Shard count and queue size must be positive");
+        }
+        this.paymentService = ticketService.getPaymentService();
+        this.metrics = ticketService.getMetrics();
+        this.paymentExecutor = paymentExecutor;
+        this.ownsPaymentExecutor = ownsPaymentExecutor;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard("ticket-shard-" + i, maxQueuedPerShard);
+        }
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public int shardFor(long showingId) {
+        int shard = partitioner.shardFor(showingId, shards.length);
+        if (shard < 0 || shard >= shards.length) {
+            throw new IllegalStateException("Partitioner chose shard " + shard + " of " + shards.length + " for showing " + showingId);
+        }
+        return shard;
+    }
+
+    public CompletableFuture<Void> addShowing(long showingId, int rows, int seatsPerRow) {
+        Shard shard = shards[shardFor(showingId)];
+        CompletableFuture<Void> added = new CompletableFuture<>();
+        shard.submit(added, () -> {
+            if (shard.showings.containsKey(showingId)) {
+                throw new IllegalArgumentException("Showing already exists: " + showingId);
+            }
+            shard.showings.put(showingId, new ShowingSeatMap(showingId, rows, seatsPerRow));
+            added.complete(null);
+        });
+        return added;
+    }
+
+    public CompletableFuture<Integer> availableSeats(long showingId) {
+        Shard shard = shards[shardFor(showingId)];
+        CompletableFuture<Integer> available = new CompletableFuture<>();
+        shard.submit(available, () -> available.complete(shard.showing(showingId).availableSeats()));
+        return available;
+    }
+
+    /**
+     * Buys tickets for a showing. Invalid orders complete with a rejected result; an unknown showing or
+     * a sold-out one completes exceptionally, as does a failed payment, with its seats given back and a
+     * payment that may have been taken sent for a refund.
+     *
+     * @throws IllegalStateException if the partitioner chooses a shard that does not exist
+     */
+    public CompletableFuture<PurchaseResult> purchaseTickets(long showingId, Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        PurchaseResult quote;
+        long started = System.nanoTime();
+        try {
+            quote = ticketService.quote(accountId, ticketTypeRequests);
+        } catch (InvalidPurchaseException e) {
+            metrics.rejected(e.getRejection());
+            return CompletableFuture.completedFuture(PurchaseResult.rejected(accountId, e));
+        }
+        // Resolved before the allowance is taken, so a failing partitioner has nothing to give back
+        Shard shard = shards[shardFor(showingId)];
+        try {
+            ticketService.acquireAllowance(accountId, quote.getTotalTickets());
+        } catch (InvalidPurchaseException e) {
+            metrics.rejected(e.getRejection());
+            return CompletableFuture.completedFuture(PurchaseResult.rejected(accountId, e));
+        }
+        metrics.recordValidation(System.nanoTime() - started);
+
+        CompletableFuture<PurchaseResult> result = new CompletableFuture<>();
+        try {
+            shard.submit(result, () -> pay(shard, showingId, quote, shard.hold(showingId, quote), result));
+        } catch (RejectedExecutionException e) {
+            ticketService.releaseAllowance(accountId, quote.getTotalTickets());
+            throw e;
+        }
+        return result.whenComplete((purchase, failure) -> {
+            if (failure != null) {
+                ticketService.releaseAllowance(accountId, quote.getTotalTickets());
+            }
+        });
+    }
+
+    // Runs on the shard's thread once the seats are held; the payment itself goes to the payment executor
+    private void pay(Shard shard, long showingId, PurchaseResult quote, SeatAllocation seats, CompletableFuture<PurchaseResult> result) {
+        try {
+            paymentExecutor.execute(() -> {
+                long paying = System.nanoTime();
+                try {
+                    paymentService.makePayment(quote.getAccountId(), quote.getTotalAmountPaid());
+                } catch (RuntimeException e) {
+                    metrics.recordPayment(System.nanoTime() - paying);
+                    if (e instanceof OutcomeUnknownException) {
+                        ticketService.refundUncertainPayment(quote.getAccountId(), quote.getTotalAmountPaid(), e);
+                    }
+                    returnSeats(shard, showingId, seats, quote, result, e);
+                    return;
+                }
+                metrics.recordPayment(System.nanoTime() - paying);
+                metrics.ticketsSold(quote.getAdultTickets(), quote.getChildTickets(), quote.getInfantTickets());
+                ticketService.audit(quote);
+                result.complete(quote.withSeatNumbers(seats.getSeats()));
+            });
+        } catch (RejectedExecutionException e) {
+            // Still on the shard's thread, so the seats can go straight back
+            shard.showings.get(showingId).release(seats);
+            result.completeExceptionally(e);
+        }
+    }
+
+    // Hands the seats of a failed payment back to their shard, failing the purchase once they are free again
+    private void returnSeats(Shard shard, long showingId, SeatAllocation seats, PurchaseResult quote, CompletableFuture<PurchaseResult> result,
+                             RuntimeException failure) {
+        try {
+            shard.submit(result, () -> {
+                shard.showings.get(showingId).release(seats);
+                LOGGER.warn("Payment failed for account ID: {}, released {} seats of showing {}", quote.getAccountId(), seats.size(), showingId);
+                result.completeExceptionally(failure);
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Payment failed for account ID: {} while shutting down; {} seats of showing {} stay held",
+                    quote.getAccountId(), seats.size(), showingId);
+            result.completeExceptionally(failure);
+        }
+    }
+
+    // Frees seats from an earlier purchase, e.g. after a refund; the payment itself is not touched
+    public CompletableFuture<Void> releaseSeats(long showingId, int[] seatNumbers) {
+        Shard shard = shards[shardFor(showingId)];
+        CompletableFuture<Void> released = new CompletableFuture<>();
+        shard.submit(released, () -> {
+            shard.showing(showingId).release(seatNumbers);
+            released.complete(null);
+        });
+        return released;
+    }
+
+    // Stops accepting work and waits for every shard to finish the tasks already queued
+    @Override
+    public void close() {
+        if (ownsPaymentExecutor) {
+            paymentExecutor.shutdown();
+        }
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // A task queued while the loop was exiting still runs; the shard's thread has stopped, so this thread is its only writer
+            Runnable task;
+            while ((task = shard.tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private final class Shard {
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final int maxQueued;
+        private final Thread thread;
+        // Only read and written by this shard's thread
+        private final Map<Long, ShowingSeatMap> showings = new HashMap<>();
+        private volatile boolean sleeping;
+        private volatile boolean running = true;
+
+        private Shard(String name, int maxQueued) {
+            this.maxQueued = maxQueued;
+            this.thread = new Thread(this::runLoop, name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        // Queues a task; a task that throws completes the given future exceptionally
+        private void submit(CompletableFuture<?> completion, Runnable task) {
+            if (!running) {
+                throw new RejectedExecutionException("Sharded ticket service is closed");
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                throw new RejectedExecutionException("Too many purchases queued for " + thread.getName());
+            }
+            Runnable queuedTask = () -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    completion.completeExceptionally(e);
+                }
+            };
+            tasks.offer(queuedTask);
+            // Closed while queueing: close may already have drained the queue for the last time
+            if (!running && tasks.remove(queuedTask)) {
+                queued.decrementAndGet();
+                throw new RejectedExecutionException("Sharded ticket service is closed");
+            }
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void runLoop() {
+            while (true) {
+                Runnable task = tasks.poll();
+                if (task != null) {
+                    queued.decrementAndGet();
+                    task.run();
+                    continue;
+                }
+                if (!running) {
+                    return;
+                }
+                // Announce the park before re-checking, so a producer that missed the flag has already queued its task
+                sleeping = true;
+                if (tasks.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+            }
+        }
+
+        private ShowingSeatMap showing(long showingId) {
+            ShowingSeatMap seatMap = showings.get(showingId);
+            if (seatMap == null) {
+                throw new IllegalArgumentException("Unknown showing: " + showingId);
+            }
+            return seatMap;
+        }
+
+        // Takes the seats out of the showing; payment is left to the caller
+        private SeatAllocation hold(long showingId, PurchaseResult quote) {
+            long started = System.nanoTime();
+            SeatAllocation seats = showing(showingId).reserveBestAvailable(quote.getTotalSeatsReserved());
+            metrics.recordReservation(System.nanoTime() - started);
+            if (seats == null) {
+                throw new SeatsUnavailableException("Not enough seats available for showing " + showingId + ": requested " + quote.getTotalSeatsReserved());
+            }
+            return seats;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package uk.gov.dwp.uc.pairtest;
+
+/**
+ * Decides which shard of a {@link ShardedTicketService} owns a showing. The answer for a showing must
+ * never change while the service is running, since the owning shard is the only one that holds its
+ * seats.
+ */
+@FunctionalInterface
+public interface ShowingPartitioner {
+
+    // Index of the owning shard, between 0 and shardCount - 1
+    int shardFor(long showingId, int shardCount);
+
+    // Spreads showing ids with a multiplicative hash, so sequential ids land on different shards
+    static ShowingPartitioner hashing() {
+        return (showingId, shardCount) -> (int) (((showingId * 0x9E3779B97F4A7C15L) >>> 32) % shardCount);
+    }
+}
@@ -1,10 +1,76 @@
 package uk.gov.dwp.uc.pairtest;
 
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.exception.ReservationFailedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 public interface TicketService {
 
     void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException;
 
+    // Primitive entry point for the hot path: one count per ticket type, zero meaning none of that type.
+    // Neither valid nor rejected purchases allocate in TicketServiceImpl; rejections throw a shared, stackless
+    // exception. The default builds the ticket requests and delegates to purchaseTickets(Long, TicketTypeRequest...).
+    default void purchaseTickets(long accountId, int adults, int children, int infants) throws InvalidPurchaseException {
+        List<TicketTypeRequest> requests = new ArrayList<>(3);
+        if (adults != 0) {
+            requests.add(new TicketTypeRequest(TicketTypeRequest.Type.ADULT, adults));
+        }
+        if (children != 0) {
+            requests.add(new TicketTypeRequest(TicketTypeRequest.Type.CHILD, children));
+        }
+        if (infants != 0) {
+            requests.add(new TicketTypeRequest(TicketTypeRequest.Type.INFANT, infants));
+        }
+        purchaseTickets(accountId, requests.toArray(new TicketTypeRequest[0]));
+    }
+
+    // Returns one result per order, in order; invalid orders are reported rather than thrown, and an order whose
+    // purchase fails is reported as PAYMENT_FAILED without stopping the rest of the batch.
+    // The default buys each order on its own through purchaseTickets. It cannot see what was charged,
+    // so successful results report nothing paid, and it rejects orders carrying a promotion code as unsupported.
+    default List<PurchaseResult> purchaseTicketsBatch(List<PurchaseOrder> orders) {
+        Objects.requireNonNull(orders, "Orders must not be null");
+        List<PurchaseResult> results = new ArrayList<>(orders.size());
+        for (PurchaseOrder order : orders) {
+            if (order == null) {
+                results.add(PurchaseResult.rejected(null, PurchaseRejection.NULL_ORDER));
+                continue;
+            }
+            if (order.getPromoCode() != null) {
+                results.add(PurchaseResult.rejected(order.getAccountId(), PurchaseRejection.PROMO_CODE_UNSUPPORTED));
+                continue;
+            }
+            int[] counts = new int[TicketTypeRequest.Type.values().length];
+            if (order.getTicketTypeRequests() != null) {
+                for (TicketTypeRequest request : order.getTicketTypeRequests()) {
+                    if (request != null && request.getTicketType() != null) {
+                        counts[request.getTicketType().ordinal()] += request.getNoOfTickets();
+                    }
+                }
+            }
+            int adults = counts[TicketTypeRequest.Type.ADULT.ordinal()];
+            int children = counts[TicketTypeRequest.Type.CHILD.ordinal()];
+            PurchaseResult ordered = PurchaseResult.success(order.getAccountId(), adults, children, counts[TicketTypeRequest.Type.INFANT.ordinal()], 0, adults + children);
+            try {
+                purchaseTickets(order.getAccountId(), order.getTicketTypeRequests());
+                results.add(ordered);
+            } catch (InvalidPurchaseException e) {
+                results.add(PurchaseResult.rejected(order.getAccountId(), e));
+            } catch (ReservationFailedException e) {
+                results.add(e.getResult());
+            } catch (RuntimeException e) {
+                results.add(PurchaseResult.paymentFailed(ordered, e.getMessage() != null ? e.getMessage() : e.toString()));
+            }
+        }
+        return results;
+    }
+
 }
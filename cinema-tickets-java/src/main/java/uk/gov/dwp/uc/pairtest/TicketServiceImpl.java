@@ -2,52 +2,141 @@ package uk.gov.dwp.uc.pairtest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import thirdparty.paymentgateway.BatchTicketPaymentService;
 import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.BatchSeatReservationService;
 import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.audit.PurchaseAuditLog;
+import uk.gov.dwp.uc.pairtest.compensation.CompensationWorker;
+import uk.gov.dwp.uc.pairtest.domain.CompensationOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.HoldExpiredException;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.OutcomeUnknownException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.exception.ReservationFailedException;
+import uk.gov.dwp.uc.pairtest.history.PurchaseHistory;
+import uk.gov.dwp.uc.pairtest.idempotency.IdempotencyCache;
+import uk.gov.dwp.uc.pairtest.inventory.SeatHold;
+import uk.gov.dwp.uc.pairtest.inventory.SeatHoldService;
+import uk.gov.dwp.uc.pairtest.limits.AccountPurchaseLedger;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.persistence.PersistentSeatInventory;
+import uk.gov.dwp.uc.pairtest.pricing.PricingClock;
+import uk.gov.dwp.uc.pairtest.pricing.PricingRules;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+import uk.gov.dwp.uc.pairtest.pricing.TicketCombinations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
-import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class TicketServiceImpl implements TicketService {
     private static final Logger LOGGER = LoggerFactory.getLogger(TicketServiceImpl.class);
     private final TicketPaymentService paymentService;
     private final SeatReservationService reservationService;
-    private static final int MAX_TICKETS = 25;
-    private static final String ERR_NO_TICKETS = "No ticket requests provided";
-    private static final String ERR_INVALID_ACCOUNT = "Invalid account ID";
-    private final int adultTicketPrice;
-    private final int childTicketPrice;
+    private final ReloadablePriceTable priceTable;
+    private final PricingClock pricingClock;
+    // Null when purchases are not limited per account
+    private final AccountPurchaseLedger purchaseLedger;
+    // Null when idempotency keys are ignored
+    private final IdempotencyCache idempotencyCache;
+    // Null when a failed reservation simply fails the purchase, leaving any refund to the caller
+    private final CompensationWorker compensationWorker;
+    private final PurchaseMetrics metrics;
+    // Null when purchases are only logged
+    private final PurchaseAuditLog auditLog;
+    // Null when completed purchases are not journaled for recovery
+    private final PersistentSeatInventory journal;
+    // Null when completed purchases are not kept for queries
+    private final PurchaseHistory history;
     public TicketServiceImpl(TicketPaymentService paymentService, SeatReservationService reservationService, DefaultConfigurationLoader configLoader) {
+        this(paymentService, reservationService, new ReloadablePriceTable(Objects.requireNonNull(configLoader, "ConfigurationLoader must not be null")));
+    }
+    // Share a price table that is reloaded elsewhere, e.g. by a PriceFileWatcher
+    public TicketServiceImpl(TicketPaymentService paymentService, SeatReservationService reservationService, ReloadablePriceTable priceTable) {
+        this(paymentService, reservationService, priceTable, PricingClock.systemDefault());
+    }
+    // The pricing clock decides which time-of-day pricing rules apply
+    public TicketServiceImpl(TicketPaymentService paymentService, SeatReservationService reservationService, ReloadablePriceTable priceTable, PricingClock pricingClock) {
+        this(paymentService, reservationService, priceTable, pricingClock, null, null, null, PurchaseMetrics.NOOP, null, null, null);
+    }
+    private TicketServiceImpl(TicketPaymentService paymentService, SeatReservationService reservationService, ReloadablePriceTable priceTable, PricingClock pricingClock,
+                              AccountPurchaseLedger purchaseLedger, IdempotencyCache idempotencyCache, CompensationWorker compensationWorker,
+                              PurchaseMetrics metrics, PurchaseAuditLog auditLog, PersistentSeatInventory journal, PurchaseHistory history) {
         this.paymentService = Objects.requireNonNull(paymentService, "PaymentService must not be null");
         this.reservationService = Objects.requireNonNull(reservationService, "ReservationService must not be null");
-
-        // Use the configLoader as a local variable
-        Objects.requireNonNull(configLoader, "ConfigurationLoader must not be null");
-        Properties properties = configLoader.loadProperties();
-        this.adultTicketPrice = Integer.parseInt(properties.getProperty("adult.ticket.price", "25"));
-        this.childTicketPrice = Integer.parseInt(properties.getProperty("child.ticket.price", "15"));
-
-        if (adultTicketPrice <= 0 || childTicketPrice <= 0) {
-            throw new ConfigurationException("Ticket prices must be positive numbers.");
-        }
+        this.priceTable = Objects.requireNonNull(priceTable, "PriceTable must not be null");
+        this.pricingClock = Objects.requireNonNull(pricingClock, "PricingClock must not be null");
+        this.purchaseLedger = purchaseLedger;
+        this.idempotencyCache = idempotencyCache;
+        this.compensationWorker = compensationWorker;
+        this.metrics = metrics;
+        this.auditLog = auditLog;
+        this.journal = journal;
+        this.history = history;
+    }
+    // A copy of this service that also enforces the ledger's per-account ticket allowance
+    public TicketServiceImpl withAccountLimits(AccountPurchaseLedger purchaseLedger) {
+        return new TicketServiceImpl(paymentService, reservationService, priceTable, pricingClock,
+                Objects.requireNonNull(purchaseLedger, "PurchaseLedger must not be null"), idempotencyCache, compensationWorker, metrics, auditLog, journal, history);
+    }
+    // A copy of this service that replays the outcome of orders whose idempotency key it has already seen
+    public TicketServiceImpl withIdempotency(IdempotencyCache idempotencyCache) {
+        return new TicketServiceImpl(paymentService, reservationService, priceTable, pricingClock, purchaseLedger,
+                Objects.requireNonNull(idempotencyCache, "IdempotencyCache must not be null"), compensationWorker, metrics, auditLog, journal, history);
+    }
+    // A copy of this service that refunds the payment, through the worker, when seats cannot be reserved after paying
+    public TicketServiceImpl withCompensation(CompensationWorker compensationWorker) {
+        return new TicketServiceImpl(paymentService, reservationService, priceTable, pricingClock, purchaseLedger, idempotencyCache,
+                Objects.requireNonNull(compensationWorker, "CompensationWorker must not be null"), metrics, auditLog, journal, history);
+    }
+    // A copy of this service that reports rejections, tickets sold and gateway latencies to the metrics
+    public TicketServiceImpl withMetrics(PurchaseMetrics metrics) {
+        return new TicketServiceImpl(paymentService, reservationService, priceTable, pricingClock, purchaseLedger, idempotencyCache,
+                compensationWorker, Objects.requireNonNull(metrics, "PurchaseMetrics must not be null"), auditLog, journal, history);
+    }
+    // A copy of this service that records completed purchases in the audit log instead of an INFO line per purchase
+    public TicketServiceImpl withAuditLog(PurchaseAuditLog auditLog) {
+        return new TicketServiceImpl(paymentService, reservationService, priceTable, pricingClock, purchaseLedger, idempotencyCache,
+                compensationWorker, metrics, Objects.requireNonNull(auditLog, "PurchaseAuditLog must not be null"), journal, history);
+    }
+    // A copy of this service that journals completed purchases alongside the seat inventory, so order totals survive a restart
+    public TicketServiceImpl withJournal(PersistentSeatInventory journal) {
+        return new TicketServiceImpl(paymentService, reservationService, priceTable, pricingClock, purchaseLedger, idempotencyCache,
+                compensationWorker, metrics, auditLog, Objects.requireNonNull(journal, "PersistentSeatInventory must not be null"), history);
+    }
+    // A copy of this service that keeps completed purchases in the history for per-account and reporting queries
+    public TicketServiceImpl withHistory(PurchaseHistory history) {
+        return new TicketServiceImpl(paymentService, reservationService, priceTable, pricingClock, purchaseLedger, idempotencyCache,
+                compensationWorker, metrics, auditLog, journal, Objects.requireNonNull(history, "PurchaseHistory must not be null"));
     }
     private void validateAccountId(Long accountId) {
         if (accountId == null || accountId <= 0) {
-            throw new InvalidPurchaseException(ERR_INVALID_ACCOUNT);
+            throw PurchaseRejection.INVALID_ACCOUNT.exception();
         }
     }
-    // Validate that at least one adult ticket is purchased when child or infant tickets are present
+    // Apply the total and adult-required rules to per-type totals; returns null when the combination is valid
+    private static PurchaseRejection checkTicketCounts(int totalAdultTickets, int totalChildTickets, int totalInfantTickets) {
+        return TicketCombinations.rejection(TicketCombinations.indexOf(totalAdultTickets, totalChildTickets, totalInfantTickets));
+    }
     private void validateTicketCounts(int totalAdultTickets, int totalChildTickets, int totalInfantTickets) {
-        if (totalAdultTickets == 0 && (totalChildTickets > 0 || totalInfantTickets > 0)) {
+        PurchaseRejection rejection = checkTicketCounts(totalAdultTickets, totalChildTickets, totalInfantTickets);
+        if (rejection == PurchaseRejection.ADULT_REQUIRED && LOGGER.isWarnEnabled()) {
             LOGGER.warn("Invalid ticket configuration: {} child and {} infant tickets without an adult ticket", totalChildTickets, totalInfantTickets);
-            throw new InvalidPurchaseException("Child and Infant tickets require an accompanying Adult ticket purchase.");
+        }
+        if (rejection != null) {
+            throw rejection.exception();
         }
     }
-    @Override
-    public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException {
-        LOGGER.debug("Processing ticket requests: {}", (Object[]) ticketTypeRequests);
+    // Validate the account and every request, returning the ticket totals per type
+    private TicketCounts countTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) {
         int totalAdultTickets = 0;
         int totalChildTickets = 0;
         int totalInfantTickets = 0;
@@ -55,21 +144,21 @@ public class TicketServiceImpl implements TicketService {
         validateAccountId(accountId);
 
         if (ticketTypeRequests == null || ticketTypeRequests.length == 0) {
-            throw new InvalidPurchaseException(ERR_NO_TICKETS);
+            throw PurchaseRejection.NO_TICKETS.exception();
         }
 
         // Iterate over ticket requests
         for (TicketTypeRequest request : ticketTypeRequests) {
             if (request == null) {
-                throw new InvalidPurchaseException("Null ticket request encountered");
+                throw PurchaseRejection.NULL_REQUEST.exception();
             }
             if (request.getTicketType() == null) {
                 LOGGER.warn("Unexpected ticket type encountered: null");
-                throw new InvalidPurchaseException("Unexpected ticket type encountered: null");
+                throw PurchaseRejection.NULL_TICKET_TYPE.exception();
             }
             // Validate that no ticket count is negative or zero
             if (request.getNoOfTickets() <= 0) {
-                throw new InvalidPurchaseException("Invalid ticket count: Ticket count must be a positive number.");
+                throw PurchaseRejection.INVALID_TICKET_COUNT.exception();
             }
             // Using enhanced switch for readability
             switch (request.getTicketType()) {
@@ -80,27 +169,517 @@ public class TicketServiceImpl implements TicketService {
             }
         }
 
-        int totalTickets = totalAdultTickets + totalChildTickets + totalInfantTickets;
-
-        if (totalTickets == 0 || totalTickets > MAX_TICKETS) {
-            throw new InvalidPurchaseException("Invalid ticket purchase: You must buy at least 1 ticket, and a maximum of 25 tickets can be purchased at a time.");
-        }
         // Validate the total ticket counts against the business rules
         validateTicketCounts(totalAdultTickets, totalChildTickets, totalInfantTickets);
 
-        // Calculate the total payment amount based on ticket types and prices
-        int totalAmountToPay = (totalAdultTickets * adultTicketPrice) + (totalChildTickets * childTicketPrice);
+        return new TicketCounts(totalAdultTickets, totalChildTickets, totalInfantTickets);
+    }
+    // Calculate the total payment amount from a single snapshot of the current prices and pricing rules
+    private int calculateTotalAmount(int totalAdultTickets, int totalChildTickets, int totalInfantTickets, String promoCode) {
+        return calculateTotalAmount(TicketCombinations.indexOf(totalAdultTickets, totalChildTickets, totalInfantTickets), promoCode);
+    }
+    // The combination must be valid, i.e. have passed checkTicketCounts
+    private int calculateTotalAmount(int combination, String promoCode) {
+        PricingRules rules = priceTable.current().rules();
+        int promoIndex = rules.promoIndex(promoCode);
+        if (promoIndex == PricingRules.UNKNOWN_PROMO) {
+            throw PurchaseRejection.UNKNOWN_PROMO_CODE.exception();
+        }
+        return rules.combinationPrice(combination, pricingClock.currentBucket(), promoIndex);
+    }
+    // Validate and price an order without touching the gateways; the result describes what would be paid and reserved
+    PurchaseResult quote(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        return quote(accountId, null, ticketTypeRequests);
+    }
+    PurchaseResult quote(Long accountId, String promoCode, TicketTypeRequest... ticketTypeRequests) {
+        TicketCounts counts = countTickets(accountId, ticketTypeRequests);
+        int totalAmountToPay = calculateTotalAmount(counts.adults, counts.children, counts.infants, promoCode);
+        return PurchaseResult.success(accountId, counts.adults, counts.children, counts.infants, totalAmountToPay, counts.seatsToReserve());
+    }
+    // Take the tickets from the account's allowance; a no-op when purchases are not limited per account
+    void acquireAllowance(long accountId, int totalTickets) {
+        if (purchaseLedger != null && !purchaseLedger.tryAcquire(accountId, totalTickets)) {
+            throw PurchaseRejection.ACCOUNT_LIMIT_EXCEEDED.exception();
+        }
+    }
+    // Give back the allowance of a purchase that did not complete
+    void releaseAllowance(long accountId, int totalTickets) {
+        if (purchaseLedger != null) {
+            purchaseLedger.release(accountId, totalTickets);
+        }
+    }
+    // Queue a refund for a payment whose seats could not be reserved; null when this service does not compensate
+    CompletableFuture<CompensationOutcome> compensate(long accountId, int totalAmountPaid) {
+        if (compensationWorker == null) {
+            return null;
+        }
+        LOGGER.warn("Seat reservation failed after payment for account ID: {}, refunding {}", accountId, totalAmountPaid);
+        return compensationWorker.submitRefund(accountId, totalAmountPaid);
+    }
+    // Refund a payment that failed without saying whether it was taken, e.g. a timed-out call; null when this service does not compensate
+    CompletableFuture<CompensationOutcome> refundUncertainPayment(long accountId, int totalAmountPaid, RuntimeException failure) {
+        if (compensationWorker == null) {
+            LOGGER.error("Payment of {} for account ID: {} may have been taken and there is no compensation worker to refund it",
+                    totalAmountPaid, accountId, failure);
+            return null;
+        }
+        LOGGER.warn("Payment of {} for account ID: {} may have been taken, refunding it: {}", totalAmountPaid, accountId, failure.getMessage());
+        return compensationWorker.submitRefund(accountId, totalAmountPaid);
+    }
+    // Give back the allowance of a purchase whose payment failed, refunding the payment if it may have been taken
+    private CompletableFuture<CompensationOutcome> paymentFailed(long accountId, int totalTickets, int totalAmountToPay, RuntimeException failure) {
+        releaseAllowance(accountId, totalTickets);
+        return failure instanceof OutcomeUnknownException ? refundUncertainPayment(accountId, totalAmountToPay, failure) : null;
+    }
+    // Record a completed purchase in the journal, the audit log and the history, where present
+    void audit(PurchaseResult purchase) {
+        record(purchase.getAccountId(), purchase.getAdultTickets(), purchase.getChildTickets(), purchase.getInfantTickets(), purchase.getTotalAmountPaid());
+    }
+    // The customer has paid and holds seats by now, so a record that cannot be written is logged rather than failing the purchase
+    private void record(long accountId, int adults, int children, int infants, int totalAmountPaid) {
+        if (journal != null) {
+            try {
+                journal.recordPurchase(accountId, adults, children, infants, totalAmountPaid);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to journal purchase of {} for account ID: {}", totalAmountPaid, accountId, e);
+            }
+        }
+        if (auditLog != null) {
+            try {
+                auditLog.record(accountId, adults, children, infants, totalAmountPaid);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to audit purchase of {} for account ID: {}", totalAmountPaid, accountId, e);
+            }
+        }
+        if (history != null) {
+            try {
+                history.append(accountId, adults, children, infants, totalAmountPaid);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to add purchase of {} for account ID: {} to the purchase history", totalAmountPaid, accountId, e);
+            }
+        }
+    }
+    PurchaseMetrics getMetrics() {
+        return metrics;
+    }
+    TicketPaymentService getPaymentService() {
+        return paymentService;
+    }
+    SeatReservationService getReservationService() {
+        return reservationService;
+    }
+    @Override
+    public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException {
+        purchaseTickets(accountId, (String) null, ticketTypeRequests);
+    }
+    // As purchaseTickets, with a promotion code from the pricing rules; unknown codes are rejected
+    public void purchaseTickets(Long accountId, String promoCode, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException {
+        processPurchase(accountId, promoCode, ticketTypeRequests);
+    }
+    /**
+     * Purchases a single order, reporting rejections in the result rather than throwing. When the
+     * order has an idempotency key and this service has an idempotency cache, a retry of an order
+     * already seen gets the original result without the gateways being called again; gateway
+     * failures are not remembered, so the retry of a failed purchase runs again. When seats cannot be
+     * reserved after payment and this service compensates, the result is RESERVATION_FAILED and
+     * carries the pending refund.
+     */
+    public PurchaseResult purchase(PurchaseOrder order) {
+        if (order == null) {
+            return PurchaseResult.rejected(null, PurchaseRejection.NULL_ORDER);
+        }
+        String key = idempotencyKey(order);
+        if (key == null) {
+            return processOrder(order);
+        }
+        CompletableFuture<PurchaseResult> pending = new CompletableFuture<>();
+        CompletableFuture<PurchaseResult> existing = idempotencyCache.putIfAbsent(key, pending);
+        if (existing != null) {
+            LOGGER.debug("Replaying outcome of idempotent order {} for account ID: {}", order.getIdempotencyKey(), order.getAccountId());
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            PurchaseResult result = processOrder(order);
+            if (result.getStatus() == PurchaseResult.Status.RESERVATION_FAILED) {
+                idempotencyCache.remove(key, pending);
+            }
+            pending.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            idempotencyCache.remove(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+    private PurchaseResult processOrder(PurchaseOrder order) {
+        try {
+            return processPurchase(order.getAccountId(), order.getPromoCode(), order.getTicketTypeRequests());
+        } catch (InvalidPurchaseException e) {
+            return PurchaseResult.rejected(order.getAccountId(), e);
+        } catch (ReservationFailedException e) {
+            return e.getResult();
+        }
+    }
+    // Cache key for an order, or null when the order is not deduplicated
+    private String idempotencyKey(PurchaseOrder order) {
+        if (idempotencyCache == null || order.getIdempotencyKey() == null) {
+            return null;
+        }
+        return order.getAccountId() + ":" + order.getIdempotencyKey();
+    }
+    private PurchaseResult processPurchase(Long accountId, String promoCode, TicketTypeRequest... ticketTypeRequests) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Processing ticket requests: {}", (Object[]) ticketTypeRequests);
+        }
+        long started = System.nanoTime();
+        TicketCounts counts;
+        int totalAmountToPay;
+        int totalTickets;
+        try {
+            counts = countTickets(accountId, ticketTypeRequests);
+            totalAmountToPay = calculateTotalAmount(counts.adults, counts.children, counts.infants, promoCode);
+            totalTickets = counts.adults + counts.children + counts.infants;
+            acquireAllowance(accountId, totalTickets);
+        } catch (InvalidPurchaseException e) {
+            metrics.rejected(e.getRejection());
+            throw e;
+        }
+        long validated = System.nanoTime();
+        metrics.recordValidation(validated - started);
 
-        // Make payment request
-        paymentService.makePayment(accountId, totalAmountToPay);
+        try {
+            // Make payment request
+            paymentService.makePayment(accountId, totalAmountToPay);
+        } catch (RuntimeException e) {
+            paymentFailed(accountId, totalTickets, totalAmountToPay, e);
+            throw e;
+        } finally {
+            metrics.recordPayment(System.nanoTime() - validated);
+        }
+        long paid = System.nanoTime();
+        try {
+            // Reserve seats for all but infants
+            int totalSeatsToReserve = counts.seatsToReserve();
+            reservationService.reserveSeat(accountId, totalSeatsToReserve);
+        } catch (RuntimeException e) {
+            releaseAllowance(accountId, totalTickets);
+            CompletableFuture<CompensationOutcome> refund = compensate(accountId, totalAmountToPay);
+            if (refund == null) {
+                throw e;
+            }
+            PurchaseResult quote = PurchaseResult.success(accountId, counts.adults, counts.children, counts.infants, totalAmountToPay, counts.seatsToReserve());
+            throw new ReservationFailedException(PurchaseResult.reservationFailed(quote, e.getMessage(), refund), e);
+        } finally {
+            metrics.recordReservation(System.nanoTime() - paid);
+        }
+        metrics.ticketsSold(counts.adults, counts.children, counts.infants);
 
-        // Reserve seats (excluding infants)
-        int totalSeatsToReserve = totalAdultTickets + totalChildTickets;
-        // Reserve seats for all but infants
-        reservationService.reserveSeat(accountId, totalSeatsToReserve);
+        record(accountId, counts.adults, counts.children, counts.infants, totalAmountToPay);
+        if (auditLog == null) {
+            LOGGER.info("Tickets successfully purchased: {} adults, {} children, {} infants for account ID: {}. Total amount to pay: {}", counts.adults, counts.children, counts.infants, accountId, totalAmountToPay);
+        }
+        return PurchaseResult.success(accountId, counts.adults, counts.children, counts.infants, totalAmountToPay, counts.seatsToReserve());
+    }
+    /**
+     * Reserve-then-pay purchase for high-demand showings: seats are held in the showing first, then
+     * payment is taken and the hold confirmed, so a customer is never charged for seats that are gone.
+     * The hold is released if payment fails. If the hold expires while payment is in progress the
+     * payment is refunded when this service compensates, and HoldExpiredException is thrown otherwise.
+     */
+    public PurchaseResult purchaseWithHold(SeatHoldService seatHolds, long showingId, Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        long started = System.nanoTime();
+        PurchaseResult quote;
+        try {
+            quote = quote(accountId, ticketTypeRequests);
+            acquireAllowance(accountId, quote.getTotalTickets());
+        } catch (InvalidPurchaseException e) {
+            metrics.rejected(e.getRejection());
+            throw e;
+        }
+        long validated = System.nanoTime();
+        metrics.recordValidation(validated - started);
 
-        LOGGER.info("Tickets successfully purchased: {} adults, {} children, {} infants for account ID: {}. Total amount to pay: {}", totalAdultTickets, totalChildTickets, totalInfantTickets, accountId, totalAmountToPay);
+        SeatHold hold;
+        try {
+            hold = seatHolds.hold(accountId, showingId, quote.getTotalSeatsReserved());
+        } catch (RuntimeException e) {
+            releaseAllowance(accountId, quote.getTotalTickets());
+            throw e;
+        } finally {
+            metrics.recordReservation(System.nanoTime() - validated);
+        }
+        long held = System.nanoTime();
+        try {
+            paymentService.makePayment(accountId, quote.getTotalAmountPaid());
+        } catch (RuntimeException e) {
+            seatHolds.release(hold);
+            paymentFailed(accountId, quote.getTotalTickets(), quote.getTotalAmountPaid(), e);
+            throw e;
+        } finally {
+            metrics.recordPayment(System.nanoTime() - held);
+        }
+        try {
+            seatHolds.confirm(hold);
+        } catch (HoldExpiredException e) {
+            releaseAllowance(accountId, quote.getTotalTickets());
+            CompletableFuture<CompensationOutcome> refund = compensate(accountId, quote.getTotalAmountPaid());
+            if (refund == null) {
+                throw e;
+            }
+            throw new ReservationFailedException(PurchaseResult.reservationFailed(quote, e.getMessage(), refund), e);
+        }
+        metrics.ticketsSold(quote.getAdultTickets(), quote.getChildTickets(), quote.getInfantTickets());
+        audit(quote);
+        return quote;
+    }
+    @Override
+    public void purchaseTickets(long accountId, int adults, int children, int infants) throws InvalidPurchaseException {
+        long started = System.nanoTime();
+        int combination = TicketCombinations.indexOf(adults, children, infants);
+        PurchaseRejection rejection;
+        if (accountId <= 0) {
+            rejection = PurchaseRejection.INVALID_ACCOUNT;
+        } else if (adults < 0 || children < 0 || infants < 0) {
+            rejection = PurchaseRejection.INVALID_TICKET_COUNT;
+        } else {
+            rejection = TicketCombinations.rejection(combination);
+        }
+        if (rejection != null) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Rejected {} adults, {} children, {} infants for account ID: {}: {}", adults, children, infants, accountId, rejection);
+            }
+            metrics.rejected(rejection);
+            throw rejection.exception();
+        }
+
+        int totalAmountToPay;
+        try {
+            totalAmountToPay = calculateTotalAmount(combination, null);
+            acquireAllowance(accountId, adults + children + infants);
+        } catch (InvalidPurchaseException e) {
+            metrics.rejected(e.getRejection());
+            throw e;
+        }
+        long validated = System.nanoTime();
+        metrics.recordValidation(validated - started);
+        try {
+            paymentService.makePayment(accountId, totalAmountToPay);
+        } catch (RuntimeException e) {
+            paymentFailed(accountId, adults + children + infants, totalAmountToPay, e);
+            throw e;
+        } finally {
+            metrics.recordPayment(System.nanoTime() - validated);
+        }
+        long paid = System.nanoTime();
+        try {
+            reservationService.reserveSeat(accountId, TicketCombinations.seats(combination));
+        } catch (RuntimeException e) {
+            releaseAllowance(accountId, adults + children + infants);
+            CompletableFuture<CompensationOutcome> refund = compensate(accountId, totalAmountToPay);
+            if (refund == null) {
+                throw e;
+            }
+            PurchaseResult quote = PurchaseResult.success(accountId, adults, children, infants, totalAmountToPay, adults + children);
+            throw new ReservationFailedException(PurchaseResult.reservationFailed(quote, e.getMessage(), refund), e);
+        } finally {
+            metrics.recordReservation(System.nanoTime() - paid);
+        }
+        metrics.ticketsSold(adults, children, infants);
+        record(accountId, adults, children, infants, totalAmountToPay);
 
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Tickets successfully purchased: {} adults, {} children, {} infants for account ID: {}. Total amount to pay: {}", adults, children, infants, accountId, totalAmountToPay);
+        }
+    }
+    @Override
+    public List<PurchaseResult> purchaseTicketsBatch(List<PurchaseOrder> orders) {
+        Objects.requireNonNull(orders, "Orders must not be null");
+        int orderCount = orders.size();
+        PurchaseResult[] results = new PurchaseResult[orderCount];
+        long[] accountIds = new long[orderCount];
+        int[] amountsToPay = new int[orderCount];
+        int[] seatsToReserve = new int[orderCount];
+        int[] ticketsBought = new int[orderCount];
+        int[] orderIndexes = new int[orderCount];
+        int validOrders = 0;
+        // Outcomes this batch has claimed in the idempotency cache, by order index
+        List<CompletableFuture<PurchaseResult>> claimed = idempotencyCache == null ? null : new ArrayList<>(Collections.nCopies(orderCount, null));
+
+        // Validate and price every order before touching the gateways
+        for (int i = 0; i < orderCount; i++) {
+            PurchaseOrder order = orders.get(i);
+            Long accountId = order == null ? null : order.getAccountId();
+            long started = System.nanoTime();
+            try {
+                if (order == null) {
+                    throw PurchaseRejection.NULL_ORDER.exception();
+                }
+                String key = idempotencyKey(order);
+                if (key != null) {
+                    CompletableFuture<PurchaseResult> pending = new CompletableFuture<>();
+                    CompletableFuture<PurchaseResult> existing = idempotencyCache.putIfAbsent(key, pending);
+                    if (existing != null) {
+                        boolean replayable = existing.isDone() && !existing.isCompletedExceptionally();
+                        results[i] = replayable ? existing.join() : PurchaseResult.rejected(accountId, PurchaseRejection.DUPLICATE_IN_PROGRESS);
+                        continue;
+                    }
+                    claimed.set(i, pending);
+                }
+                PurchaseResult quote = quote(accountId, order.getPromoCode(), order.getTicketTypeRequests());
+                acquireAllowance(accountId, quote.getTotalTickets());
+                accountIds[validOrders] = accountId;
+                ticketsBought[validOrders] = quote.getTotalTickets();
+                orderIndexes[validOrders] = i;
+                amountsToPay[validOrders] = quote.getTotalAmountPaid();
+                seatsToReserve[validOrders] = quote.getTotalSeatsReserved();
+                results[i] = quote;
+                validOrders++;
+                metrics.recordValidation(System.nanoTime() - started);
+            } catch (InvalidPurchaseException e) {
+                metrics.rejected(e.getRejection());
+                results[i] = PurchaseResult.rejected(accountId, e);
+            }
+        }
+
+        int paidOrders = 0;
+        if (validOrders > 0) {
+            if (validOrders < orderCount) {
+                accountIds = Arrays.copyOf(accountIds, validOrders);
+                amountsToPay = Arrays.copyOf(amountsToPay, validOrders);
+                seatsToReserve = Arrays.copyOf(seatsToReserve, validOrders);
+            }
+            // Each batch gateway call is recorded as a single latency sample
+            long paying = System.nanoTime();
+            paidOrders = makePayments(accountIds, amountsToPay, seatsToReserve, ticketsBought, orderIndexes, results);
+            long reserving = System.nanoTime();
+            metrics.recordPayment(reserving - paying);
+            if (paidOrders > 0) {
+                if (paidOrders < validOrders) {
+                    accountIds = Arrays.copyOf(accountIds, paidOrders);
+                    seatsToReserve = Arrays.copyOf(seatsToReserve, paidOrders);
+                }
+                validOrders = paidOrders - reserveSeatsOrCompensate(accountIds, seatsToReserve, ticketsBought, orderIndexes, results);
+                metrics.recordReservation(System.nanoTime() - reserving);
+            } else {
+                validOrders = 0;
+            }
+        }
+        // Replayed idempotent results were counted when first sold
+        for (int i = 0; i < paidOrders; i++) {
+            PurchaseResult result = results[orderIndexes[i]];
+            if (result.isSuccess()) {
+                metrics.ticketsSold(result.getAdultTickets(), result.getChildTickets(), result.getInfantTickets());
+                audit(result);
+            }
+        }
+        for (int i = 0; claimed != null && i < orderCount; i++) {
+            if (claimed.get(i) != null) {
+                PurchaseResult.Status status = results[i].getStatus();
+                if (status == PurchaseResult.Status.RESERVATION_FAILED || status == PurchaseResult.Status.PAYMENT_FAILED) {
+                    idempotencyCache.remove(idempotencyKey(orders.get(i)), claimed.get(i));
+                }
+                claimed.get(i).complete(results[i]);
+            }
+        }
+
+        LOGGER.info("Ticket batch processed: {} of {} orders purchased", validOrders, orderCount);
+        return Arrays.asList(results);
+    }
+    // Charge the valid orders, marking those whose payment failed and moving the charged ones to the front of the
+    // per-order arrays; returns the number charged. Uses the gateway's batch call when it has one, otherwise one
+    // call per order, so a failed order does not stop the rest of the batch.
+    private int makePayments(long[] accountIds, int[] amountsToPay, int[] seatsToReserve, int[] ticketsBought, int[] orderIndexes, PurchaseResult[] results) {
+        if (paymentService instanceof BatchTicketPaymentService) {
+            try {
+                ((BatchTicketPaymentService) paymentService).makePayments(accountIds, amountsToPay);
+                return accountIds.length;
+            } catch (RuntimeException e) {
+                // The batch call gives no per-order outcome, so none of its orders can be treated as charged; they are
+                // reported failed for the caller to reconcile, and refunded when the failure says the outcome is unknown
+                LOGGER.warn("Batch payment of {} orders failed", accountIds.length, e);
+                for (int i = 0; i < accountIds.length; i++) {
+                    failPayment(i, e, accountIds, ticketsBought, orderIndexes, results);
+                }
+                return 0;
+            }
+        }
+        int paid = 0;
+        for (int i = 0; i < accountIds.length; i++) {
+            try {
+                paymentService.makePayment(accountIds[i], amountsToPay[i]);
+            } catch (RuntimeException e) {
+                failPayment(i, e, accountIds, ticketsBought, orderIndexes, results);
+                continue;
+            }
+            accountIds[paid] = accountIds[i];
+            amountsToPay[paid] = amountsToPay[i];
+            seatsToReserve[paid] = seatsToReserve[i];
+            ticketsBought[paid] = ticketsBought[i];
+            orderIndexes[paid] = orderIndexes[i];
+            paid++;
+        }
+        return paid;
+    }
+    private void failPayment(int validIndex, RuntimeException failure, long[] accountIds, int[] ticketsBought, int[] orderIndexes, PurchaseResult[] results) {
+        PurchaseResult quote = results[orderIndexes[validIndex]];
+        CompletableFuture<CompensationOutcome> refund = paymentFailed(accountIds[validIndex], ticketsBought[validIndex], quote.getTotalAmountPaid(), failure);
+        results[orderIndexes[validIndex]] = PurchaseResult.paymentFailed(quote, failure.getMessage(), refund);
+    }
+    // Reserve seats for orders already paid for, reporting any order whose seats could not be reserved as
+    // RESERVATION_FAILED and refunding it when a compensation worker is configured; returns the number of such orders
+    private int reserveSeatsOrCompensate(long[] accountIds, int[] seatsToReserve, int[] ticketsBought, int[] orderIndexes, PurchaseResult[] results) {
+        if (reservationService instanceof BatchSeatReservationService) {
+            try {
+                ((BatchSeatReservationService) reservationService).reserveSeats(accountIds, seatsToReserve);
+                return 0;
+            } catch (RuntimeException e) {
+                // The batch call gives no per-order outcome, so every order in it is refunded
+                for (int i = 0; i < accountIds.length; i++) {
+                    compensateOrder(i, e, accountIds, ticketsBought, orderIndexes, results);
+                }
+                return accountIds.length;
+            }
+        }
+        int refunded = 0;
+        for (int i = 0; i < accountIds.length; i++) {
+            try {
+                reservationService.reserveSeat(accountIds[i], seatsToReserve[i]);
+            } catch (RuntimeException e) {
+                compensateOrder(i, e, accountIds, ticketsBought, orderIndexes, results);
+                refunded++;
+            }
+        }
+        return refunded;
+    }
+    private void compensateOrder(int validIndex, RuntimeException failure, long[] accountIds, int[] ticketsBought, int[] orderIndexes, PurchaseResult[] results) {
+        releaseAllowance(accountIds[validIndex], ticketsBought[validIndex]);
+        PurchaseResult quote = results[orderIndexes[validIndex]];
+        CompletableFuture<CompensationOutcome> refund = compensate(accountIds[validIndex], quote.getTotalAmountPaid());
+        if (refund == null) {
+            LOGGER.warn("Seat reservation failed after payment for account ID: {}; no compensation worker to refund {}", accountIds[validIndex], quote.getTotalAmountPaid());
+        }
+        results[orderIndexes[validIndex]] = PurchaseResult.reservationFailed(quote, failure.getMessage(), refund);
+    }
+    // Ticket totals per type for a single validated order
+    private static final class TicketCounts {
+        private final int adults;
+        private final int children;
+        private final int infants;
+
+        private TicketCounts(int adults, int children, int infants) {
+            this.adults = adults;
+            this.children = children;
+            this.infants = infants;
+        }
+
+        // Infants sit on an adult's lap, so they do not need a seat
+        private int seatsToReserve() {
+            return adults + children;
+        }
     }
     // Custom exception for configuration errors
     public static class ConfigurationException extends RuntimeException {
@@ -112,4 +691,4 @@ public class TicketServiceImpl implements TicketService {
             super(message);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package uk.gov.dwp.uc.pairtest.admission;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Admits requests through a per-account token bucket and then a global one, so a single abusive
+ * account is held to its own rate and the total reaching the gateways stays within the global rate.
+ * <p>
+ * Account buckets are stored the way {@link TokenBucket} is, as a theoretical arrival time, in a
+ * fixed open-addressing table of primitive account ids and arrival times updated by compare-and-set.
+ * Memory is fixed by {@code maxTrackedAccounts}. An idle bucket has refilled completely and carries
+ * no state, so a new account takes over the first idle slot on its probe path. When every slot on
+ * the path belongs to an active account the request is shed. Checking and rejecting neither locks nor
+ * allocates. An account racing with the eviction of its slot can be charged a token it did not use;
+ * a rate limiter tolerates that in exchange for never locking.
+ * <p>
+ * Missing and non-positive account ids share one bucket, so invalid traffic cannot dodge its limit by
+ * varying the id.
+ */
+public class AdmissionController {
+    private static final long EMPTY = 0;
+    private static final long ANONYMOUS = -1;
+    private static final int MAX_PROBES = 16;
+    private final AtomicLongArray accounts;
+    private final AtomicLongArray arrivals;
+    private final int mask;
+    private final long accountIntervalNanos;
+    private final long accountToleranceNanos;
+    private final TokenBucket globalBucket;
+    private final LongSupplier nanoClock;
+    private final long origin;
+    private final LongAdder shedByAccount = new LongAdder();
+    private final LongAdder shedGlobally = new LongAdder();
+    private final LongAdder shedTableFull = new LongAdder();
+
+    public AdmissionController(double accountRatePerSecond, int accountBurst, double globalRatePerSecond, int globalBurst, int maxTrackedAccounts) {
+        this(accountRatePerSecond, accountBurst, globalRatePerSecond, globalBurst, maxTrackedAccounts, System::nanoTime);
+    }
+
+    public AdmissionController(double accountRatePerSecond, int accountBurst, double globalRatePerSecond, int globalBurst,
+                               int maxTrackedAccounts, LongSupplier nanoClock) {
+        if (maxTrackedAccounts <= 0) {
+            throw new IllegalArgumentException("Maximum tracked accounts must be positive");
+        }
+        this.nanoClock = Objects.requireNonNull(nanoClock, "Clock must not be null");
+        this.accountIntervalNanos = TokenBucket.emissionInterval(accountRatePerSecond, accountBurst);
+        this.accountToleranceNanos = accountIntervalNanos * (accountBurst - 1);
+        this.globalBucket = new TokenBucket(globalRatePerSecond, globalBurst, nanoClock);
+        int capacity = Integer.highestOneBit(Math.max(MAX_PROBES, maxTrackedAccounts) - 1) << 1;
+        this.accounts = new AtomicLongArray(capacity);
+        this.arrivals = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.origin = nanoClock.getAsLong();
+    }
+
+    public boolean tryAdmit(Long accountId) {
+        return tryAdmit(accountId == null ? ANONYMOUS : accountId.longValue());
+    }
+
+    public boolean tryAdmit(long accountId) {
+        long key = accountId > 0 ? accountId : ANONYMOUS;
+        long now = nanoClock.getAsLong() - origin;
+        int slot = acquireAccountToken(key, now);
+        if (slot < 0) {
+            return false;
+        }
+        if (!globalBucket.tryAcquire()) {
+            arrivals.addAndGet(slot, -accountIntervalNanos);
+            shedGlobally.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // Slot of the account's bucket after taking a token from it, or -1 when shed
+    private int acquireAccountToken(long key, long now) {
+        int start = (int) (mix(key) >>> 32) & mask;
+        while (true) {
+            int slot = -1;
+            long owner = EMPTY;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int candidate = (start + probe) & mask;
+                long current = accounts.get(candidate);
+                if (current == key) {
+                    slot = candidate;
+                    owner = key;
+                    break;
+                }
+                // Slots are only ever taken over, never emptied, so an account is always found before the first empty slot
+                if (current == EMPTY) {
+                    if (slot < 0) {
+                        slot = candidate;
+                        owner = EMPTY;
+                    }
+                    break;
+                }
+                if (slot < 0 && arrivals.get(candidate) <= now) {
+                    slot = candidate;
+                    owner = current;
+                }
+            }
+            if (slot < 0) {
+                shedTableFull.increment();
+                return -1;
+            }
+            if (owner != key && !accounts.compareAndSet(slot, owner, key)) {
+                continue;
+            }
+            while (true) {
+                long tat = arrivals.get(slot);
+                long next = TokenBucket.admit(tat, now, accountIntervalNanos, accountToleranceNanos);
+                if (next == TokenBucket.REJECTED) {
+                    shedByAccount.increment();
+                    return -1;
+                }
+                if (arrivals.compareAndSet(slot, tat, next)) {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    // Requests shed because their account was over its rate
+    public long shedByAccount() {
+        return shedByAccount.sum();
+    }
+
+    // Requests shed by the global rate
+    public long shedGlobally() {
+        return shedGlobally.sum();
+    }
+
+    // Requests shed because every bucket they could use belonged to another active account
+    public long shedTableFull() {
+        return shedTableFull.sum();
+    }
+
+    // Murmur3 finaliser, as used by AccountPurchaseLedger
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
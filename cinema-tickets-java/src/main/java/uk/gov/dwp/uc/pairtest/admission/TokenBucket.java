@@ -0,0 +1,56 @@
+package uk.gov.dwp.uc.pairtest.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket kept as a single {@code long}: the theoretical arrival time (TAT) of the
+ * next request, as in the generic cell rate algorithm. A request is admitted when the TAT is no more
+ * than {@code burst - 1} emission intervals ahead of now, and admitting it pushes the TAT one
+ * interval further. This is equivalent to a bucket of {@code burst} tokens refilled at
+ * {@code ratePerSecond}, but a single compare-and-set updates it and there is no refill timestamp.
+ * A bucket whose TAT is in the past is full, which is what lets idle buckets be forgotten.
+ */
+public final class TokenBucket {
+    static final long REJECTED = Long.MIN_VALUE;
+    private final AtomicLong theoreticalArrival = new AtomicLong();
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier nanoClock;
+    private final long origin;
+
+    public TokenBucket(double ratePerSecond, int burst, LongSupplier nanoClock) {
+        this.emissionIntervalNanos = emissionInterval(ratePerSecond, burst);
+        this.toleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.nanoClock = nanoClock;
+        // Times are kept relative to creation, so a fresh bucket (TAT 0) is never ahead of now
+        this.origin = nanoClock.getAsLong();
+    }
+
+    static long emissionInterval(double ratePerSecond, int burst) {
+        if (!(ratePerSecond > 0) || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        return Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+    }
+
+    public boolean tryAcquire() {
+        long now = nanoClock.getAsLong() - origin;
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long next = admit(tat, now, emissionIntervalNanos, toleranceNanos);
+            if (next == REJECTED) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    // New TAT after admitting a request at now, or REJECTED when the bucket is empty
+    static long admit(long tat, long now, long emissionIntervalNanos, long toleranceNanos) {
+        long start = Math.max(tat, now);
+        return start - now > toleranceNanos ? REJECTED : start + emissionIntervalNanos;
+    }
+}
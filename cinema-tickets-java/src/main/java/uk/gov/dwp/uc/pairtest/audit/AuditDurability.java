@@ -0,0 +1,8 @@
+package uk.gov.dwp.uc.pairtest.audit;
+
+public enum AuditDurability {
+    // A purchase returns only once its record has been forced to disk; concurrent purchases share one fsync
+    PER_RECORD,
+    // Records are forced to disk at a fixed interval; a crash can lose up to one interval of records
+    PERIODIC
+}
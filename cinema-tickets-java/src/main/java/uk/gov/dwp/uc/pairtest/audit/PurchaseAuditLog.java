@@ -0,0 +1,386 @@
+package uk.gov.dwp.uc.pairtest.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit trail of completed purchases, written as JSON lines to rolling files in a directory.
+ * <p>
+ * Request threads publish a record into a bounded, lock-free ring buffer of preallocated slots, so
+ * recording never allocates or takes a lock. A single background thread drains whatever has been
+ * published, encodes it into one buffer and writes it with a single {@link FileChannel} write; with
+ * {@link AuditDurability#PER_RECORD} that batch is then forced to disk once for every record in it
+ * (group commit). When the ring buffer is full, request threads wait for the writer rather than
+ * drop records, but for no longer than {@code MAX_FULL_WAIT}. Once the log is closed, or the writer
+ * has stopped on an error, recording fails with {@link IllegalStateException}, so a record is never
+ * accepted without being written.
+ */
+public class PurchaseAuditLog implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PurchaseAuditLog.class);
+    static final String FILE_PREFIX = "purchases-";
+    static final String FILE_SUFFIX = ".jsonl";
+    // Longest encoded record, with room to spare
+    private static final int MAX_RECORD_BYTES = 160;
+    private static final long IDLE_PARK_NANOS = Duration.ofMillis(100).toNanos();
+    private static final long MAX_FULL_WAIT_NANOS = Duration.ofSeconds(5).toNanos();
+    // Set in nextSequence by close(), so no record can claim a sequence once the writer may have finished
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final AuditDurability durability;
+    private final long syncIntervalNanos;
+
+    // Ring buffer: slot i holds the record with sequence s where s & mask == i. A slot's sequence is s
+    // while it is free for that record, s + 1 once published, and s + capacity once drained.
+    private final int mask;
+    private final AtomicLongArray slotSequences;
+    private final long[] timestamps;
+    private final long[] accountIds;
+    private final int[] adults;
+    private final int[] children;
+    private final int[] infants;
+    private final int[] amounts;
+    private final AtomicLong nextSequence = new AtomicLong();
+    // Every record below this sequence has been written, and forced unless durability is PERIODIC
+    private final AtomicLong durableSequence = new AtomicLong();
+    private final Object durableMonitor = new Object();
+    private final AtomicLong bufferFullStalls = new AtomicLong();
+
+    private final Thread writer;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final byte[] digits = new byte[20];
+    private volatile boolean writerSleeping;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+    private volatile boolean writerStopped;
+    private FileChannel channel;
+    private long fileIndex;
+    private long fileBytes;
+
+    public PurchaseAuditLog(Path directory, int capacity, long maxFileBytes, AuditDurability durability, Duration syncInterval) throws IOException {
+        this.directory = Objects.requireNonNull(directory, "Audit directory must not be null");
+        this.durability = Objects.requireNonNull(durability, "Durability must not be null");
+        this.syncIntervalNanos = Objects.requireNonNull(syncInterval, "Sync interval must not be null").toNanos();
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two");
+        }
+        if (maxFileBytes < MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Maximum file size must be at least " + MAX_RECORD_BYTES + " bytes");
+        }
+        this.maxFileBytes = maxFileBytes;
+        this.mask = capacity - 1;
+        this.slotSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slotSequences.set(i, i);
+        }
+        this.timestamps = new long[capacity];
+        this.accountIds = new long[capacity];
+        this.adults = new int[capacity];
+        this.children = new int[capacity];
+        this.infants = new int[capacity];
+        this.amounts = new int[capacity];
+
+        Files.createDirectories(directory);
+        this.fileIndex = lastFileIndex(directory);
+        openFile();
+        this.writer = new Thread(this::write, "purchase-audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Records a completed purchase. Returns once the record is queued, or, with
+     * {@link AuditDurability#PER_RECORD}, once it is on disk.
+     *
+     * @throws IllegalStateException if the log is closed or can no longer write
+     */
+    public void record(long accountId, int adultTickets, int childTickets, int infantTickets, int totalAmountPaid) {
+        long sequence = publish(System.currentTimeMillis(), accountId, adultTickets, childTickets, infantTickets, totalAmountPaid);
+        if (durability == AuditDurability.PER_RECORD) {
+            awaitDurable(sequence + 1);
+        }
+    }
+
+    private long publish(long timestamp, long accountId, int adultTickets, int childTickets, int infantTickets, int totalAmountPaid) {
+        long fullSince = 0;
+        while (true) {
+            checkWritable();
+            long sequence = nextSequence.get();
+            if (sequence < 0) {
+                throw new IllegalStateException("Purchase audit log is closed");
+            }
+            int slot = (int) sequence & mask;
+            long slotSequence = slotSequences.get(slot);
+            if (slotSequence == sequence) {
+                if (nextSequence.compareAndSet(sequence, sequence + 1)) {
+                    timestamps[slot] = timestamp;
+                    accountIds[slot] = accountId;
+                    adults[slot] = adultTickets;
+                    children[slot] = childTickets;
+                    infants[slot] = infantTickets;
+                    amounts[slot] = totalAmountPaid;
+                    slotSequences.set(slot, sequence + 1);
+                    if (writerSleeping) {
+                        LockSupport.unpark(writer);
+                    }
+                    return sequence;
+                }
+            } else if (slotSequence < sequence) {
+                // Full: the writer has not drained this slot since the last lap
+                long now = System.nanoTime();
+                if (fullSince == 0) {
+                    fullSince = now;
+                    bufferFullStalls.incrementAndGet();
+                } else if (now - fullSince > MAX_FULL_WAIT_NANOS) {
+                    throw new IllegalStateException("Purchase audit log buffer stayed full for " + Duration.ofNanos(MAX_FULL_WAIT_NANOS).toSeconds() + " s");
+                }
+                LockSupport.unpark(writer);
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        if (durableSequence.get() >= sequence) {
+            return;
+        }
+        synchronized (durableMonitor) {
+            boolean interrupted = false;
+            while (durableSequence.get() < sequence) {
+                // The writer may have made the record durable just before it stopped
+                if (writerStopped && durableSequence.get() < sequence) {
+                    checkWritable();
+                }
+                try {
+                    durableMonitor.wait(10);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void checkWritable() {
+        if (failure != null) {
+            throw new IllegalStateException("Purchase audit log can no longer write", failure);
+        }
+        if (writerStopped) {
+            throw new IllegalStateException("Purchase audit log is closed");
+        }
+    }
+
+    // Times a request thread found the ring buffer full and had to wait for the writer
+    public long bufferFullStalls() {
+        return bufferFullStalls.get();
+    }
+
+    private void write() {
+        long head = 0;
+        long synced = 0;
+        long lastSync = System.nanoTime();
+        try {
+            while (true) {
+                long drainedTo = drain(head);
+                if (drainedTo > head) {
+                    head = drainedTo;
+                    if (durability == AuditDurability.PER_RECORD) {
+                        channel.force(false);
+                        synced = markDurable(head);
+                        lastSync = System.nanoTime();
+                    } else {
+                        durableSequence.set(head);
+                    }
+                    continue;
+                }
+                if (durability == AuditDurability.PERIODIC && synced < head && System.nanoTime() - lastSync >= syncIntervalNanos) {
+                    channel.force(false);
+                    synced = head;
+                    lastSync = System.nanoTime();
+                }
+                // Only records that claimed a sequence before close() are left to write
+                if (!running && (nextSequence.get() & ~CLOSED) == head) {
+                    break;
+                }
+                writerSleeping = true;
+                // Re-check after announcing sleep so a record published meanwhile is not missed
+                if (slotSequences.get((int) head & mask) != head + 1 && running) {
+                    long parkNanos = durability == AuditDurability.PERIODIC && synced < head ? syncIntervalNanos : IDLE_PARK_NANOS;
+                    LockSupport.parkNanos(this, parkNanos);
+                }
+                writerSleeping = false;
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            LOGGER.error("Purchase audit log failed writing to {}", directory, e);
+            failure = e;
+        } catch (RuntimeException e) {
+            LOGGER.error("Purchase audit writer for {} failed", directory, e);
+            failure = new IOException("Purchase audit writer failed", e);
+        } finally {
+            writerStopped = true;
+            closeFile();
+            synchronized (durableMonitor) {
+                durableMonitor.notifyAll();
+            }
+        }
+    }
+
+    // Write every published record from head onwards, returning the sequence after the last one written
+    private long drain(long head) throws IOException {
+        long sequence = head;
+        buffer.clear();
+        while (true) {
+            int slot = (int) sequence & mask;
+            if (slotSequences.get(slot) != sequence + 1) {
+                break;
+            }
+            if (buffer.remaining() < MAX_RECORD_BYTES || fileBytes + buffer.position() + MAX_RECORD_BYTES > maxFileBytes) {
+                flush();
+            }
+            encode(slot);
+            slotSequences.set(slot, sequence + mask + 1);
+            sequence++;
+        }
+        flush();
+        return sequence;
+    }
+
+    private long markDurable(long sequence) {
+        durableSequence.set(sequence);
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+        return sequence;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileBytes += channel.write(buffer);
+        }
+        buffer.clear();
+        if (fileBytes + MAX_RECORD_BYTES > maxFileBytes) {
+            roll();
+        }
+    }
+
+    private void roll() throws IOException {
+        channel.force(false);
+        channel.close();
+        openFile();
+    }
+
+    private void openFile() throws IOException {
+        fileIndex++;
+        Path file = directory.resolve(fileName(fileIndex));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+        LOGGER.debug("Writing purchase audit records to {}", file);
+    }
+
+    private void closeFile() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close purchase audit file in {}", directory, e);
+        }
+    }
+
+    static String fileName(long index) {
+        return String.format("%s%06d%s", FILE_PREFIX, index, FILE_SUFFIX);
+    }
+
+    // New files continue after the highest numbered file already in the directory
+    private static long lastFileIndex(Path directory) throws IOException {
+        long last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    last = Math.max(last, Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOGGER.debug("Ignoring unexpected file {} in audit directory", file);
+                }
+            }
+        }
+        return last;
+    }
+
+    // {"ts":1700000000000,"account":1,"adults":2,"children":1,"infants":0,"amount":65}
+    private void encode(int slot) {
+        putAscii("{\"ts\":");
+        putLong(timestamps[slot]);
+        putAscii(",\"account\":");
+        putLong(accountIds[slot]);
+        putAscii(",\"adults\":");
+        putLong(adults[slot]);
+        putAscii(",\"children\":");
+        putLong(children[slot]);
+        putAscii(",\"infants\":");
+        putLong(infants[slot]);
+        putAscii(",\"amount\":");
+        putLong(amounts[slot]);
+        putAscii("}\n");
+    }
+
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private void putLong(long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                putAscii("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length > 0) {
+            buffer.put(digits[--length]);
+        }
+    }
+
+    // Stops accepting records, writes and forces everything already recorded, then closes the file
+    @Override
+    public void close() throws IOException {
+        long sequence;
+        do {
+            sequence = nextSequence.get();
+        } while (sequence >= 0 && !nextSequence.compareAndSet(sequence, sequence | CLOSED));
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package uk.gov.dwp.uc.pairtest.compensation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thirdparty.paymentgateway.PartialRefundException;
+import thirdparty.paymentgateway.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.domain.CompensationOutcome;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refunds payments for purchases whose seat reservation failed, off the request path.
+ * <p>
+ * Request threads only enqueue a refund. A single background thread drains up to
+ * {@code batchSize} refunds at a time and sends them to the gateway in one call. When the batch call
+ * reports how far it got, with {@link PartialRefundException}, the entries it refunded are done and
+ * the rest are retried, so a gateway without a real batch call is effectively refunded one payment at
+ * a time. A batch call that fails without saying which entries went through may have refunded any of
+ * them, so none is retried: they are all reported as failed, to be reconciled by hand, rather than
+ * risk refunding a payment twice. A failed refund is retried with exponential backoff until
+ * {@code maxAttempts} is reached.
+ */
+public class CompensationWorker implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompensationWorker.class);
+    private final RefundableTicketPaymentService paymentService;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final BlockingQueue<Refund> incoming = new LinkedBlockingQueue<>();
+    // Refunds waiting for their next attempt; only touched by the worker thread
+    private final PriorityQueue<Refund> retries = new PriorityQueue<>(Comparator.comparingLong(refund -> refund.dueAt));
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public CompensationWorker(RefundableTicketPaymentService paymentService, int batchSize, int maxAttempts,
+                              Duration initialBackoff, Duration maxBackoff) {
+        this.paymentService = Objects.requireNonNull(paymentService, "PaymentService must not be null");
+        if (batchSize <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Batch size and maximum attempts must be positive");
+        }
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.thread = new Thread(this::run, "compensation-worker");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public CompletableFuture<CompensationOutcome> submitRefund(long accountId, int totalAmountToRefund) {
+        if (!running) {
+            throw new RejectedExecutionException("Compensation worker is closed");
+        }
+        Refund refund = new Refund(accountId, totalAmountToRefund);
+        incoming.add(refund);
+        return refund.outcome;
+    }
+
+    // Refunds queued or waiting for a retry
+    public int pending() {
+        return incoming.size() + retries.size();
+    }
+
+    private void run() {
+        List<Refund> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !incoming.isEmpty()) {
+                Refund first = incoming.poll(waitNanos(), TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    incoming.drainTo(batch, batchSize - 1);
+                }
+                long now = System.nanoTime();
+                while (batch.size() < batchSize && !retries.isEmpty() && retries.peek().dueAt <= now) {
+                    batch.add(retries.poll());
+                }
+                if (!batch.isEmpty()) {
+                    process(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        abandon(retries);
+        abandon(incoming);
+    }
+
+    // Sleep until the next retry is due, or a short while so close() is noticed
+    private long waitNanos() {
+        Refund next = retries.peek();
+        long idle = TimeUnit.MILLISECONDS.toNanos(100);
+        return next == null ? idle : Math.max(0, Math.min(idle, next.dueAt - System.nanoTime()));
+    }
+
+    private void process(List<Refund> batch) {
+        if (batch.size() > 1) {
+            refundBatch(batch);
+            return;
+        }
+        for (Refund refund : batch) {
+            try {
+                paymentService.refundPayment(refund.accountId, refund.amount);
+                refund.outcome.complete(CompensationOutcome.REFUNDED);
+            } catch (RuntimeException e) {
+                retryLater(refund, e);
+            }
+        }
+    }
+
+    private void refundBatch(List<Refund> batch) {
+        long[] accountIds = new long[batch.size()];
+        int[] amounts = new int[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            accountIds[i] = batch.get(i).accountId;
+            amounts[i] = batch.get(i).amount;
+        }
+        try {
+            paymentService.refundPayments(accountIds, amounts);
+        } catch (PartialRefundException e) {
+            // The entry at getRefunded() failed and is retried with backoff; those after it were never sent
+            int refunded = e.getRefunded();
+            long now = System.nanoTime();
+            for (int i = 0; i < batch.size(); i++) {
+                Refund refund = batch.get(i);
+                if (i < refunded) {
+                    refund.outcome.complete(CompensationOutcome.REFUNDED);
+                } else if (i == refunded) {
+                    retryLater(refund, e);
+                } else {
+                    refund.dueAt = now;
+                    retries.add(refund);
+                }
+            }
+            return;
+        } catch (RuntimeException e) {
+            // The gateway does not say which entries went through, so retrying any of them could refund it twice
+            for (Refund refund : batch) {
+                LOGGER.error("Batch refund failed; refund of {} to account ID: {} may or may not have been made", refund.amount, refund.accountId, e);
+                refund.outcome.complete(CompensationOutcome.REFUND_FAILED);
+            }
+            return;
+        }
+        for (Refund refund : batch) {
+            refund.outcome.complete(CompensationOutcome.REFUNDED);
+        }
+    }
+
+    private void retryLater(Refund refund, RuntimeException failure) {
+        refund.attempts++;
+        if (refund.attempts >= maxAttempts) {
+            LOGGER.error("Giving up refunding {} to account ID: {} after {} attempts", refund.amount, refund.accountId, refund.attempts, failure);
+            refund.outcome.complete(CompensationOutcome.REFUND_FAILED);
+            return;
+        }
+        long backoff = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(refund.attempts - 1, 30));
+        refund.dueAt = System.nanoTime() + backoff;
+        retries.add(refund);
+    }
+
+    private void abandon(Iterable<Refund> refunds) {
+        for (Refund refund : refunds) {
+            LOGGER.error("Compensation worker stopped before refunding {} to account ID: {}", refund.amount, refund.accountId);
+            refund.outcome.complete(CompensationOutcome.REFUND_FAILED);
+        }
+    }
+
+    // Stops accepting refunds; queued refunds get one more attempt, refunds still waiting to retry are reported as failed
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Refund {
+        private final long accountId;
+        private final int amount;
+        private final CompletableFuture<CompensationOutcome> outcome = new CompletableFuture<>();
+        private int attempts;
+        private long dueAt;
+
+        private Refund(long accountId, int amount) {
+            this.accountId = accountId;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+public enum CompensationOutcome {
+    REFUNDED,
+    // Every retry failed, or a batch refund failed without saying which entries went through; the payment needs to be reconciled and refunded by hand
+    REFUND_FAILED
+}
@@ -0,0 +1,52 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+/**
+ * Immutable Object
+ */
+
+public class PurchaseOrder {
+
+    private final Long accountId;
+    private final String promoCode;
+    private final String idempotencyKey;
+    private final TicketTypeRequest[] ticketTypeRequests;
+
+    public PurchaseOrder(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        this(accountId, null, ticketTypeRequests);
+    }
+
+    public PurchaseOrder(Long accountId, String promoCode, TicketTypeRequest... ticketTypeRequests) {
+        this(accountId, promoCode, null, ticketTypeRequests);
+    }
+
+    private PurchaseOrder(Long accountId, String promoCode, String idempotencyKey, TicketTypeRequest... ticketTypeRequests) {
+        this.accountId = accountId;
+        this.promoCode = promoCode;
+        this.idempotencyKey = idempotencyKey;
+        this.ticketTypeRequests = ticketTypeRequests;
+    }
+
+    // A copy of this order that retries can be matched against; keys are scoped to the account
+    public PurchaseOrder withIdempotencyKey(String idempotencyKey) {
+        return new PurchaseOrder(accountId, promoCode, idempotencyKey, ticketTypeRequests);
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    // Null when no promotion applies
+    public String getPromoCode() {
+        return promoCode;
+    }
+
+    // Null when the order is not idempotent
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public TicketTypeRequest[] getTicketTypeRequests() {
+        return ticketTypeRequests;
+    }
+
+}
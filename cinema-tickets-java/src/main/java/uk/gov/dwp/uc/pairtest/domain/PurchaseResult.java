@@ -0,0 +1,190 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Immutable Object
+ */
+
+public class PurchaseResult {
+    private static final int[] NO_SEATS = new int[0];
+
+    public enum Status {
+        SUCCESS,
+        // The order was invalid; nothing was charged or reserved
+        REJECTED,
+        // Payment was taken but seats could not be reserved; the payment is being refunded when a compensation worker is configured
+        RESERVATION_FAILED,
+        // The payment call failed, so no seats were reserved; a failed batch payment call may still have charged the order,
+        // and a payment that failed without saying whether it was taken is being refunded when a compensation worker is configured
+        PAYMENT_FAILED,
+        // A gateway call outlived its timeout, so the purchase may yet stand or be refunded; see getSettlement
+        OUTCOME_UNKNOWN
+    }
+
+    private final Long accountId;
+    private final Status status;
+    private final int adultTickets;
+    private final int childTickets;
+    private final int infantTickets;
+    private final int totalAmountPaid;
+    private final int totalSeatsReserved;
+    private final String failureReason;
+    private final PurchaseRejection rejection;
+    private final CompletableFuture<CompensationOutcome> compensation;
+    private final CompletableFuture<PurchaseResult> settlement;
+    private final int[] seatNumbers;
+
+    private PurchaseResult(Long accountId, Status status, int adultTickets, int childTickets, int infantTickets,
+                           int totalAmountPaid, int totalSeatsReserved, String failureReason,
+                           CompletableFuture<CompensationOutcome> compensation) {
+        this(accountId, status, adultTickets, childTickets, infantTickets, totalAmountPaid, totalSeatsReserved, failureReason, null, compensation, null, NO_SEATS);
+    }
+
+    private PurchaseResult(Long accountId, Status status, int adultTickets, int childTickets, int infantTickets,
+                           int totalAmountPaid, int totalSeatsReserved, String failureReason, PurchaseRejection rejection,
+                           CompletableFuture<CompensationOutcome> compensation, CompletableFuture<PurchaseResult> settlement, int[] seatNumbers) {
+        this.accountId = accountId;
+        this.status = status;
+        this.adultTickets = adultTickets;
+        this.childTickets = childTickets;
+        this.infantTickets = infantTickets;
+        this.totalAmountPaid = totalAmountPaid;
+        this.totalSeatsReserved = totalSeatsReserved;
+        this.failureReason = failureReason;
+        this.rejection = rejection;
+        this.compensation = compensation;
+        this.settlement = settlement;
+        this.seatNumbers = seatNumbers;
+    }
+
+    public static PurchaseResult success(Long accountId, int adultTickets, int childTickets, int infantTickets,
+                                         int totalAmountPaid, int totalSeatsReserved) {
+        return new PurchaseResult(accountId, Status.SUCCESS, adultTickets, childTickets, infantTickets, totalAmountPaid, totalSeatsReserved, null, null);
+    }
+
+    // For a rejection outside the PurchaseRejection rules; getRejection is null
+    public static PurchaseResult rejected(Long accountId, String failureReason) {
+        return new PurchaseResult(accountId, Status.REJECTED, 0, 0, 0, 0, 0, failureReason, null);
+    }
+
+    public static PurchaseResult rejected(Long accountId, PurchaseRejection rejection) {
+        return new PurchaseResult(accountId, Status.REJECTED, 0, 0, 0, 0, 0, rejection.getMessage(), rejection, null, null, NO_SEATS);
+    }
+
+    public static PurchaseResult rejected(Long accountId, InvalidPurchaseException e) {
+        return new PurchaseResult(accountId, Status.REJECTED, 0, 0, 0, 0, 0, e.getMessage(), e.getRejection(), null, null, NO_SEATS);
+    }
+
+    // The amount charged is being refunded; the compensation future completes when the refund settles
+    public static PurchaseResult reservationFailed(PurchaseResult quote, String failureReason,
+                                                   CompletableFuture<CompensationOutcome> compensation) {
+        return new PurchaseResult(quote.accountId, Status.RESERVATION_FAILED, quote.adultTickets, quote.childTickets, quote.infantTickets,
+                quote.totalAmountPaid, 0, failureReason, compensation);
+    }
+
+    // Nothing was reserved; the quote's amount was not confirmed as charged
+    public static PurchaseResult paymentFailed(PurchaseResult quote, String failureReason) {
+        return paymentFailed(quote, failureReason, null);
+    }
+
+    // As paymentFailed, for a payment that may have been taken; the compensation future completes when its refund settles
+    public static PurchaseResult paymentFailed(PurchaseResult quote, String failureReason, CompletableFuture<CompensationOutcome> compensation) {
+        return new PurchaseResult(quote.accountId, Status.PAYMENT_FAILED, quote.adultTickets, quote.childTickets, quote.infantTickets,
+                quote.totalAmountPaid, 0, failureReason, compensation);
+    }
+
+    // Paid for, but the reservation had not answered in time; the settlement completes with SUCCESS or RESERVATION_FAILED once it does
+    public static PurchaseResult outcomeUnknown(PurchaseResult quote, String failureReason, CompletableFuture<PurchaseResult> settlement) {
+        return new PurchaseResult(quote.accountId, Status.OUTCOME_UNKNOWN, quote.adultTickets, quote.childTickets, quote.infantTickets,
+                quote.totalAmountPaid, 0, failureReason, null, null, settlement, NO_SEATS);
+    }
+
+    // A copy of this result naming the seats that were booked, for purchases made against a specific showing
+    public PurchaseResult withSeatNumbers(int[] seatNumbers) {
+        return new PurchaseResult(accountId, status, adultTickets, childTickets, infantTickets, totalAmountPaid, totalSeatsReserved,
+                failureReason, rejection, compensation, settlement, seatNumbers.clone());
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    public int getAdultTickets() {
+        return adultTickets;
+    }
+
+    public int getChildTickets() {
+        return childTickets;
+    }
+
+    public int getInfantTickets() {
+        return infantTickets;
+    }
+
+    public int getTotalTickets() {
+        return adultTickets + childTickets + infantTickets;
+    }
+
+    public int getTotalAmountPaid() {
+        return totalAmountPaid;
+    }
+
+    public int getTotalSeatsReserved() {
+        return totalSeatsReserved;
+    }
+
+    // Reason the order was rejected or failed, null on success
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    // Rule the order broke; null unless the status is REJECTED, and null for rejections made outside those rules
+    public PurchaseRejection getRejection() {
+        return rejection;
+    }
+
+    // Outcome of refunding a RESERVATION_FAILED purchase, or a PAYMENT_FAILED one whose payment may have been taken;
+    // null for any other result, or when no compensation worker is configured and the caller must refund
+    public CompletableFuture<CompensationOutcome> getCompensation() {
+        return compensation;
+    }
+
+    // Final result of an OUTCOME_UNKNOWN purchase, which never completes exceptionally; null for any other status
+    public CompletableFuture<PurchaseResult> getSettlement() {
+        return settlement;
+    }
+
+    // Seats booked in the showing, empty when the reservation service did not report them
+    public int[] getSeatNumbers() {
+        return seatNumbers.clone();
+    }
+
+    @Override
+    public String toString() {
+        switch (status) {
+            case SUCCESS:
+                return "PurchaseResult[account=" + accountId + ", paid=" + totalAmountPaid + ", seats=" + totalSeatsReserved + "]";
+            case RESERVATION_FAILED:
+                return "PurchaseResult[account=" + accountId + ", refunding=" + totalAmountPaid + ", failed=" + failureReason + "]";
+            case PAYMENT_FAILED:
+                return "PurchaseResult[account=" + accountId + ", payment failed=" + failureReason + "]";
+            case OUTCOME_UNKNOWN:
+                return "PurchaseResult[account=" + accountId + ", paid=" + totalAmountPaid + ", unknown=" + failureReason + "]";
+            default:
+                return "PurchaseResult[account=" + accountId + ", rejected=" + failureReason + "]";
+        }
+    }
+
+}
@@ -0,0 +1,9 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+// Every permit for calling the gateway is in use, so the call was rejected without reaching the gateway
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String gatewayName) {
+        super("Too many concurrent calls to gateway: " + gatewayName, null, false, false);
+    }
+}
@@ -0,0 +1,10 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+// The gateway's circuit breaker is open, so the call was rejected without reaching the gateway
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String gatewayName) {
+        // Thrown on every call while the circuit is open, so no stack trace is recorded
+        super("Circuit open for gateway: " + gatewayName, null, false, false);
+    }
+}
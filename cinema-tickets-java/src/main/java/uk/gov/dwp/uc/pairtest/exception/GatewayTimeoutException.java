@@ -0,0 +1,9 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+// The gateway did not answer in time; the call may still complete on the gateway's side
+public class GatewayTimeoutException extends OutcomeUnknownException {
+
+    public GatewayTimeoutException(String message) {
+        super(message);
+    }
+}
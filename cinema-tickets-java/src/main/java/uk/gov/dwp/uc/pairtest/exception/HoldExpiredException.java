@@ -0,0 +1,9 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+// The seat hold expired, or was released, before it could be confirmed; its seats are no longer held
+public class HoldExpiredException extends RuntimeException {
+
+    public HoldExpiredException(String message) {
+        super(message);
+    }
+}
@@ -2,7 +2,21 @@ package uk.gov.dwp.uc.pairtest.exception;
 
 public class InvalidPurchaseException extends RuntimeException {
 
+    private final PurchaseRejection rejection;
+
     public InvalidPurchaseException(String message) {
         super(message);
+        this.rejection = null;
+    }
+
+    // Shared instance for a known rejection; no stack trace or suppressed exceptions are recorded
+    InvalidPurchaseException(PurchaseRejection rejection) {
+        super(rejection.getMessage(), null, false, false);
+        this.rejection = rejection;
+    }
+
+    // The reason for the rejection, or null when the exception was raised with a free-form message
+    public PurchaseRejection getRejection() {
+        return rejection;
     }
 }
@@ -0,0 +1,13 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+// A gateway call failed in a way that does not say whether it took effect, e.g. a payment that may have been taken
+public class OutcomeUnknownException extends RuntimeException {
+
+    public OutcomeUnknownException(String message) {
+        super(message);
+    }
+
+    public OutcomeUnknownException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
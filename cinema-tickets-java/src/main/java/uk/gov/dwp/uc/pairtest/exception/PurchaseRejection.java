@@ -0,0 +1,69 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+/**
+ * Reasons a purchase can be rejected. Each reason owns a single preallocated, stackless
+ * {@link InvalidPurchaseException} so rejecting a request does not allocate or walk the stack.
+ * <p>
+ * Each reason also has a fixed code, used where rejections leave the process, e.g. in the wire
+ * protocol. Codes start at 1 so 0 can mean no reason; a new reason takes the next free code, and a
+ * code is never renumbered or reused.
+ */
+public enum PurchaseRejection {
+    INVALID_ACCOUNT(1, "Invalid account ID"),
+    NO_TICKETS(2, "No ticket requests provided"),
+    NULL_REQUEST(3, "Null ticket request encountered"),
+    NULL_TICKET_TYPE(4, "Unexpected ticket type encountered: null"),
+    INVALID_TICKET_COUNT(5, "Invalid ticket count: Ticket count must be a positive number."),
+    INVALID_TOTAL(6, "Invalid ticket purchase: You must buy at least 1 ticket, and a maximum of 25 tickets can be purchased at a time."),
+    ADULT_REQUIRED(7, "Child and Infant tickets require an accompanying Adult ticket purchase."),
+    NULL_ORDER(8, "Null purchase order encountered"),
+    UNKNOWN_PROMO_CODE(9, "Unknown promotion code"),
+    ACCOUNT_LIMIT_EXCEEDED(10, "Purchase limit exceeded: too many tickets bought for this account in the current period."),
+    DUPLICATE_IN_PROGRESS(11, "A purchase with this idempotency key is already in progress"),
+    RATE_LIMITED(12, "Too many purchase requests: please try again shortly."),
+    PROMO_CODE_UNSUPPORTED(13, "Promotion codes are not supported by this ticket service");
+
+    private static final PurchaseRejection[] BY_CODE;
+
+    static {
+        PurchaseRejection[] rejections = values();
+        int maxCode = 0;
+        for (PurchaseRejection rejection : rejections) {
+            maxCode = Math.max(maxCode, rejection.code);
+        }
+        BY_CODE = new PurchaseRejection[maxCode + 1];
+        for (PurchaseRejection rejection : rejections) {
+            if (BY_CODE[rejection.code] != null) {
+                throw new ExceptionInInitializerError("Duplicate rejection code " + rejection.code);
+            }
+            BY_CODE[rejection.code] = rejection;
+        }
+    }
+
+    private final int code;
+    private final String message;
+    private final InvalidPurchaseException exception;
+
+    PurchaseRejection(int code, String message) {
+        this.code = code;
+        this.message = message;
+        this.exception = new InvalidPurchaseException(this);
+    }
+
+    // Null for 0 and for codes this version does not know
+    public static PurchaseRejection fromCode(int code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public InvalidPurchaseException exception() {
+        return exception;
+    }
+}
@@ -0,0 +1,18 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+
+// Seats could not be reserved after payment was taken; the result tracks the refund
+public class ReservationFailedException extends RuntimeException {
+
+    private final transient PurchaseResult result;
+
+    public ReservationFailedException(PurchaseResult result, Throwable cause) {
+        super(result.getFailureReason(), cause);
+        this.result = result;
+    }
+
+    public PurchaseResult getResult() {
+        return result;
+    }
+}
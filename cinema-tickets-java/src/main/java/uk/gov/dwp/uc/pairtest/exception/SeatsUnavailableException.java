@@ -0,0 +1,8 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+public class SeatsUnavailableException extends RuntimeException {
+
+    public SeatsUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,66 @@
+package uk.gov.dwp.uc.pairtest.history;
+
+/**
+ * Purchases, tickets per type and revenue for each hour of a time range, as computed by
+ * {@link PurchaseHistory#hourlyTotals}. Hour 0 starts at {@link #getFromMillis()}.
+ * <p>
+ * Revenue is kept per hour, not per ticket type per hour, next to the ticket counts per type. The
+ * purchase API records only a purchase's total, and group and promotion discounts apply to that
+ * total, so it cannot be split exactly between ticket types.
+ */
+public class HourlyTotals {
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    private final long fromMillis;
+    private final long[] purchases;
+    private final long[] adultTickets;
+    private final long[] childTickets;
+    private final long[] infantTickets;
+    private final long[] revenue;
+
+    HourlyTotals(long fromMillis, int hours) {
+        this.fromMillis = fromMillis;
+        this.purchases = new long[hours];
+        this.adultTickets = new long[hours];
+        this.childTickets = new long[hours];
+        this.infantTickets = new long[hours];
+        this.revenue = new long[hours];
+    }
+
+    void add(long epochMillis, int adults, int children, int infants, int amountPaid) {
+        int hour = (int) ((epochMillis - fromMillis) / MILLIS_PER_HOUR);
+        purchases[hour]++;
+        adultTickets[hour] += adults;
+        childTickets[hour] += children;
+        infantTickets[hour] += infants;
+        revenue[hour] += amountPaid;
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public int getHours() {
+        return purchases.length;
+    }
+
+    public long getPurchases(int hour) {
+        return purchases[hour];
+    }
+
+    public long getAdultTickets(int hour) {
+        return adultTickets[hour];
+    }
+
+    public long getChildTickets(int hour) {
+        return childTickets[hour];
+    }
+
+    public long getInfantTickets(int hour) {
+        return infantTickets[hour];
+    }
+
+    public long getRevenue(int hour) {
+        return revenue[hour];
+    }
+}
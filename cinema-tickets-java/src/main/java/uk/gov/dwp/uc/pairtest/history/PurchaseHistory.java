@@ -0,0 +1,273 @@
+package uk.gov.dwp.uc.pairtest.history;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory record of every completed purchase, for per-account limits, support lookups and
+ * reconciliation reports.
+ * <p>
+ * Purchases are stored column by column in fixed-size chunks of primitive arrays: account id and
+ * timestamp as {@code long}, amount as {@code int}, each ticket count as a {@code byte} (a purchase
+ * holds at most 25 tickets) and an {@code int} link to the account's previous purchase, about 27
+ * bytes per purchase with no object per purchase. Growing adds a chunk rather than copying columns.
+ * An open-addressing table of {@code long} account ids holds each account's latest purchase and
+ * running totals, so per-account totals are O(1) and an account's purchases are a walk along its
+ * links.
+ * <p>
+ * Appends are serialised; scans do not lock. A purchase is published by the volatile write of
+ * {@code size} after its columns are filled, and is never changed afterwards. Timestamps never
+ * decrease, so time-range scans start with a binary search.
+ */
+public class PurchaseHistory {
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int NONE = -1;
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    private final LongSupplier epochMillisClock;
+    private final AccountIndex index = new AccountIndex();
+    private volatile Chunk[] chunks = new Chunk[16];
+    private volatile int size;
+    // Guarded by this
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    public PurchaseHistory() {
+        this(System::currentTimeMillis);
+    }
+
+    public PurchaseHistory(LongSupplier epochMillisClock) {
+        this.epochMillisClock = Objects.requireNonNull(epochMillisClock, "Clock must not be null");
+    }
+
+    public synchronized void append(long accountId, int adults, int children, int infants, int amountPaid) {
+        if (accountId <= 0) {
+            throw new IllegalArgumentException("Account ID must be positive");
+        }
+        if (((adults | children | infants) & ~Byte.MAX_VALUE) != 0) {
+            throw new IllegalArgumentException("Ticket counts must be between 0 and " + Byte.MAX_VALUE);
+        }
+        int record = size;
+        if (record == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Purchase history is full");
+        }
+        Chunk chunk = chunkForAppend(record);
+        // A clock stepping back must not break the ordering range scans rely on
+        long timestamp = Math.max(lastTimestamp, epochMillisClock.getAsLong());
+        lastTimestamp = timestamp;
+        int i = record & CHUNK_MASK;
+        chunk.accountIds[i] = accountId;
+        chunk.timestamps[i] = timestamp;
+        chunk.amounts[i] = amountPaid;
+        chunk.adults[i] = (byte) adults;
+        chunk.children[i] = (byte) children;
+        chunk.infants[i] = (byte) infants;
+        chunk.previous[i] = index.add(accountId, record, adults + children + infants, amountPaid);
+        size = record + 1;
+    }
+
+    private Chunk chunkForAppend(int record) {
+        int chunkIndex = record >>> CHUNK_SHIFT;
+        Chunk[] current = chunks;
+        if (chunkIndex == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        if (current[chunkIndex] == null) {
+            current[chunkIndex] = new Chunk();
+            chunks = current;
+        }
+        return current[chunkIndex];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized int purchaseCount(long accountId) {
+        int slot = index.find(accountId);
+        return slot < 0 ? 0 : index.purchases[slot];
+    }
+
+    public synchronized long ticketsBought(long accountId) {
+        int slot = index.find(accountId);
+        return slot < 0 ? 0 : index.tickets[slot];
+    }
+
+    public synchronized long amountPaid(long accountId) {
+        int slot = index.find(accountId);
+        return slot < 0 ? 0 : index.amounts[slot];
+    }
+
+    // The account's purchases, newest first
+    public void forEachPurchase(long accountId, PurchaseVisitor visitor) {
+        int record;
+        synchronized (this) {
+            int slot = index.find(accountId);
+            record = slot < 0 ? NONE : index.heads[slot];
+        }
+        Chunk[] current = chunks;
+        while (record != NONE) {
+            Chunk chunk = current[record >>> CHUNK_SHIFT];
+            int i = record & CHUNK_MASK;
+            visitor.visit(chunk.accountIds[i], chunk.timestamps[i], chunk.adults[i], chunk.children[i], chunk.infants[i], chunk.amounts[i]);
+            record = chunk.previous[i];
+        }
+    }
+
+    // Purchases made in [fromMillis, toMillis), oldest first
+    public void forEachPurchase(long fromMillis, long toMillis, PurchaseVisitor visitor) {
+        int end = size;
+        Chunk[] current = chunks;
+        for (int record = firstAtOrAfter(current, end, fromMillis); record < end; record++) {
+            Chunk chunk = current[record >>> CHUNK_SHIFT];
+            int i = record & CHUNK_MASK;
+            if (chunk.timestamps[i] >= toMillis) {
+                return;
+            }
+            visitor.visit(chunk.accountIds[i], chunk.timestamps[i], chunk.adults[i], chunk.children[i], chunk.infants[i], chunk.amounts[i]);
+        }
+    }
+
+    // Totals per hour for purchases made in [fromMillis, toMillis), in one pass over the columns
+    public HourlyTotals hourlyTotals(long fromMillis, long toMillis) {
+        if (toMillis <= fromMillis) {
+            throw new IllegalArgumentException("Time range must not be empty");
+        }
+        long hours = (toMillis - fromMillis + MILLIS_PER_HOUR - 1) / MILLIS_PER_HOUR;
+        if (hours > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Time range is too long");
+        }
+        HourlyTotals totals = new HourlyTotals(fromMillis, (int) hours);
+        forEachPurchase(fromMillis, toMillis, (accountId, epochMillis, adults, children, infants, amountPaid) ->
+                totals.add(epochMillis, adults, children, infants, amountPaid));
+        return totals;
+    }
+
+    private static int firstAtOrAfter(Chunk[] current, int end, long epochMillis) {
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (current[mid >>> CHUNK_SHIFT].timestamps[mid & CHUNK_MASK] < epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Bytes held by the columns and the account index, excluding object headers
+    public synchronized long footprintBytes() {
+        long bytes = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk != null) {
+                bytes += (long) CHUNK_SIZE * Chunk.BYTES_PER_RECORD;
+            }
+        }
+        return bytes + (long) index.accounts.length * AccountIndex.BYTES_PER_SLOT;
+    }
+
+    private static final class Chunk {
+        private static final int BYTES_PER_RECORD = Long.BYTES * 2 + Integer.BYTES * 2 + 3;
+        private final long[] accountIds = new long[CHUNK_SIZE];
+        private final long[] timestamps = new long[CHUNK_SIZE];
+        private final int[] amounts = new int[CHUNK_SIZE];
+        private final byte[] adults = new byte[CHUNK_SIZE];
+        private final byte[] children = new byte[CHUNK_SIZE];
+        private final byte[] infants = new byte[CHUNK_SIZE];
+        // The same account's previous purchase, or NONE
+        private final int[] previous = new int[CHUNK_SIZE];
+    }
+
+    // Linear-probing table keyed by account id, 0 marking an empty slot since ids are positive
+    private static final class AccountIndex {
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final int BYTES_PER_SLOT = Long.BYTES * 3 + Integer.BYTES * 2;
+        private long[] accounts = new long[INITIAL_CAPACITY];
+        // Latest purchase of the account
+        private int[] heads = new int[INITIAL_CAPACITY];
+        private int[] purchases = new int[INITIAL_CAPACITY];
+        private long[] tickets = new long[INITIAL_CAPACITY];
+        private long[] amounts = new long[INITIAL_CAPACITY];
+        private int size;
+
+        // Makes the record the account's latest purchase and returns the one it replaces
+        private int add(long accountId, int record, int ticketCount, int amountPaid) {
+            int slot = find(accountId);
+            if (slot < 0) {
+                if ((size + 1) * 4 > accounts.length * 3) {
+                    grow();
+                }
+                slot = emptySlot(accountId);
+                accounts[slot] = accountId;
+                heads[slot] = NONE;
+                size++;
+            }
+            int previous = heads[slot];
+            heads[slot] = record;
+            purchases[slot]++;
+            tickets[slot] += ticketCount;
+            amounts[slot] += amountPaid;
+            return previous;
+        }
+
+        // Slot holding the account, or -1
+        private int find(long accountId) {
+            int mask = accounts.length - 1;
+            for (int slot = slotOf(accountId, mask); ; slot = (slot + 1) & mask) {
+                if (accounts[slot] == 0) {
+                    return -1;
+                }
+                if (accounts[slot] == accountId) {
+                    return slot;
+                }
+            }
+        }
+
+        private int emptySlot(long accountId) {
+            int mask = accounts.length - 1;
+            int slot = slotOf(accountId, mask);
+            while (accounts[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldAccounts = accounts;
+            int[] oldHeads = heads;
+            int[] oldPurchases = purchases;
+            long[] oldTickets = tickets;
+            long[] oldAmounts = amounts;
+            int capacity = oldAccounts.length * 2;
+            accounts = new long[capacity];
+            heads = new int[capacity];
+            purchases = new int[capacity];
+            tickets = new long[capacity];
+            amounts = new long[capacity];
+            for (int i = 0; i < oldAccounts.length; i++) {
+                if (oldAccounts[i] != 0) {
+                    int slot = emptySlot(oldAccounts[i]);
+                    accounts[slot] = oldAccounts[i];
+                    heads[slot] = oldHeads[i];
+                    purchases[slot] = oldPurchases[i];
+                    tickets[slot] = oldTickets[i];
+                    amounts[slot] = oldAmounts[i];
+                }
+            }
+        }
+
+        // Murmur3 finaliser, so sequential account ids spread over the table
+        private static int slotOf(long key, int mask) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            key *= 0xc4ceb9fe1a85ec53L;
+            key ^= key >>> 33;
+            return (int) key & mask;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package uk.gov.dwp.uc.pairtest.history;
+
+// Receives purchases from PurchaseHistory scans one at a time, as primitives, so a scan allocates nothing per purchase
+@FunctionalInterface
+public interface PurchaseVisitor {
+    void visit(long accountId, long epochMillis, int adults, int children, int infants, int amountPaid);
+}
@@ -0,0 +1,146 @@
+package uk.gov.dwp.uc.pairtest.idempotency;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of purchase outcomes by idempotency key.
+ * <p>
+ * Keys are spread over a fixed number of segments, each an access-ordered {@link LinkedHashMap}
+ * guarded by its own lock, so lookups and inserts are O(1) and concurrent callers only contend when
+ * their keys share a segment. Each segment holds at most {@code maxEntries / segments} keys and
+ * evicts its least recently used key beyond that, which fixes the memory footprint. Entries also
+ * expire a fixed time after they were written.
+ * <p>
+ * The value is a future so a duplicate that arrives while the original is still running waits for
+ * the original's outcome instead of starting a second purchase.
+ */
+public class IdempotencyCache {
+    private static final int DEFAULT_SEGMENTS = 64;
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    public IdempotencyCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, DEFAULT_SEGMENTS, System::nanoTime);
+    }
+
+    public IdempotencyCache(int maxEntries, Duration ttl, int segmentCount, LongSupplier nanoClock) {
+        if (maxEntries <= 0 || segmentCount <= 0) {
+            throw new IllegalArgumentException("Cache size and segment count must be positive");
+        }
+        int segmentsPowerOfTwo = Integer.highestOneBit(Math.min(segmentCount, maxEntries));
+        int perSegment = (maxEntries + segmentsPowerOfTwo - 1) / segmentsPowerOfTwo;
+        this.segments = new Segment[segmentsPowerOfTwo];
+        for (int i = 0; i < segmentsPowerOfTwo; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.segmentMask = segmentsPowerOfTwo - 1;
+        this.ttlNanos = Objects.requireNonNull(ttl, "TTL must not be null").toNanos();
+        this.nanoClock = Objects.requireNonNull(nanoClock, "Clock must not be null");
+    }
+
+    /**
+     * Registers {@code pending} as the outcome for {@code key} unless a live entry already exists.
+     * Returns the existing outcome, or null when the caller now owns the key and must complete
+     * {@code pending} (or {@link #remove} it on failure).
+     */
+    public CompletableFuture<PurchaseResult> putIfAbsent(String key, CompletableFuture<PurchaseResult> pending) {
+        Segment segment = segmentFor(key);
+        long now = nanoClock.getAsLong();
+        synchronized (segment) {
+            CachedOutcome existing = segment.get(key);
+            if (existing != null && now - existing.writtenAt < ttlNanos) {
+                return existing.outcome;
+            }
+            segment.put(key, new CachedOutcome(pending, now));
+            return null;
+        }
+    }
+
+    // Completed outcome for the key, or null when absent, expired or still in progress
+    public PurchaseResult getIfPresent(String key) {
+        Segment segment = segmentFor(key);
+        long now = nanoClock.getAsLong();
+        synchronized (segment) {
+            CachedOutcome entry = segment.get(key);
+            if (entry == null || now - entry.writtenAt >= ttlNanos || !entry.outcome.isDone() || entry.outcome.isCompletedExceptionally()) {
+                return null;
+            }
+            return entry.outcome.join();
+        }
+    }
+
+    // Forget a key so a retry runs again, but only if it still maps to the given outcome
+    public void remove(String key, CompletableFuture<PurchaseResult> outcome) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            CachedOutcome entry = segment.get(key);
+            if (entry != null && entry.outcome == outcome) {
+                segment.remove(key);
+            }
+        }
+    }
+
+    // Drop expired entries; eviction by size needs no sweeping, this only reclaims memory sooner
+    public void purgeExpired() {
+        long now = nanoClock.getAsLong();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<CachedOutcome> entries = segment.values().iterator();
+                while (entries.hasNext()) {
+                    if (now - entries.next().writtenAt >= ttlNanos) {
+                        entries.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    private static final class CachedOutcome {
+        private final CompletableFuture<PurchaseResult> outcome;
+        private final long writtenAt;
+
+        private CachedOutcome(CompletableFuture<PurchaseResult> outcome, long writtenAt) {
+            this.outcome = outcome;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<String, CachedOutcome> {
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedOutcome> eldest) {
+            return size() > capacity;
+        }
+    }
+}
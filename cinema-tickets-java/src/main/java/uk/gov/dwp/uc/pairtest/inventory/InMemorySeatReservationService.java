@@ -0,0 +1,70 @@
+package uk.gov.dwp.uc.pairtest.inventory;
+
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.exception.SeatsUnavailableException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Seat inventory for many screens and showings, held in memory. Each showing is a
+ * {@link ShowingSeatMap}; {@link #reserveSeat(long, int)} books against the default showing so the
+ * service can stand in for the third-party {@link SeatReservationService}.
+ */
+public class InMemorySeatReservationService implements SeatReservationService {
+    private final ConcurrentMap<Long, ShowingSeatMap> showings = new ConcurrentHashMap<>();
+    private final long defaultShowingId;
+
+    public InMemorySeatReservationService(long defaultShowingId, int rows, int seatsPerRow) {
+        this.defaultShowingId = defaultShowingId;
+        addShowing(defaultShowingId, rows, seatsPerRow);
+    }
+
+    public ShowingSeatMap addShowing(long showingId, int rows, int seatsPerRow) {
+        ShowingSeatMap seatMap = new ShowingSeatMap(showingId, rows, seatsPerRow);
+        if (showings.putIfAbsent(showingId, seatMap) != null) {
+            throw new IllegalArgumentException("Showing already exists: " + showingId);
+        }
+        return seatMap;
+    }
+
+    public ShowingSeatMap showing(long showingId) {
+        ShowingSeatMap seatMap = showings.get(showingId);
+        if (seatMap == null) {
+            throw new IllegalArgumentException("Unknown showing: " + showingId);
+        }
+        return seatMap;
+    }
+
+    public boolean hasShowing(long showingId) {
+        return showings.containsKey(showingId);
+    }
+
+    public Collection<ShowingSeatMap> showings() {
+        return Collections.unmodifiableCollection(showings.values());
+    }
+
+    public long getDefaultShowingId() {
+        return defaultShowingId;
+    }
+
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        reserveSeats(defaultShowingId, totalSeatsToAllocate);
+    }
+
+    // Best available seats, kept together in one row when a block that size is free
+    public SeatAllocation reserveSeats(long showingId, int totalSeatsToAllocate) {
+        SeatAllocation allocation = showing(showingId).reserveBestAvailable(totalSeatsToAllocate);
+        if (allocation == null) {
+            throw new SeatsUnavailableException("Not enough seats available for showing " + showingId + ": requested " + totalSeatsToAllocate);
+        }
+        return allocation;
+    }
+
+    public void release(SeatAllocation allocation) {
+        showing(allocation.getShowingId()).release(allocation);
+    }
+}
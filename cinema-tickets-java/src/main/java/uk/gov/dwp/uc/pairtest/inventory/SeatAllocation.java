@@ -0,0 +1,36 @@
+package uk.gov.dwp.uc.pairtest.inventory;
+
+import java.util.Arrays;
+
+/**
+ * Immutable Object
+ */
+
+public final class SeatAllocation {
+
+    private final long showingId;
+    private final int[] seats;
+
+    public SeatAllocation(long showingId, int[] seats) {
+        this.showingId = showingId;
+        this.seats = seats.clone();
+    }
+
+    public long getShowingId() {
+        return showingId;
+    }
+
+    // Seat numbers are row * seatsPerRow + position within the row
+    public int[] getSeats() {
+        return seats.clone();
+    }
+
+    public int size() {
+        return seats.length;
+    }
+
+    @Override
+    public String toString() {
+        return "SeatAllocation[showing=" + showingId + ", seats=" + Arrays.toString(seats) + "]";
+    }
+}
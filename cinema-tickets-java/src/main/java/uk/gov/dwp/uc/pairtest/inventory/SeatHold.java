@@ -0,0 +1,54 @@
+package uk.gov.dwp.uc.pairtest.inventory;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Seats taken out of a showing's inventory for one account while it pays. A hold ends exactly once:
+ * confirmed, released, or expired.
+ */
+public final class SeatHold {
+
+    public enum State {
+        HELD,
+        CONFIRMED,
+        RELEASED,
+        EXPIRED
+    }
+
+    private final long holdId;
+    private final long accountId;
+    private final SeatAllocation allocation;
+    private final AtomicReference<State> state = new AtomicReference<>(State.HELD);
+
+    SeatHold(long holdId, long accountId, SeatAllocation allocation) {
+        this.holdId = holdId;
+        this.accountId = accountId;
+        this.allocation = allocation;
+    }
+
+    public long getHoldId() {
+        return holdId;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public SeatAllocation getAllocation() {
+        return allocation;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    // Ends the hold if it is still held; false if it has already ended
+    boolean end(State outcome) {
+        return state.compareAndSet(State.HELD, outcome);
+    }
+
+    @Override
+    public String toString() {
+        return "SeatHold[id=" + holdId + ", account=" + accountId + ", " + allocation + ", " + state.get() + "]";
+    }
+}
@@ -0,0 +1,109 @@
+package uk.gov.dwp.uc.pairtest.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.dwp.uc.pairtest.exception.HoldExpiredException;
+import uk.gov.dwp.uc.pairtest.timer.HierarchicalTimingWheel;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reserve-then-pay seat holds over an {@link InMemorySeatReservationService}.
+ * <p>
+ * {@link #hold} takes seats out of the showing straight away; the purchase then pays and
+ * {@link #confirm}s the hold, or {@link #release}s it if payment fails. Holds never confirmed are
+ * expired by a {@link HierarchicalTimingWheel} on its own thread, which returns their seats to the
+ * showing; expiring a hold is O(1) and never scans the outstanding holds. Confirmed and released
+ * holds stay in the wheel until their expiry time and are then ignored.
+ */
+public class SeatHoldService implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeatHoldService.class);
+    private final InMemorySeatReservationService inventory;
+    private final Duration holdTime;
+    private final HierarchicalTimingWheel<SeatHold> expiryWheel;
+    private final AtomicLong nextHoldId = new AtomicLong();
+    private final AtomicInteger activeHolds = new AtomicInteger();
+    private final AtomicLong expiredHolds = new AtomicLong();
+
+    public SeatHoldService(InMemorySeatReservationService inventory, Duration holdTime) {
+        this(inventory, holdTime, Duration.ofMillis(10));
+    }
+
+    public SeatHoldService(InMemorySeatReservationService inventory, Duration holdTime, Duration tick) {
+        this.inventory = Objects.requireNonNull(inventory, "Seat inventory must not be null");
+        this.holdTime = Objects.requireNonNull(holdTime, "Hold time must not be null");
+        if (holdTime.isNegative() || holdTime.compareTo(HierarchicalTimingWheel.horizon(tick)) > 0) {
+            throw new IllegalArgumentException("Hold time must be between zero and " + HierarchicalTimingWheel.horizon(tick));
+        }
+        this.expiryWheel = new HierarchicalTimingWheel<>(tick, this::expire, "seat-hold-expiry");
+    }
+
+    /**
+     * Holds the best available seats for the account.
+     *
+     * @throws uk.gov.dwp.uc.pairtest.exception.SeatsUnavailableException if the showing has too few seats left
+     * @throws IllegalStateException if the service has been closed
+     */
+    public SeatHold hold(long accountId, long showingId, int seatCount) {
+        SeatAllocation allocation = inventory.reserveSeats(showingId, seatCount);
+        SeatHold hold = new SeatHold(nextHoldId.incrementAndGet(), accountId, allocation);
+        activeHolds.incrementAndGet();
+        try {
+            expiryWheel.schedule(hold, holdTime);
+        } catch (RuntimeException e) {
+            // Nothing would ever expire the hold, so its seats go straight back
+            release(hold);
+            throw e;
+        }
+        return hold;
+    }
+
+    /**
+     * Makes the held seats the account's for good.
+     *
+     * @throws HoldExpiredException if the hold has already expired or been released
+     */
+    public SeatAllocation confirm(SeatHold hold) {
+        if (!hold.end(SeatHold.State.CONFIRMED)) {
+            throw new HoldExpiredException("Seat hold " + hold.getHoldId() + " is no longer held: " + hold.getState());
+        }
+        activeHolds.decrementAndGet();
+        return hold.getAllocation();
+    }
+
+    // Returns the seats to the showing; false if the hold had already ended
+    public boolean release(SeatHold hold) {
+        if (!hold.end(SeatHold.State.RELEASED)) {
+            return false;
+        }
+        activeHolds.decrementAndGet();
+        inventory.release(hold.getAllocation());
+        return true;
+    }
+
+    private void expire(SeatHold hold) {
+        if (hold.end(SeatHold.State.EXPIRED)) {
+            activeHolds.decrementAndGet();
+            expiredHolds.incrementAndGet();
+            inventory.release(hold.getAllocation());
+            LOGGER.debug("Expired {}", hold);
+        }
+    }
+
+    public int activeHolds() {
+        return activeHolds.get();
+    }
+
+    public long expiredHolds() {
+        return expiredHolds.get();
+    }
+
+    // Stops expiring holds; holds still outstanding keep their seats
+    @Override
+    public void close() {
+        expiryWheel.close();
+    }
+}
@@ -0,0 +1,232 @@
+package uk.gov.dwp.uc.pairtest.inventory;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Seat occupancy for one showing. Each row is a single {@code long} occupancy word (bit set means
+ * taken), so a row holds at most 64 seats and a contiguous block within a row is claimed with one
+ * compare-and-set. A separate counter of unclaimed seats is decremented before any bits are set,
+ * which stops the showing being oversold and guarantees that a thread holding a count will find
+ * enough free bits.
+ */
+public final class ShowingSeatMap {
+    public static final int MAX_SEATS_PER_ROW = Long.SIZE;
+
+    private final long showingId;
+    private final int rows;
+    private final int seatsPerRow;
+    private final long rowMask;
+    private final AtomicLongArray occupancy;
+    private final AtomicInteger unclaimedSeats;
+    // Rows in order of preference: the row two thirds of the way back first, then outwards
+    private final int[] rowPreference;
+
+    public ShowingSeatMap(long showingId, int rows, int seatsPerRow) {
+        if (rows <= 0 || seatsPerRow <= 0 || seatsPerRow > MAX_SEATS_PER_ROW) {
+            throw new IllegalArgumentException("A showing needs at least one row and between 1 and " + MAX_SEATS_PER_ROW + " seats per row");
+        }
+        this.showingId = showingId;
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+        this.rowMask = seatsPerRow == Long.SIZE ? -1L : (1L << seatsPerRow) - 1;
+        this.occupancy = new AtomicLongArray(rows);
+        this.unclaimedSeats = new AtomicInteger(rows * seatsPerRow);
+        int sweetSpot = (rows * 2) / 3;
+        this.rowPreference = IntStream.range(0, rows).boxed()
+                .sorted(Comparator.comparingInt(row -> Math.abs(row - sweetSpot)))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    public long getShowingId() {
+        return showingId;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    public int capacity() {
+        return rows * seatsPerRow;
+    }
+
+    public int availableSeats() {
+        return unclaimedSeats.get();
+    }
+
+    // Returns null when the showing does not have that many seats left
+    public SeatAllocation reserveBestAvailable(int seatCount) {
+        if (seatCount <= 0) {
+            throw new IllegalArgumentException("Seat count must be positive");
+        }
+        if (!claimCount(seatCount)) {
+            return null;
+        }
+        int[] seats = seatCount <= seatsPerRow ? claimContiguous(seatCount) : null;
+        if (seats == null) {
+            seats = claimScattered(seatCount);
+        }
+        return new SeatAllocation(showingId, seats);
+    }
+
+    public void release(SeatAllocation allocation) {
+        if (allocation.getShowingId() != showingId) {
+            throw new IllegalArgumentException("Allocation belongs to showing " + allocation.getShowingId());
+        }
+        release(allocation.getSeats());
+    }
+
+    // Frees seats previously returned by reserveBestAvailable or claimed with claimSeats
+    public void release(int[] seats) {
+        for (int seat : seats) {
+            int row = seat / seatsPerRow;
+            long bit = 1L << (seat % seatsPerRow);
+            long word;
+            do {
+                word = occupancy.get(row);
+                if ((word & bit) == 0) {
+                    throw new IllegalStateException("Seat " + seat + " of showing " + showingId + " is not reserved");
+                }
+            } while (!occupancy.compareAndSet(row, word, word & ~bit));
+        }
+        unclaimedSeats.addAndGet(seats.length);
+    }
+
+    // Marks specific seats as taken, e.g. when restoring state; returns false, changing nothing, if any is already taken
+    public boolean claimSeats(int[] seats) {
+        if (!claimCount(seats.length)) {
+            return false;
+        }
+        for (int i = 0; i < seats.length; i++) {
+            int row = seats[i] / seatsPerRow;
+            long bit = 1L << (seats[i] % seatsPerRow);
+            long word;
+            do {
+                word = occupancy.get(row);
+                if ((word & bit) != 0) {
+                    release(Arrays.copyOf(seats, i));
+                    unclaimedSeats.addAndGet(seats.length - i);
+                    return false;
+                }
+            } while (!occupancy.compareAndSet(row, word, word | bit));
+        }
+        return true;
+    }
+
+    // Replaces the occupancy words wholesale when restoring a snapshot, before the showing is shared
+    public void restoreOccupancy(long[] words) {
+        if (words.length != rows) {
+            throw new IllegalArgumentException("Expected " + rows + " occupancy words, got " + words.length);
+        }
+        int taken = 0;
+        for (int row = 0; row < rows; row++) {
+            long word = words[row] & rowMask;
+            occupancy.set(row, word);
+            taken += Long.bitCount(word);
+        }
+        unclaimedSeats.set(capacity() - taken);
+    }
+
+    public boolean isReserved(int seat) {
+        return (occupancy.get(seat / seatsPerRow) & (1L << (seat % seatsPerRow))) != 0;
+    }
+
+    // Snapshot of the occupancy words, one per row
+    public long[] occupancy() {
+        long[] words = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            words[row] = occupancy.get(row);
+        }
+        return words;
+    }
+
+    private boolean claimCount(int seatCount) {
+        int available;
+        do {
+            available = unclaimedSeats.get();
+            if (available < seatCount) {
+                return false;
+            }
+        } while (!unclaimedSeats.compareAndSet(available, available - seatCount));
+        return true;
+    }
+
+    private int[] claimContiguous(int seatCount) {
+        long block = seatCount == Long.SIZE ? -1L : (1L << seatCount) - 1;
+        for (int row : rowPreference) {
+            while (true) {
+                long word = occupancy.get(row);
+                int start = bestRunStart(~word & rowMask, seatCount);
+                if (start < 0) {
+                    break;
+                }
+                if (occupancy.compareAndSet(row, word, word | (block << start))) {
+                    int[] seats = new int[seatCount];
+                    for (int i = 0; i < seatCount; i++) {
+                        seats[i] = row * seatsPerRow + start + i;
+                    }
+                    return seats;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Start of the run of free seats closest to the centre of the row, or -1 when there is no such run
+    private int bestRunStart(long free, int seatCount) {
+        long starts = free;
+        for (int i = 1; i < seatCount && starts != 0; i++) {
+            starts &= free >>> i;
+        }
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        int centre = seatsPerRow - seatCount;
+        while (starts != 0) {
+            int start = Long.numberOfTrailingZeros(starts);
+            // Twice the distance between the run's centre and the row's centre, to stay in integers
+            int distance = Math.abs(2 * start - centre);
+            if (distance < bestDistance) {
+                best = start;
+                bestDistance = distance;
+            }
+            starts &= starts - 1;
+        }
+        return best;
+    }
+
+    // Fill best rows first with whatever seats are free; the claimed count guarantees enough free bits exist
+    private int[] claimScattered(int seatCount) {
+        int[] seats = new int[seatCount];
+        int claimed = 0;
+        while (claimed < seatCount) {
+            for (int i = 0; i < rowPreference.length && claimed < seatCount; i++) {
+                int row = rowPreference[i];
+                long word = occupancy.get(row);
+                long free = ~word & rowMask;
+                long take = 0;
+                int taking = 0;
+                while (free != 0 && claimed + taking < seatCount) {
+                    long bit = Long.lowestOneBit(free);
+                    take |= bit;
+                    free &= ~bit;
+                    taking++;
+                }
+                if (take != 0 && occupancy.compareAndSet(row, word, word | take)) {
+                    while (take != 0) {
+                        seats[claimed++] = row * seatsPerRow + Long.numberOfTrailingZeros(take);
+                        take &= take - 1;
+                    }
+                }
+            }
+        }
+        Arrays.sort(seats);
+        return seats;
+    }
+}
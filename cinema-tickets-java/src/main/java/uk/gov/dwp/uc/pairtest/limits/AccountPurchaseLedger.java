@@ -0,0 +1,184 @@
+package uk.gov.dwp.uc.pairtest.limits;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Tickets bought per account in fixed time windows, with a cap per window.
+ * <p>
+ * Accounts are spread over a power-of-two number of stripes by a hash of the primitive account id.
+ * Each stripe has its own lock and its own open-addressing table of {@code long} keys, so purchases
+ * for different accounts rarely contend and no {@code Long} keys or entry objects are allocated,
+ * while purchases for the same account are serialised by their stripe's lock.
+ */
+public class AccountPurchaseLedger {
+    private final int maxTicketsPerWindow;
+    private final long windowMillis;
+    private final Clock clock;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public AccountPurchaseLedger(int maxTicketsPerWindow, Duration window) {
+        this(maxTicketsPerWindow, window, Clock.systemUTC(), Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public AccountPurchaseLedger(int maxTicketsPerWindow, Duration window, Clock clock, int concurrency) {
+        if (maxTicketsPerWindow <= 0) {
+            throw new IllegalArgumentException("Maximum tickets per window must be positive");
+        }
+        this.maxTicketsPerWindow = maxTicketsPerWindow;
+        this.windowMillis = Objects.requireNonNull(window, "Window must not be null").toMillis();
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window must be at least one millisecond");
+        }
+        this.clock = Objects.requireNonNull(clock, "Clock must not be null");
+        int stripeCount = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    public int getMaxTicketsPerWindow() {
+        return maxTicketsPerWindow;
+    }
+
+    // Records the tickets if they fit in the account's allowance for the current window
+    public boolean tryAcquire(long accountId, int tickets) {
+        long hash = mix(accountId);
+        Stripe stripe = stripes[(int) hash & stripeMask];
+        long window = clock.millis() / windowMillis;
+        synchronized (stripe) {
+            return stripe.tryAdd(accountId, hash, window, tickets, maxTicketsPerWindow);
+        }
+    }
+
+    // Gives back tickets acquired for a purchase that did not go ahead
+    public void release(long accountId, int tickets) {
+        long hash = mix(accountId);
+        Stripe stripe = stripes[(int) hash & stripeMask];
+        long window = clock.millis() / windowMillis;
+        synchronized (stripe) {
+            stripe.subtract(accountId, hash, window, tickets);
+        }
+    }
+
+    public int ticketsInCurrentWindow(long accountId) {
+        long hash = mix(accountId);
+        Stripe stripe = stripes[(int) hash & stripeMask];
+        long window = clock.millis() / windowMillis;
+        synchronized (stripe) {
+            return stripe.used(accountId, hash, window);
+        }
+    }
+
+    // Murmur3 finaliser; the low bits pick the stripe and the high bits the slot
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    // Linear-probing table; entries from earlier windows are dropped when the table is rebuilt
+    private static final class Stripe {
+        private static final int INITIAL_CAPACITY = 16;
+        private boolean[] occupied = new boolean[INITIAL_CAPACITY];
+        private long[] accounts = new long[INITIAL_CAPACITY];
+        private long[] windows = new long[INITIAL_CAPACITY];
+        private int[] used = new int[INITIAL_CAPACITY];
+        private int size;
+
+        private boolean tryAdd(long accountId, long hash, long window, int tickets, int max) {
+            int slot = find(accountId, hash);
+            if (slot < 0) {
+                if (tickets > max) {
+                    return false;
+                }
+                insert(accountId, hash, window, tickets);
+                return true;
+            }
+            int current = windows[slot] == window ? used[slot] : 0;
+            if (current + tickets > max) {
+                return false;
+            }
+            windows[slot] = window;
+            used[slot] = current + tickets;
+            return true;
+        }
+
+        private void subtract(long accountId, long hash, long window, int tickets) {
+            int slot = find(accountId, hash);
+            // Nothing to give back if the window has already rolled over
+            if (slot >= 0 && windows[slot] == window) {
+                used[slot] = Math.max(0, used[slot] - tickets);
+            }
+        }
+
+        private int used(long accountId, long hash, long window) {
+            int slot = find(accountId, hash);
+            return slot >= 0 && windows[slot] == window ? used[slot] : 0;
+        }
+
+        // Slot holding the account, or -1
+        private int find(long accountId, long hash) {
+            int mask = accounts.length - 1;
+            for (int slot = (int) (hash >>> 32) & mask; ; slot = (slot + 1) & mask) {
+                if (!occupied[slot]) {
+                    return -1;
+                }
+                if (accounts[slot] == accountId) {
+                    return slot;
+                }
+            }
+        }
+
+        private void insert(long accountId, long hash, long window, int tickets) {
+            if ((size + 1) * 4 > accounts.length * 3) {
+                rebuild(window);
+            }
+            int mask = accounts.length - 1;
+            int slot = (int) (hash >>> 32) & mask;
+            while (occupied[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            occupied[slot] = true;
+            accounts[slot] = accountId;
+            windows[slot] = window;
+            used[slot] = tickets;
+            size++;
+        }
+
+        // Drop accounts whose window has passed, growing only if the live entries still fill the table
+        private void rebuild(long currentWindow) {
+            boolean[] oldOccupied = occupied;
+            long[] oldAccounts = accounts;
+            long[] oldWindows = windows;
+            int[] oldUsed = used;
+            int live = 0;
+            for (int i = 0; i < oldAccounts.length; i++) {
+                if (oldOccupied[i] && oldWindows[i] == currentWindow && oldUsed[i] > 0) {
+                    live++;
+                }
+            }
+            int capacity = oldAccounts.length;
+            while ((live + 1) * 2 > capacity) {
+                capacity <<= 1;
+            }
+            occupied = new boolean[capacity];
+            accounts = new long[capacity];
+            windows = new long[capacity];
+            used = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldAccounts.length; i++) {
+                if (oldOccupied[i] && oldWindows[i] == currentWindow && oldUsed[i] > 0) {
+                    insert(oldAccounts[i], mix(oldAccounts[i]), oldWindows[i], oldUsed[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link PurchaseMetrics} built from {@link LongAdder} counters and {@link LatencyHistogram}s,
+ * cheap enough to leave on in production. Register it with an MBean server to read it over JMX.
+ */
+public class DefaultPurchaseMetrics implements PurchaseMetrics, PurchaseMetricsMXBean {
+    public static final String OBJECT_NAME = "uk.gov.dwp.uc.pairtest:type=PurchaseMetrics";
+
+    private static final PurchaseRejection[] REJECTIONS = PurchaseRejection.values();
+    private static final TicketTypeRequest.Type[] TYPES = TicketTypeRequest.Type.values();
+
+    // Indexed by PurchaseRejection ordinal; the extra last counter is for rejections without a reason
+    private final LongAdder[] rejections = newAdders(REJECTIONS.length + 1);
+    // Indexed by TicketTypeRequest.Type ordinal
+    private final LongAdder[] ticketsSold = newAdders(TYPES.length);
+    private final LatencyHistogram validationLatency = new LatencyHistogram();
+    private final LatencyHistogram paymentLatency = new LatencyHistogram();
+    private final LatencyHistogram reservationLatency = new LatencyHistogram();
+
+    private static LongAdder[] newAdders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    public void register(MBeanServer server) throws JMException {
+        server.registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    @Override
+    public void rejected(PurchaseRejection rejection) {
+        rejections[rejection == null ? REJECTIONS.length : rejection.ordinal()].increment();
+    }
+
+    @Override
+    public void ticketsSold(int adults, int children, int infants) {
+        ticketsSold[TicketTypeRequest.Type.ADULT.ordinal()].add(adults);
+        ticketsSold[TicketTypeRequest.Type.CHILD.ordinal()].add(children);
+        ticketsSold[TicketTypeRequest.Type.INFANT.ordinal()].add(infants);
+    }
+
+    @Override
+    public void recordValidation(long nanos) {
+        validationLatency.record(nanos);
+    }
+
+    @Override
+    public void recordPayment(long nanos) {
+        paymentLatency.record(nanos);
+    }
+
+    @Override
+    public void recordReservation(long nanos) {
+        reservationLatency.record(nanos);
+    }
+
+    public long rejections(PurchaseRejection rejection) {
+        return rejections[rejection.ordinal()].sum();
+    }
+
+    public long ticketsSold(TicketTypeRequest.Type type) {
+        return ticketsSold[type.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getRejections() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (PurchaseRejection rejection : REJECTIONS) {
+            snapshot.put(rejection.name(), rejections[rejection.ordinal()].sum());
+        }
+        snapshot.put("OTHER", rejections[REJECTIONS.length].sum());
+        return snapshot;
+    }
+
+    @Override
+    public Map<String, Long> getTicketsSold() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (TicketTypeRequest.Type type : TYPES) {
+            snapshot.put(type.name(), ticketsSold[type.ordinal()].sum());
+        }
+        return snapshot;
+    }
+
+    @Override
+    public LatencySnapshot getValidationLatency() {
+        return validationLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getPaymentLatency() {
+        return paymentLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getReservationLatency() {
+        return reservationLatency.snapshot();
+    }
+}
@@ -0,0 +1,47 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+
+/**
+ * Instrumentation hooks called on the purchase path. Implementations are called on every purchase,
+ * from many threads at once, so they must be thread-safe and must not block or allocate.
+ * Latencies are in nanoseconds.
+ */
+public interface PurchaseMetrics {
+
+    // Records nothing; the default when a service is not instrumented
+    PurchaseMetrics NOOP = new PurchaseMetrics() {
+        @Override
+        public void rejected(PurchaseRejection rejection) {
+        }
+
+        @Override
+        public void ticketsSold(int adults, int children, int infants) {
+        }
+
+        @Override
+        public void recordValidation(long nanos) {
+        }
+
+        @Override
+        public void recordPayment(long nanos) {
+        }
+
+        @Override
+        public void recordReservation(long nanos) {
+        }
+    };
+
+    void rejected(PurchaseRejection rejection);
+
+    void ticketsSold(int adults, int children, int infants);
+
+    // Time to validate and price an order
+    void recordValidation(long nanos);
+
+    // Time spent in TicketPaymentService.makePayment
+    void recordPayment(long nanos);
+
+    // Time spent in SeatReservationService.reserveSeat
+    void recordReservation(long nanos);
+}
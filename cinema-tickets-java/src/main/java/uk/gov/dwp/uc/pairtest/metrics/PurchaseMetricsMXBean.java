@@ -0,0 +1,17 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import java.util.Map;
+
+// JMX view of the purchase metrics; every attribute is a fresh snapshot
+public interface PurchaseMetricsMXBean {
+
+    Map<String, Long> getRejections();
+
+    Map<String, Long> getTicketsSold();
+
+    LatencySnapshot getValidationLatency();
+
+    LatencySnapshot getPaymentLatency();
+
+    LatencySnapshot getReservationLatency();
+}
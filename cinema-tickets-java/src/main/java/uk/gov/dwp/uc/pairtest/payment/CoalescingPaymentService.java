@@ -0,0 +1,224 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thirdparty.paymentgateway.BatchTicketPaymentService;
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.exception.OutcomeUnknownException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent payments into micro-batches sent with one
+ * {@link BatchTicketPaymentService#makePayments} call each.
+ * <p>
+ * A dispatcher thread takes the first waiting payment, waits for one of {@code maxConcurrentBatches}
+ * batch slots, then keeps collecting until the batch holds {@code maxBatchSize} payments or the batch
+ * window has passed, and hands the batch to the executor. Payments that arrive while every slot is
+ * busy queue up and go out together in the next batch. The window follows the observed arrival rate: it is the
+ * time expected to fill a batch, capped at {@code maxWindow}, and zero when payments arrive too
+ * slowly for waiting to gather a second one, so a quiet system adds no latency.
+ * <p>
+ * If a batch call fails, every payment in it fails with an {@link OutcomeUnknownException} caused by the
+ * gateway's exception. The gateway does not say which payments it took before failing, so none is
+ * resent, since retrying could charge a customer twice; the caller refunds them instead.
+ * <p>
+ * Closing waits a bounded time for queued payments to go out. If no batch slot frees up in that time,
+ * because a gateway call has hung, the payments still queued fail with a
+ * {@link RejectedExecutionException}, having never been sent.
+ */
+public class CoalescingPaymentService implements TicketPaymentService, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingPaymentService.class);
+    // Weight of the newest inter-arrival gap in the moving average
+    private static final double GAP_SMOOTHING = 0.2;
+    private static final long CLOSE_WAIT_MILLIS = 5_000;
+
+    private final BatchTicketPaymentService gateway;
+    private final ExecutorService executor;
+    private final int maxBatchSize;
+    private final long maxWindowNanos;
+    private final Semaphore batchSlots;
+    private final BlockingQueue<Payment> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    // Only touched by the dispatcher
+    private double averageGapNanos = Double.MAX_VALUE;
+    private long lastArrival;
+    private volatile long windowNanos;
+
+    public CoalescingPaymentService(BatchTicketPaymentService gateway, ExecutorService executor, int maxBatchSize, Duration maxWindow,
+                                    int maxConcurrentBatches) {
+        this.gateway = Objects.requireNonNull(gateway, "PaymentService must not be null");
+        this.executor = Objects.requireNonNull(executor, "Executor must not be null");
+        if (maxBatchSize <= 0 || maxConcurrentBatches <= 0) {
+            throw new IllegalArgumentException("Batch size and concurrent batches must be positive");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxWindowNanos = Objects.requireNonNull(maxWindow, "Batch window must not be null").toNanos();
+        this.batchSlots = new Semaphore(maxConcurrentBatches);
+        this.dispatcher = new Thread(this::dispatch, "payment-coalescer");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    // Queue a payment; the future completes once the gateway has taken it, or with the gateway's exception
+    public CompletableFuture<Void> submit(long accountId, int totalAmountToPay) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Payment coalescer is closed"));
+        }
+        Payment payment = new Payment(accountId, totalAmountToPay);
+        queue.add(payment);
+        // Closed while queueing: the dispatcher may already have drained the queue for the last time
+        if (!running && queue.remove(payment)) {
+            payment.outcome.completeExceptionally(new RejectedExecutionException("Payment coalescer is closed"));
+        }
+        return payment.outcome;
+    }
+
+    // Blocks the calling thread until its payment has been taken as part of a batch
+    @Override
+    public void makePayment(long accountId, int totalAmountToPay) {
+        try {
+            submit(accountId, totalAmountToPay).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    // Current batch window, for monitoring
+    public Duration currentWindow() {
+        return Duration.ofNanos(windowNanos);
+    }
+
+    private void dispatch() {
+        // Payments taken off the queue but not yet handed to the executor
+        List<Payment> batch = List.of();
+        try {
+            while (running || !queue.isEmpty()) {
+                Payment first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                observeArrival(first.arrivedAt);
+                // Waiting for a free slot before collecting lets the batch grow while the gateway is busy
+                batchSlots.acquire();
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Payment next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    observeArrival(next.arrivedAt);
+                }
+                List<Payment> sending = batch;
+                batch = List.of();
+                try {
+                    executor.execute(() -> send(sending));
+                } catch (RejectedExecutionException e) {
+                    batchSlots.release();
+                    fail(sending, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Payment> abandoned = new ArrayList<>(batch);
+        queue.drainTo(abandoned);
+        fail(abandoned, new RejectedExecutionException("Payment coalescer is closed"));
+    }
+
+    private void observeArrival(long arrivedAt) {
+        if (lastArrival != 0) {
+            double gap = Math.max(0, arrivedAt - lastArrival);
+            averageGapNanos = averageGapNanos == Double.MAX_VALUE ? gap : averageGapNanos + GAP_SMOOTHING * (gap - averageGapNanos);
+        }
+        lastArrival = Math.max(lastArrival, arrivedAt);
+        // No point waiting when not even one more payment is expected within the maximum window
+        windowNanos = averageGapNanos > maxWindowNanos ? 0 : (long) Math.min(maxWindowNanos, averageGapNanos * (maxBatchSize - 1));
+    }
+
+    private void send(List<Payment> batch) {
+        try {
+            if (batch.size() == 1) {
+                sendOne(batch.get(0));
+                return;
+            }
+            long[] accountIds = new long[batch.size()];
+            int[] amounts = new int[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                accountIds[i] = batch.get(i).accountId;
+                amounts[i] = batch.get(i).amount;
+            }
+            try {
+                gateway.makePayments(accountIds, amounts);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Batch of {} payments failed; some may have been taken: {}", batch.size(), e.getMessage());
+                fail(batch, new OutcomeUnknownException("Batch payment failed; this payment may have been taken", e));
+                return;
+            }
+            for (Payment payment : batch) {
+                payment.outcome.complete(null);
+            }
+        } finally {
+            batchSlots.release();
+        }
+    }
+
+    private void sendOne(Payment payment) {
+        try {
+            gateway.makePayment(payment.accountId, payment.amount);
+            payment.outcome.complete(null);
+        } catch (RuntimeException e) {
+            payment.outcome.completeExceptionally(e);
+        }
+    }
+
+    private static void fail(List<Payment> payments, RuntimeException failure) {
+        for (Payment payment : payments) {
+            payment.outcome.completeExceptionally(failure);
+        }
+    }
+
+    // Stops accepting payments; those already queued are still sent unless no batch slot frees up in time
+    @Override
+    public void close() {
+        running = false;
+        try {
+            dispatcher.join(CLOSE_WAIT_MILLIS);
+            if (dispatcher.isAlive()) {
+                LOGGER.warn("No payment batch finished within {} ms of closing; failing the payments still queued", CLOSE_WAIT_MILLIS);
+                dispatcher.interrupt();
+                dispatcher.join(CLOSE_WAIT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Payment {
+        private final long accountId;
+        private final int amount;
+        private final long arrivedAt = System.nanoTime();
+        private final CompletableFuture<Void> outcome = new CompletableFuture<>();
+
+        private Payment(long accountId, int amount) {
+            this.accountId = accountId;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package uk.gov.dwp.uc.pairtest.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact image of the inventory: one occupancy word per row of every showing plus the order
+ * totals, taken when journal segment {@code segment} was started. Recovery loads it and replays
+ * that segment and every later one. The file is renamed into place only once complete, and ends
+ * with a CRC32 of its contents so later damage is detected. An older snapshot is only usable while
+ * the segments after it are still on disk; once a newer snapshot has replaced both, a damaged
+ * snapshot makes recovery fail rather than rebuild from an incomplete journal.
+ */
+final class InventorySnapshot {
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+    private final long segment;
+    private final List<Showing> showings;
+    private final long[] orderTotals;
+
+    InventorySnapshot(long segment, List<Showing> showings, long[] orderTotals) {
+        this.segment = segment;
+        this.showings = showings;
+        this.orderTotals = orderTotals;
+    }
+
+    static String fileName(long segment) {
+        return String.format("snapshot-%08d.snap", segment);
+    }
+
+    long getSegment() {
+        return segment;
+    }
+
+    List<Showing> getShowings() {
+        return showings;
+    }
+
+    long[] getOrderTotals() {
+        return orderTotals;
+    }
+
+    // Written to a temporary file, forced to disk and then renamed into place
+    Path writeTo(Path directory) throws IOException {
+        Path target = directory.resolve(fileName(segment));
+        Path temporary = directory.resolve(fileName(segment) + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment);
+            for (long total : orderTotals) {
+                out.writeLong(total);
+            }
+            out.writeInt(showings.size());
+            for (Showing showing : showings) {
+                out.writeLong(showing.showingId);
+                out.writeInt(showing.rows);
+                out.writeInt(showing.seatsPerRow);
+                for (long word : showing.occupancy) {
+                    out.writeLong(word);
+                }
+            }
+            out.flush();
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+            file.getFD().sync();
+        }
+        return Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static InventorySnapshot read(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an inventory snapshot: " + file);
+            }
+            long segment = in.readLong();
+            long[] orderTotals = new long[5];
+            for (int i = 0; i < orderTotals.length; i++) {
+                orderTotals[i] = in.readLong();
+            }
+            int showingCount = in.readInt();
+            List<Showing> showings = new ArrayList<>(showingCount);
+            for (int i = 0; i < showingCount; i++) {
+                long showingId = in.readLong();
+                int rows = in.readInt();
+                int seatsPerRow = in.readInt();
+                long[] occupancy = new long[rows];
+                for (int row = 0; row < rows; row++) {
+                    occupancy[row] = in.readLong();
+                }
+                showings.add(new Showing(showingId, rows, seatsPerRow, occupancy));
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(raw).readInt() != expected) {
+                throw new IOException("Inventory snapshot checksum mismatch: " + file);
+            }
+            return new InventorySnapshot(segment, showings, orderTotals);
+        }
+    }
+
+    static final class Showing {
+        final long showingId;
+        final int rows;
+        final int seatsPerRow;
+        final long[] occupancy;
+
+        Showing(long showingId, int rows, int seatsPerRow, long[] occupancy) {
+            this.showingId = showingId;
+            this.rows = rows;
+            this.seatsPerRow = seatsPerRow;
+            this.occupancy = occupancy;
+        }
+    }
+}
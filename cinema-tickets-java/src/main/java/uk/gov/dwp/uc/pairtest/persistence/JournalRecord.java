@@ -0,0 +1,29 @@
+package uk.gov.dwp.uc.pairtest.persistence;
+
+/**
+ * Journal record layout. Every record is {@code [int bodyLength][body][int crc32(body)]} and every
+ * body starts with a one-byte type:
+ * <ul>
+ *     <li>SHOWING_ADDED: long showingId, int rows, int seatsPerRow</li>
+ *     <li>SEATS_RESERVED, SEATS_RELEASED: long showingId, int seatCount, int[seatCount] seats</li>
+ *     <li>PURCHASE: long accountId, int adults, int children, int infants, int amount</li>
+ * </ul>
+ */
+final class JournalRecord {
+    static final byte SHOWING_ADDED = 1;
+    static final byte SEATS_RESERVED = 2;
+    static final byte SEATS_RELEASED = 3;
+    static final byte PURCHASE = 4;
+
+    // Framing around the body: the length prefix and the trailing checksum
+    static final int FRAME_BYTES = Integer.BYTES * 2;
+    static final int SHOWING_BODY_BYTES = 1 + Long.BYTES + Integer.BYTES * 2;
+    static final int PURCHASE_BODY_BYTES = 1 + Long.BYTES + Integer.BYTES * 4;
+
+    static int seatsBodyBytes(int seatCount) {
+        return 1 + Long.BYTES + Integer.BYTES + Integer.BYTES * seatCount;
+    }
+
+    private JournalRecord() {
+    }
+}
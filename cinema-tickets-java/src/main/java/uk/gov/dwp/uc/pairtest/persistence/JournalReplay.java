@@ -0,0 +1,129 @@
+package uk.gov.dwp.uc.pairtest.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads journal segments back, checking each record's checksum, and hands the decoded events to a
+ * {@link Handler}. Segments are streamed through one reusable direct buffer, so replay costs one
+ * sequential read per megabyte of journal and no allocation beyond each event's seat array.
+ */
+final class JournalReplay {
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int MAX_BODY_BYTES = BUFFER_BYTES - JournalRecord.FRAME_BYTES;
+    private final Handler handler;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+    private long events;
+    private boolean corrupt;
+
+    interface Handler {
+        void showingAdded(long showingId, int rows, int seatsPerRow);
+
+        void seatsReserved(long showingId, int[] seats);
+
+        void seatsReleased(long showingId, int[] seats);
+
+        void purchase(long accountId, int adults, int children, int infants, int amount);
+    }
+
+    JournalReplay(Handler handler) {
+        this.handler = handler;
+    }
+
+    long events() {
+        return events;
+    }
+
+    /**
+     * Applies every intact record of the segment and returns the number of bytes they occupy. A
+     * smaller value than the file size means the segment ends in a record torn by a crash.
+     */
+    long replay(Path segment) throws IOException {
+        long valid = 0;
+        corrupt = false;
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            boolean endOfFile = false;
+            while (!endOfFile && !corrupt) {
+                endOfFile = channel.read(buffer) < 0;
+                buffer.flip();
+                valid += applyRecords();
+                buffer.compact();
+            }
+        }
+        return valid;
+    }
+
+    // Applies the complete records in the buffer and returns the bytes they occupy
+    private int applyRecords() {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        while (limit - buffer.position() >= Integer.BYTES) {
+            int position = buffer.position();
+            int bodyBytes = buffer.getInt(position);
+            if (bodyBytes <= 0 || bodyBytes > MAX_BODY_BYTES) {
+                corrupt = true;
+                break;
+            }
+            if (limit - position < bodyBytes + JournalRecord.FRAME_BYTES) {
+                break;
+            }
+            int body = position + Integer.BYTES;
+            buffer.limit(body + bodyBytes).position(body);
+            crc.reset();
+            crc.update(buffer);
+            buffer.limit(limit).position(position);
+            if (buffer.getInt(body + bodyBytes) != (int) crc.getValue() || !apply(body, bodyBytes)) {
+                corrupt = true;
+                break;
+            }
+            events++;
+            buffer.position(body + bodyBytes + Integer.BYTES);
+        }
+        return buffer.position() - start;
+    }
+
+    private boolean apply(int body, int bodyBytes) {
+        byte type = buffer.get(body);
+        int at = body + 1;
+        switch (type) {
+            case JournalRecord.SHOWING_ADDED:
+                if (bodyBytes != JournalRecord.SHOWING_BODY_BYTES) {
+                    return false;
+                }
+                handler.showingAdded(buffer.getLong(at), buffer.getInt(at + 8), buffer.getInt(at + 12));
+                return true;
+            case JournalRecord.SEATS_RESERVED:
+            case JournalRecord.SEATS_RELEASED:
+                long showingId = buffer.getLong(at);
+                int seatCount = buffer.getInt(at + 8);
+                if (seatCount < 0 || bodyBytes != JournalRecord.seatsBodyBytes(seatCount)) {
+                    return false;
+                }
+                int[] seats = new int[seatCount];
+                int seatAt = at + 12;
+                for (int i = 0; i < seatCount; i++) {
+                    seats[i] = buffer.getInt(seatAt + i * 4);
+                }
+                if (type == JournalRecord.SEATS_RESERVED) {
+                    handler.seatsReserved(showingId, seats);
+                } else {
+                    handler.seatsReleased(showingId, seats);
+                }
+                return true;
+            case JournalRecord.PURCHASE:
+                if (bodyBytes != JournalRecord.PURCHASE_BODY_BYTES) {
+                    return false;
+                }
+                handler.purchase(buffer.getLong(at), buffer.getInt(at + 8), buffer.getInt(at + 12), buffer.getInt(at + 16), buffer.getInt(at + 20));
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package uk.gov.dwp.uc.pairtest.persistence;
+
+public enum JournalSyncMode {
+    // Each change returns only once its journal record is on disk; concurrent changes share one fsync
+    PER_EVENT,
+    // The journal is forced to disk at a fixed interval; a crash can lose up to one interval of changes
+    PERIODIC
+}
@@ -0,0 +1,220 @@
+package uk.gov.dwp.uc.pairtest.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Appends journal records to segment files. Appends go to an in-memory buffer under a short lock; a
+ * flusher thread writes the buffer with one {@link FileChannel} write and one fsync per batch, either
+ * every {@code syncInterval} or as soon as a caller waits for its record to be durable.
+ */
+final class JournalWriter implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalWriter.class);
+    private final Path directory;
+    private final long syncIntervalNanos;
+    private final Object ioLock = new Object();
+    private final Object syncMonitor = new Object();
+    private final CRC32 crc = new CRC32();
+    private final Thread flusher;
+    // Guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appended;
+    // Guarded by ioLock
+    private FileChannel channel;
+    private long segment;
+    private volatile long synced;
+    private volatile boolean flushRequested;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    JournalWriter(Path directory, long segment, Duration syncInterval) throws IOException {
+        this.directory = directory;
+        this.syncIntervalNanos = syncInterval.toNanos();
+        openSegment(segment);
+        this.flusher = new Thread(this::flushPeriodically, "inventory-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    static String segmentName(long segment) {
+        return String.format("journal-%08d.log", segment);
+    }
+
+    long currentSegment() {
+        synchronized (ioLock) {
+            return segment;
+        }
+    }
+
+    // Each append returns the journal position just after its record, for awaitSynced
+    synchronized long appendShowing(long showingId, int rows, int seatsPerRow) {
+        ByteBuffer buffer = startRecord(JournalRecord.SHOWING_BODY_BYTES, JournalRecord.SHOWING_ADDED);
+        buffer.putLong(showingId).putInt(rows).putInt(seatsPerRow);
+        return endRecord(JournalRecord.SHOWING_BODY_BYTES);
+    }
+
+    synchronized long appendSeats(byte type, long showingId, int[] seats) {
+        int bodyBytes = JournalRecord.seatsBodyBytes(seats.length);
+        ByteBuffer buffer = startRecord(bodyBytes, type);
+        buffer.putLong(showingId).putInt(seats.length);
+        for (int seat : seats) {
+            buffer.putInt(seat);
+        }
+        return endRecord(bodyBytes);
+    }
+
+    synchronized long appendPurchase(long accountId, int adults, int children, int infants, int amount) {
+        ByteBuffer buffer = startRecord(JournalRecord.PURCHASE_BODY_BYTES, JournalRecord.PURCHASE);
+        buffer.putLong(accountId).putInt(adults).putInt(children).putInt(infants).putInt(amount);
+        return endRecord(JournalRecord.PURCHASE_BODY_BYTES);
+    }
+
+    private ByteBuffer startRecord(int bodyBytes, byte type) {
+        checkWritable();
+        int recordBytes = bodyBytes + JournalRecord.FRAME_BYTES;
+        if (pending.remaining() < recordBytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + recordBytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        return pending.putInt(bodyBytes).put(type);
+    }
+
+    private long endRecord(int bodyBytes) {
+        int bodyStart = pending.position() - bodyBytes;
+        crc.reset();
+        crc.update(pending.array(), bodyStart, bodyBytes);
+        pending.putInt((int) crc.getValue());
+        appended += bodyBytes + JournalRecord.FRAME_BYTES;
+        return appended;
+    }
+
+    // Blocks until every record up to the position is on disk
+    void awaitSynced(long position) {
+        if (synced >= position) {
+            return;
+        }
+        flushRequested = true;
+        LockSupport.unpark(flusher);
+        synchronized (syncMonitor) {
+            boolean interrupted = false;
+            while (synced < position) {
+                checkWritable();
+                try {
+                    syncMonitor.wait(10);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void checkWritable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Inventory journal can no longer write", failure);
+        }
+        if (!running) {
+            throw new IllegalStateException("Inventory journal is closed");
+        }
+    }
+
+    private void flushPeriodically() {
+        while (running) {
+            if (!flushRequested) {
+                LockSupport.parkNanos(this, syncIntervalNanos);
+            }
+            flushRequested = false;
+            try {
+                flush();
+            } catch (IOException e) {
+                LOGGER.error("Inventory journal failed writing to {}", directory, e);
+                failure = e;
+                synchronized (syncMonitor) {
+                    syncMonitor.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    void flush() throws IOException {
+        synchronized (ioLock) {
+            flushLocked();
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        ByteBuffer out;
+        long upTo;
+        synchronized (this) {
+            upTo = appended;
+            if (pending.position() == 0) {
+                return;
+            }
+            out = pending;
+            pending = spare;
+            spare = out;
+        }
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+        channel.force(false);
+        synced = upTo;
+        synchronized (syncMonitor) {
+            syncMonitor.notifyAll();
+        }
+    }
+
+    // Flushes what has been appended and starts a new segment; returns the new segment number
+    long roll() throws IOException {
+        synchronized (ioLock) {
+            flushLocked();
+            channel.close();
+            openSegment(segment + 1);
+            return segment;
+        }
+    }
+
+    private void openSegment(long newSegment) throws IOException {
+        channel = FileChannel.open(directory.resolve(segmentName(newSegment)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segment = newSegment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            try {
+                if (failure == null) {
+                    flushLocked();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
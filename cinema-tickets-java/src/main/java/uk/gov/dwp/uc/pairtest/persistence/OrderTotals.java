@@ -0,0 +1,53 @@
+package uk.gov.dwp.uc.pairtest.persistence;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Running totals of journaled purchases, restored from the snapshot and journal on startup
+public final class OrderTotals {
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder adultTickets = new LongAdder();
+    private final LongAdder childTickets = new LongAdder();
+    private final LongAdder infantTickets = new LongAdder();
+    private final LongAdder revenue = new LongAdder();
+
+    void add(int adults, int children, int infants, int amount) {
+        orders.increment();
+        adultTickets.add(adults);
+        childTickets.add(children);
+        infantTickets.add(infants);
+        revenue.add(amount);
+    }
+
+    // Order of values matches restore
+    long[] toArray() {
+        return new long[] {orders.sum(), adultTickets.sum(), childTickets.sum(), infantTickets.sum(), revenue.sum()};
+    }
+
+    void restore(long[] values) {
+        orders.add(values[0]);
+        adultTickets.add(values[1]);
+        childTickets.add(values[2]);
+        infantTickets.add(values[3]);
+        revenue.add(values[4]);
+    }
+
+    public long getOrders() {
+        return orders.sum();
+    }
+
+    public long getAdultTickets() {
+        return adultTickets.sum();
+    }
+
+    public long getChildTickets() {
+        return childTickets.sum();
+    }
+
+    public long getInfantTickets() {
+        return infantTickets.sum();
+    }
+
+    public long getRevenue() {
+        return revenue.sum();
+    }
+}
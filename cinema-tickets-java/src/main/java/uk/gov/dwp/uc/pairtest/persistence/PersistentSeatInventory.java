@@ -0,0 +1,370 @@
+package uk.gov.dwp.uc.pairtest.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.inventory.InMemorySeatReservationService;
+import uk.gov.dwp.uc.pairtest.inventory.SeatAllocation;
+import uk.gov.dwp.uc.pairtest.inventory.ShowingSeatMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Seat inventory and order totals that survive a restart. Every change is applied to an
+ * {@link InMemorySeatReservationService} and then appended to a write-ahead journal of segment files;
+ * a snapshot of the occupancy words and totals is taken every {@code snapshotInterval}, after which
+ * the journal segments it covers are deleted.
+ * <p>
+ * {@link #open} restores the latest intact snapshot and replays the journal written since, dropping
+ * a final record torn by a crash. It refuses to open when the journal needed to recover is gone, for
+ * example when the latest snapshot is damaged and the segments before it were already deleted. Changes hold a read lock while they update memory and append to
+ * the journal, and a snapshot holds the write lock only while it copies the occupancy words and
+ * starts a new segment, so the snapshot and the segment boundary always agree.
+ */
+public class PersistentSeatInventory implements SeatReservationService, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistentSeatInventory.class);
+    private final Path directory;
+    private final InMemorySeatReservationService inventory;
+    private final OrderTotals orderTotals;
+    private final JournalWriter journal;
+    private final JournalSyncMode syncMode;
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final long recoveredEvents;
+    // Null when snapshots are only taken on request
+    private final Thread snapshotter;
+    private volatile boolean running = true;
+
+    private PersistentSeatInventory(Path directory, InMemorySeatReservationService inventory, OrderTotals orderTotals, JournalWriter journal,
+                                    JournalSyncMode syncMode, Duration snapshotInterval, long recoveredEvents) {
+        this.directory = directory;
+        this.inventory = inventory;
+        this.orderTotals = orderTotals;
+        this.journal = journal;
+        this.syncMode = syncMode;
+        this.recoveredEvents = recoveredEvents;
+        if (snapshotInterval.isZero()) {
+            this.snapshotter = null;
+        } else {
+            this.snapshotter = new Thread(() -> snapshotPeriodically(snapshotInterval.toNanos()), "inventory-snapshotter");
+            this.snapshotter.setDaemon(true);
+            this.snapshotter.start();
+        }
+    }
+
+    /**
+     * Opens the inventory kept in {@code directory}, recovering whatever it already holds. The default
+     * showing is created with the given size when the directory does not already describe it.
+     * A zero {@code snapshotInterval} disables periodic snapshots.
+     */
+    public static PersistentSeatInventory open(Path directory, long defaultShowingId, int rows, int seatsPerRow,
+                                               JournalSyncMode syncMode, Duration syncInterval, Duration snapshotInterval) throws IOException {
+        Objects.requireNonNull(syncMode, "JournalSyncMode must not be null");
+        if (syncInterval.isNegative() || syncInterval.isZero() || snapshotInterval.isNegative()) {
+            throw new IllegalArgumentException("Sync interval must be positive and snapshot interval must not be negative");
+        }
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> snapshots = files(directory, "snapshot-", ".snap");
+        TreeMap<Long, Path> segments = files(directory, "journal-", ".log");
+
+        InventorySnapshot snapshot = null;
+        for (Path file : snapshots.descendingMap().values()) {
+            try {
+                snapshot = InventorySnapshot.read(file);
+                break;
+            } catch (IOException e) {
+                LOGGER.warn("Ignoring unreadable inventory snapshot {}", file, e);
+            }
+        }
+        // Without a snapshot the journal must go back to the first segment; either way none of it may be missing
+        long firstSegment = snapshot == null ? 1 : snapshot.getSegment();
+        if (segments.isEmpty() ? snapshot == null && !snapshots.isEmpty() : segments.firstKey() > firstSegment) {
+            throw new IOException("No readable inventory snapshot covers the journal in " + directory + "; the segments before "
+                    + (segments.isEmpty() ? "the next one" : segments.firstKey()) + " have already been deleted");
+        }
+        InMemorySeatReservationService inventory = new InMemorySeatReservationService(defaultShowingId, rows, seatsPerRow);
+        OrderTotals orderTotals = new OrderTotals();
+        if (snapshot != null) {
+            restore(inventory, orderTotals, snapshot);
+        }
+
+        JournalReplay replay = new JournalReplay(new Recovery(inventory, orderTotals));
+        long lastSegment = firstSegment - 1;
+        for (Path segment : segments.tailMap(firstSegment).values()) {
+            long valid = replay.replay(segment);
+            long size = Files.size(segment);
+            if (valid < size) {
+                if (!segment.equals(segments.lastEntry().getValue())) {
+                    throw new IOException("Inventory journal segment is corrupt before its end: " + segment);
+                }
+                LOGGER.warn("Truncating torn record at offset {} of {}", valid, segment);
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+            }
+        }
+        if (!segments.isEmpty()) {
+            lastSegment = Math.max(lastSegment, segments.lastKey());
+        }
+        JournalWriter journal = new JournalWriter(directory, lastSegment + 1, syncInterval);
+        PersistentSeatInventory recovered = new PersistentSeatInventory(directory, inventory, orderTotals, journal, syncMode, snapshotInterval, replay.events());
+        recovered.deleteBefore(firstSegment);
+        LOGGER.info("Recovered seat inventory from {}: snapshot segment {}, {} journal events replayed",
+                directory, snapshot == null ? "none" : snapshot.getSegment(), replay.events());
+        return recovered;
+    }
+
+    private static void restore(InMemorySeatReservationService inventory, OrderTotals orderTotals, InventorySnapshot snapshot) {
+        for (InventorySnapshot.Showing showing : snapshot.getShowings()) {
+            ShowingSeatMap seatMap = inventory.hasShowing(showing.showingId)
+                    ? inventory.showing(showing.showingId)
+                    : inventory.addShowing(showing.showingId, showing.rows, showing.seatsPerRow);
+            if (seatMap.getRows() != showing.rows || seatMap.getSeatsPerRow() != showing.seatsPerRow) {
+                throw new IllegalStateException("Showing " + showing.showingId + " was snapshotted with a different size");
+            }
+            seatMap.restoreOccupancy(showing.occupancy);
+        }
+        orderTotals.restore(snapshot.getOrderTotals());
+    }
+
+    private static TreeMap<Long, Path> files(Path directory, String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), entry);
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Ignoring unexpected file {}", entry);
+                }
+            }
+        }
+        return files;
+    }
+
+    public ShowingSeatMap addShowing(long showingId, int rows, int seatsPerRow) {
+        long position;
+        ShowingSeatMap seatMap;
+        snapshotLock.readLock().lock();
+        try {
+            seatMap = inventory.addShowing(showingId, rows, seatsPerRow);
+            position = journal.appendShowing(showingId, rows, seatsPerRow);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        awaitDurable(position);
+        return seatMap;
+    }
+
+    public ShowingSeatMap showing(long showingId) {
+        return inventory.showing(showingId);
+    }
+
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        reserveSeats(inventory.getDefaultShowingId(), totalSeatsToAllocate);
+    }
+
+    public SeatAllocation reserveSeats(long showingId, int totalSeatsToAllocate) {
+        long position;
+        SeatAllocation allocation;
+        snapshotLock.readLock().lock();
+        try {
+            allocation = inventory.reserveSeats(showingId, totalSeatsToAllocate);
+            try {
+                position = journal.appendSeats(JournalRecord.SEATS_RESERVED, showingId, allocation.getSeats());
+            } catch (RuntimeException e) {
+                inventory.release(allocation);
+                throw e;
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        awaitDurable(position);
+        return allocation;
+    }
+
+    /**
+     * Returns the allocation's seats to the showing.
+     *
+     * @throws IllegalStateException if any of the seats is not reserved, e.g. the allocation was already
+     *                               released, or if the release cannot be journalled
+     */
+    public void release(SeatAllocation allocation) {
+        long position;
+        snapshotLock.readLock().lock();
+        try {
+            // Checked before journalling so a release that would fail never reaches the journal
+            ShowingSeatMap seatMap = inventory.showing(allocation.getShowingId());
+            if (!allReserved(seatMap, allocation.getSeats())) {
+                throw new IllegalStateException("Seats " + Arrays.toString(allocation.getSeats()) + " of showing "
+                        + allocation.getShowingId() + " are not all reserved");
+            }
+            // Journalled before memory, so a failed append leaves the seats reserved in memory as well as on disk
+            position = journal.appendSeats(JournalRecord.SEATS_RELEASED, allocation.getShowingId(), allocation.getSeats());
+            seatMap.release(allocation);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        awaitDurable(position);
+    }
+
+    private static boolean allReserved(ShowingSeatMap seatMap, int[] seats) {
+        for (int seat : seats) {
+            if (!seatMap.isReserved(seat)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void recordPurchase(long accountId, int adults, int children, int infants, int totalAmountPaid) {
+        long position;
+        snapshotLock.readLock().lock();
+        try {
+            position = journal.appendPurchase(accountId, adults, children, infants, totalAmountPaid);
+            orderTotals.add(adults, children, infants, totalAmountPaid);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        awaitDurable(position);
+    }
+
+    public OrderTotals getOrderTotals() {
+        return orderTotals;
+    }
+
+    // Events replayed from the journal by open, not counting those covered by the snapshot
+    public long getRecoveredEvents() {
+        return recoveredEvents;
+    }
+
+    private void awaitDurable(long position) {
+        if (syncMode == JournalSyncMode.PER_EVENT) {
+            journal.awaitSynced(position);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the journal segments and snapshots it makes
+     * redundant. Changes are blocked only while the occupancy words are copied.
+     */
+    public synchronized void snapshot() throws IOException {
+        List<InventorySnapshot.Showing> showings = new ArrayList<>();
+        long[] totals;
+        long segment;
+        snapshotLock.writeLock().lock();
+        try {
+            segment = journal.roll();
+            for (ShowingSeatMap seatMap : inventory.showings()) {
+                showings.add(new InventorySnapshot.Showing(seatMap.getShowingId(), seatMap.getRows(), seatMap.getSeatsPerRow(), seatMap.occupancy()));
+            }
+            totals = orderTotals.toArray();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        new InventorySnapshot(segment, showings, totals).writeTo(directory);
+        deleteBefore(segment);
+    }
+
+    private void deleteBefore(long segment) throws IOException {
+        for (Path file : files(directory, "journal-", ".log").headMap(segment).values()) {
+            Files.deleteIfExists(file);
+        }
+        for (Path file : files(directory, "snapshot-", ".snap").headMap(segment).values()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Parks rather than sleeps: interrupting a thread in FileChannel I/O would close the journal
+    private void snapshotPeriodically(long intervalNanos) {
+        long next = System.nanoTime() + intervalNanos;
+        while (running) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            next += intervalNanos;
+            try {
+                snapshot();
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.error("Inventory snapshot failed in {}", directory, e);
+            } catch (IllegalStateException e) {
+                return;
+            }
+        }
+    }
+
+    // Stops periodic snapshots and flushes the journal; the next open replays from the last snapshot
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (snapshotter != null) {
+            LockSupport.unpark(snapshotter);
+            try {
+                snapshotter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+    }
+
+    // Applies replayed journal events to the inventory being recovered
+    private static final class Recovery implements JournalReplay.Handler {
+        private final InMemorySeatReservationService inventory;
+        private final OrderTotals orderTotals;
+
+        private Recovery(InMemorySeatReservationService inventory, OrderTotals orderTotals) {
+            this.inventory = inventory;
+            this.orderTotals = orderTotals;
+        }
+
+        @Override
+        public void showingAdded(long showingId, int rows, int seatsPerRow) {
+            if (!inventory.hasShowing(showingId)) {
+                inventory.addShowing(showingId, rows, seatsPerRow);
+            }
+        }
+
+        @Override
+        public void seatsReserved(long showingId, int[] seats) {
+            if (!inventory.showing(showingId).claimSeats(seats)) {
+                throw new IllegalStateException("Journal reserves seats that are already taken in showing " + showingId);
+            }
+        }
+
+        // Two racing releases of the same seats can both pass the check before either is applied, so the
+        // journal may hold a release of seats that are already free; skipping it leaves the state unchanged
+        @Override
+        public void seatsReleased(long showingId, int[] seats) {
+            ShowingSeatMap seatMap = inventory.showing(showingId);
+            if (!allReserved(seatMap, seats)) {
+                LOGGER.warn("Skipping journalled release of seats {} of showing {} that are not all reserved", Arrays.toString(seats), showingId);
+                return;
+            }
+            seatMap.release(seats);
+        }
+
+        @Override
+        public void purchase(long accountId, int adults, int children, int infants, int amount) {
+            orderTotals.add(adults, children, infants, amount);
+        }
+    }
+}
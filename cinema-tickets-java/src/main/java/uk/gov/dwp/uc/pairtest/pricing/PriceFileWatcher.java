@@ -0,0 +1,90 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Reloads a {@link ReloadablePriceTable} whenever its prices file, or its pricing rules file, is
+ * created or modified.
+ */
+public class PriceFileWatcher implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriceFileWatcher.class);
+    private final Set<Path> watchedFiles = new HashSet<>();
+    private final ReloadablePriceTable priceTable;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    public PriceFileWatcher(Path pricesFile, ReloadablePriceTable priceTable) throws IOException {
+        this(priceTable, pricesFile);
+    }
+
+    public PriceFileWatcher(Path pricesFile, Path rulesFile, ReloadablePriceTable priceTable) throws IOException {
+        this(priceTable, pricesFile, rulesFile);
+    }
+
+    private PriceFileWatcher(ReloadablePriceTable priceTable, Path... files) throws IOException {
+        this.priceTable = Objects.requireNonNull(priceTable, "Price table must not be null");
+        Set<Path> directories = new HashSet<>();
+        for (Path file : files) {
+            Path absolute = Objects.requireNonNull(file, "Watched file must not be null").toAbsolutePath();
+            watchedFiles.add(absolute);
+            directories.add(absolute.getParent());
+        }
+        this.watchService = files[0].getFileSystem().newWatchService();
+        for (Path directory : directories) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        this.thread = new Thread(this::watch, "price-file-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    changed |= context instanceof Path && watchedFiles.contains(directory.resolve((Path) context));
+                }
+                if (changed) {
+                    reload();
+                }
+                if (!key.reset()) {
+                    LOGGER.warn("Stopped watching {}: directory is no longer accessible", directory);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload() {
+        try {
+            priceTable.reload();
+        } catch (RuntimeException e) {
+            // Typically a half-written or malformed file; the previous prices stay and the next modification event will try again
+            LOGGER.warn("Ignoring invalid prices in {}: {}", watchedFiles, e.toString());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,80 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl.ConfigurationException;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+import java.util.Properties;
+
+/**
+ * Immutable snapshot of ticket prices, indexed by {@link TicketTypeRequest.Type}, together with the
+ * {@link PricingRules} compiled against them.
+ */
+public final class PriceTable {
+    public static final String ADULT_PRICE_KEY = "adult.ticket.price";
+    public static final String CHILD_PRICE_KEY = "child.ticket.price";
+    public static final String INFANT_PRICE_KEY = "infant.ticket.price";
+
+    private static final int ADULT = TicketTypeRequest.Type.ADULT.ordinal();
+    private static final int CHILD = TicketTypeRequest.Type.CHILD.ordinal();
+    private static final int INFANT = TicketTypeRequest.Type.INFANT.ordinal();
+
+    // Price per ticket, indexed by Type.ordinal()
+    private final int[] prices = new int[TicketTypeRequest.Type.values().length];
+    private final PricingRules rules;
+
+    public PriceTable(int adultPrice, int childPrice, int infantPrice) {
+        this(adultPrice, childPrice, infantPrice, new Properties());
+    }
+
+    public PriceTable(int adultPrice, int childPrice, int infantPrice, Properties rules) {
+        if (adultPrice <= 0 || childPrice <= 0) {
+            throw new ConfigurationException("Ticket prices must be positive numbers.");
+        }
+        if (infantPrice < 0) {
+            throw new ConfigurationException("Infant ticket price must not be negative.");
+        }
+        prices[ADULT] = adultPrice;
+        prices[CHILD] = childPrice;
+        prices[INFANT] = infantPrice;
+        this.rules = PricingRules.compile(adultPrice, childPrice, infantPrice, rules);
+    }
+
+    public static PriceTable fromProperties(Properties properties) {
+        return new PriceTable(
+                parsePrice(properties, ADULT_PRICE_KEY, "25"),
+                parsePrice(properties, CHILD_PRICE_KEY, "15"),
+                parsePrice(properties, INFANT_PRICE_KEY, "0"));
+    }
+
+    // A copy of these prices with the given rules compiled against them
+    public PriceTable withRules(Properties rules) {
+        return new PriceTable(prices[ADULT], prices[CHILD], prices[INFANT], rules);
+    }
+
+    private static int parsePrice(Properties properties, String key, String defaultValue) {
+        String value = properties.getProperty(key, defaultValue).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ConfigurationException("Invalid ticket price for " + key + ": " + value, e);
+        }
+    }
+
+    public int priceOf(TicketTypeRequest.Type type) {
+        return prices[type.ordinal()];
+    }
+
+    // Base prices only, ignoring any rules
+    public int totalPrice(int adults, int children, int infants) {
+        return (adults * prices[ADULT]) + (children * prices[CHILD]) + (infants * prices[INFANT]);
+    }
+
+    public PricingRules rules() {
+        return rules;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceTable[adult=" + prices[ADULT] + ", child=" + prices[CHILD] + ", infant=" + prices[INFANT] + "]";
+    }
+}
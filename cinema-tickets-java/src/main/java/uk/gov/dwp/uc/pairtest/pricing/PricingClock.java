@@ -0,0 +1,52 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * Maps the current time to a {@link PricingRules} time bucket ({@code dayOfWeek * 24 + hour}).
+ * The bucket is cached until the end of the hour, so most purchases only read the clock.
+ */
+public class PricingClock {
+    private final Clock clock;
+    private volatile Bucket cached = new Bucket(0, Long.MIN_VALUE);
+
+    public PricingClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "Clock must not be null");
+    }
+
+    public static PricingClock systemDefault() {
+        return new PricingClock(Clock.systemDefaultZone());
+    }
+
+    public int currentBucket() {
+        long now = clock.millis();
+        Bucket bucket = cached;
+        // Also recompute if the clock has moved backwards past the start of the cached hour
+        if (now >= bucket.validUntil || now < bucket.validUntil - 3_600_000L) {
+            bucket = computeBucket(now);
+            cached = bucket;
+        }
+        return bucket.index;
+    }
+
+    private Bucket computeBucket(long now) {
+        ZonedDateTime time = Instant.ofEpochMilli(now).atZone(clock.getZone());
+        ZonedDateTime nextHour = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        int index = (time.getDayOfWeek().ordinal() * 24) + time.getHour();
+        return new Bucket(index, nextHour.toInstant().toEpochMilli());
+    }
+
+    private static final class Bucket {
+        private final int index;
+        private final long validUntil;
+
+        private Bucket(int index, long validUntil) {
+            this.index = index;
+            this.validUntil = validUntil;
+        }
+    }
+}
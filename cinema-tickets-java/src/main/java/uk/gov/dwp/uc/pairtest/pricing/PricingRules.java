@@ -0,0 +1,235 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl.ConfigurationException;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+import java.time.DayOfWeek;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Time-of-day, weekday, group and promotion rules compiled against a set of base prices.
+ * <p>
+ * All rule parsing happens in {@link #compile}; pricing a purchase afterwards is a row lookup by
+ * time bucket (see {@link PricingClock}), one multiply per ticket type and two table-driven
+ * percentage discounts, and {@link #combinationPrice} replaces even that with a single read from a
+ * table holding, for every {@link TicketCombinations} entry, its price after time and group rules.
+ * Supported keys, all optional:
+ * <pre>
+ * pricing.peak.hours=17-22                 # [start, end) hours that are peak every day
+ * pricing.peak.days=SATURDAY,SUNDAY        # days that are peak all day
+ * pricing.peak.percent=20                  # adjustment applied to peak buckets
+ * pricing.offpeak.percent=-10              # adjustment applied to every other bucket
+ * pricing.weekday.discount.days=MONDAY,TUESDAY
+ * pricing.weekday.discount.percent=15
+ * pricing.group.min.tickets=10
+ * pricing.group.discount.percent=10
+ * pricing.promo.SUMMER10=10                # promotion code and its discount percent
+ * </pre>
+ */
+public final class PricingRules {
+    public static final String RULES_RESOURCE = "pricing-rules.properties";
+    public static final int TIME_BUCKETS = 7 * 24;
+    public static final int NO_PROMO = -1;
+    public static final int UNKNOWN_PROMO = -2;
+    // Group discounts are tabulated up to this many tickets; larger purchases use the last entry
+    private static final int MAX_GROUP_SIZE = 25;
+    private static final String PROMO_PREFIX = "pricing.promo.";
+
+    private static final int TYPES = TicketTypeRequest.Type.values().length;
+    private static final int ADULT = TicketTypeRequest.Type.ADULT.ordinal();
+    private static final int CHILD = TicketTypeRequest.Type.CHILD.ordinal();
+    private static final int INFANT = TicketTypeRequest.Type.INFANT.ordinal();
+
+    // Price per ticket for each time bucket, flattened as [bucket * TYPES + Type.ordinal()]
+    private final int[] unitPrices;
+    // Remaining percentage after the group discount, indexed by total tickets
+    private final int[] groupPercentRemaining;
+    // Sorted promotion codes and the remaining percentage after each discount
+    private final String[] promoCodes;
+    private final int[] promoPercentRemaining;
+    // Price of each TicketCombinations entry before promotions, one row per distinct set of unit prices
+    private final int[] combinationPrices;
+    // Start of each time bucket's row in combinationPrices; buckets with the same unit prices share a row
+    private final int[] bucketOffsets;
+
+    private PricingRules(int[] unitPrices, int[] groupPercentRemaining, String[] promoCodes, int[] promoPercentRemaining) {
+        this.unitPrices = unitPrices;
+        this.groupPercentRemaining = groupPercentRemaining;
+        this.promoCodes = promoCodes;
+        this.promoPercentRemaining = promoPercentRemaining;
+        this.bucketOffsets = new int[TIME_BUCKETS];
+        this.combinationPrices = tabulateCombinationPrices(unitPrices, groupPercentRemaining, bucketOffsets);
+    }
+
+    public static PricingRules compile(int adultPrice, int childPrice, int infantPrice, Properties rules) {
+        boolean[] peakHours = parseHours(rules.getProperty("pricing.peak.hours"));
+        boolean[] peakDays = parseDays(rules.getProperty("pricing.peak.days"));
+        int peakPercent = parsePercent(rules, "pricing.peak.percent", -100, 500);
+        int offPeakPercent = parsePercent(rules, "pricing.offpeak.percent", -100, 500);
+        boolean[] discountDays = parseDays(rules.getProperty("pricing.weekday.discount.days"));
+        int weekdayDiscount = parsePercent(rules, "pricing.weekday.discount.percent", 0, 100);
+
+        int[] basePrices = new int[TYPES];
+        basePrices[ADULT] = adultPrice;
+        basePrices[CHILD] = childPrice;
+        basePrices[INFANT] = infantPrice;
+
+        int[] unitPrices = new int[TIME_BUCKETS * TYPES];
+        for (int day = 0; day < 7; day++) {
+            for (int hour = 0; hour < 24; hour++) {
+                int timePercent = 100 + (peakDays[day] || peakHours[hour] ? peakPercent : offPeakPercent);
+                int dayPercent = discountDays[day] ? 100 - weekdayDiscount : 100;
+                int bucket = day * 24 + hour;
+                for (int type = 0; type < TYPES; type++) {
+                    unitPrices[bucket * TYPES + type] = applyPercent(applyPercent(basePrices[type], timePercent), dayPercent);
+                }
+            }
+        }
+
+        int groupMinTickets = parseInt(rules, "pricing.group.min.tickets", 0, 0, MAX_GROUP_SIZE);
+        int groupDiscount = parsePercent(rules, "pricing.group.discount.percent", 0, 100);
+        int[] groupPercentRemaining = new int[MAX_GROUP_SIZE + 1];
+        for (int tickets = 0; tickets <= MAX_GROUP_SIZE; tickets++) {
+            boolean discounted = groupMinTickets > 0 && tickets >= groupMinTickets;
+            groupPercentRemaining[tickets] = discounted ? 100 - groupDiscount : 100;
+        }
+
+        Map<String, Integer> promotions = new TreeMap<>();
+        for (String key : rules.stringPropertyNames()) {
+            if (key.startsWith(PROMO_PREFIX) && key.length() > PROMO_PREFIX.length()) {
+                promotions.put(key.substring(PROMO_PREFIX.length()), 100 - parsePercent(rules, key, 0, 100));
+            }
+        }
+        String[] promoCodes = promotions.keySet().toArray(new String[0]);
+        int[] promoPercentRemaining = promotions.values().stream().mapToInt(Integer::intValue).toArray();
+
+        return new PricingRules(unitPrices, groupPercentRemaining, promoCodes, promoPercentRemaining);
+    }
+
+    // Index of a promotion code for totalPrice: NO_PROMO for null, UNKNOWN_PROMO when not configured
+    public int promoIndex(String promoCode) {
+        if (promoCode == null) {
+            return NO_PROMO;
+        }
+        int index = Arrays.binarySearch(promoCodes, promoCode);
+        return index >= 0 ? index : UNKNOWN_PROMO;
+    }
+
+    public int unitPrice(int timeBucket, TicketTypeRequest.Type type) {
+        return unitPrices[timeBucket * TYPES + type.ordinal()];
+    }
+
+    public int totalPrice(int adults, int children, int infants, int timeBucket, int promoIndex) {
+        int row = timeBucket * TYPES;
+        int total = (adults * unitPrices[row + ADULT]) + (children * unitPrices[row + CHILD]) + (infants * unitPrices[row + INFANT]);
+        total = applyPercent(total, groupPercentRemaining[Math.min(adults + children + infants, MAX_GROUP_SIZE)]);
+        if (promoIndex >= 0) {
+            total = applyPercent(total, promoPercentRemaining[promoIndex]);
+        }
+        return total;
+    }
+
+    // Same as totalPrice for the combination's counts, from the table compiled with these rules
+    public int combinationPrice(int combination, int timeBucket, int promoIndex) {
+        int total = combinationPrices[bucketOffsets[timeBucket] + combination];
+        if (promoIndex >= 0) {
+            total = applyPercent(total, promoPercentRemaining[promoIndex]);
+        }
+        return total;
+    }
+
+    private static int[] tabulateCombinationPrices(int[] unitPrices, int[] groupPercentRemaining, int[] bucketOffsets) {
+        // Peak, off-peak and weekday discounts leave only a handful of distinct rows among the buckets
+        int[] rowBuckets = new int[TIME_BUCKETS];
+        int rows = 0;
+        for (int bucket = 0; bucket < TIME_BUCKETS; bucket++) {
+            int row = 0;
+            while (row < rows && !Arrays.equals(unitPrices, rowBuckets[row] * TYPES, (rowBuckets[row] + 1) * TYPES,
+                    unitPrices, bucket * TYPES, (bucket + 1) * TYPES)) {
+                row++;
+            }
+            if (row == rows) {
+                rowBuckets[rows++] = bucket;
+            }
+            bucketOffsets[bucket] = row * TicketCombinations.COUNT;
+        }
+        int[] prices = new int[rows * TicketCombinations.COUNT];
+        for (int row = 0; row < rows; row++) {
+            int unitRow = rowBuckets[row] * TYPES;
+            for (int combination = 0; combination < TicketCombinations.COUNT; combination++) {
+                int adults = TicketCombinations.adults(combination);
+                int children = TicketCombinations.children(combination);
+                int infants = TicketCombinations.infants(combination);
+                int total = (adults * unitPrices[unitRow + ADULT]) + (children * unitPrices[unitRow + CHILD]) + (infants * unitPrices[unitRow + INFANT]);
+                prices[row * TicketCombinations.COUNT + combination] = applyPercent(total, groupPercentRemaining[Math.min(adults + children + infants, MAX_GROUP_SIZE)]);
+            }
+        }
+        return prices;
+    }
+
+    // Rounds half up so a 10% discount on 15 charges 14 rather than 13
+    private static int applyPercent(int amount, int percent) {
+        return (amount * percent + 50) / 100;
+    }
+
+    private static boolean[] parseHours(String value) {
+        boolean[] hours = new boolean[24];
+        if (value == null || value.isBlank()) {
+            return hours;
+        }
+        for (String range : value.split(",")) {
+            String[] bounds = range.trim().split("-");
+            try {
+                int start = Integer.parseInt(bounds[0].trim());
+                int end = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : start + 1;
+                if (bounds.length > 2 || start < 0 || end > 24 || start >= end) {
+                    throw new ConfigurationException("Invalid peak hours range: " + range.trim());
+                }
+                Arrays.fill(hours, start, end, true);
+            } catch (NumberFormatException e) {
+                throw new ConfigurationException("Invalid peak hours range: " + range.trim(), e);
+            }
+        }
+        return hours;
+    }
+
+    // Indexed by DayOfWeek.ordinal(), Monday first
+    private static boolean[] parseDays(String value) {
+        boolean[] days = new boolean[7];
+        if (value == null || value.isBlank()) {
+            return days;
+        }
+        for (String day : value.split(",")) {
+            try {
+                days[DayOfWeek.valueOf(day.trim().toUpperCase(Locale.ROOT)).ordinal()] = true;
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationException("Invalid day of week: " + day.trim(), e);
+            }
+        }
+        return days;
+    }
+
+    private static int parsePercent(Properties rules, String key, int min, int max) {
+        return parseInt(rules, key, 0, min, max);
+    }
+
+    private static int parseInt(Properties rules, String key, int defaultValue, int min, int max) {
+        String value = rules.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed < min || parsed > max) {
+                throw new ConfigurationException("Pricing rule " + key + " must be between " + min + " and " + max + ": " + parsed);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new ConfigurationException("Invalid value for pricing rule " + key + ": " + value.trim(), e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import uk.gov.dwp.uc.pairtest.ConfigurationLoader;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl.ConfigurationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Properties;
+
+// Loads pricing rules from the classpath or a file; a missing source simply means no rules
+public class PricingRulesLoader implements ConfigurationLoader {
+    private final Path rulesFile;
+
+    public PricingRulesLoader() {
+        this.rulesFile = null;
+    }
+
+    public PricingRulesLoader(Path rulesFile) {
+        this.rulesFile = rulesFile;
+    }
+
+    @Override
+    public Properties loadProperties() {
+        Properties properties = new Properties();
+        try (InputStream input = open()) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (NoSuchFileException e) {
+            return properties;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ConfigurationException("Failed to load pricing rules", e);
+        }
+        return properties;
+    }
+
+    private InputStream open() throws IOException {
+        if (rulesFile == null) {
+            return getClass().getClassLoader().getResourceAsStream(PricingRules.RULES_RESOURCE);
+        }
+        return Files.newInputStream(rulesFile);
+    }
+}
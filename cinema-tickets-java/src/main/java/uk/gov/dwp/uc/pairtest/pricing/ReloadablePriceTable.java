@@ -0,0 +1,47 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.dwp.uc.pairtest.ConfigurationLoader;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link PriceTable} and the pricing rules compiled against it. Readers take the snapshot with a single volatile read and
+ * never block; {@link #reload()} validates the new prices before swapping them in, so a bad file
+ * leaves the previous prices in place.
+ */
+public class ReloadablePriceTable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReloadablePriceTable.class);
+    private final ConfigurationLoader configLoader;
+    private final ConfigurationLoader rulesLoader;
+    private final AtomicReference<PriceTable> current;
+
+    // Pricing rules come from pricing-rules.properties on the classpath, when there is one
+    public ReloadablePriceTable(ConfigurationLoader configLoader) {
+        this(configLoader, new PricingRulesLoader());
+    }
+
+    public ReloadablePriceTable(ConfigurationLoader configLoader, ConfigurationLoader rulesLoader) {
+        this.configLoader = Objects.requireNonNull(configLoader, "ConfigurationLoader must not be null");
+        this.rulesLoader = Objects.requireNonNull(rulesLoader, "Rules loader must not be null");
+        this.current = new AtomicReference<>(load());
+    }
+
+    private PriceTable load() {
+        return PriceTable.fromProperties(configLoader.loadProperties()).withRules(rulesLoader.loadProperties());
+    }
+
+    public PriceTable current() {
+        return current.get();
+    }
+
+    // Throws ConfigurationException, keeping the previous snapshot, when the new prices are invalid
+    public PriceTable reload() {
+        PriceTable updated = load();
+        PriceTable previous = current.getAndSet(updated);
+        LOGGER.info("Ticket prices reloaded: {} -> {}", previous, updated);
+        return updated;
+    }
+}
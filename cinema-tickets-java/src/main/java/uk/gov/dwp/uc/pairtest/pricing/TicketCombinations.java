@@ -0,0 +1,88 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+
+/**
+ * Every (adults, children, infants) combination a single purchase can contain, numbered densely
+ * so per-combination facts can be kept in flat arrays. A purchase holds at most {@link #MAX_TICKETS}
+ * tickets, which leaves only {@link #COUNT} combinations; validity and seats for each are tabulated
+ * here once, and {@link PricingRules} tabulates their prices whenever prices are compiled.
+ * <p>
+ * Combinations are ordered by adults, then children, then infants, and only those with at most
+ * {@link #MAX_TICKETS} tickets in total are numbered.
+ */
+public final class TicketCombinations {
+    public static final int MAX_TICKETS = 25;
+    // Number of combinations with a + c + i <= MAX_TICKETS: (MAX_TICKETS + 3) choose 3
+    public static final int COUNT = (MAX_TICKETS + 1) * (MAX_TICKETS + 2) * (MAX_TICKETS + 3) / 6;
+    // Index returned for counts that cannot form a purchase: a negative count or too many tickets
+    public static final int INVALID = -1;
+
+    private static final int SIDE = MAX_TICKETS + 1;
+    private static final PurchaseRejection[] REJECTIONS = PurchaseRejection.values();
+    // Index of (adults, children, 0), flattened as [adults * SIDE + children]
+    private static final int[] PAIR_OFFSETS = new int[SIDE * SIDE];
+    private static final byte[] ADULTS = new byte[COUNT];
+    private static final byte[] CHILDREN = new byte[COUNT];
+    private static final byte[] INFANTS = new byte[COUNT];
+    private static final byte[] SEATS = new byte[COUNT];
+    // PurchaseRejection ordinal + 1, or 0 when the combination may be purchased
+    private static final byte[] REJECTION_CODES = new byte[COUNT];
+
+    static {
+        int index = 0;
+        for (int adults = 0; adults <= MAX_TICKETS; adults++) {
+            for (int children = 0; adults + children <= MAX_TICKETS; children++) {
+                PAIR_OFFSETS[adults * SIDE + children] = index;
+                for (int infants = 0; adults + children + infants <= MAX_TICKETS; infants++, index++) {
+                    ADULTS[index] = (byte) adults;
+                    CHILDREN[index] = (byte) children;
+                    INFANTS[index] = (byte) infants;
+                    // Infants sit on an adult's lap, so they do not need a seat
+                    SEATS[index] = (byte) (adults + children);
+                    PurchaseRejection rejection = adults + children + infants == 0 ? PurchaseRejection.INVALID_TOTAL
+                            // At least one adult ticket must be purchased when child or infant tickets are present
+                            : adults == 0 ? PurchaseRejection.ADULT_REQUIRED
+                            : null;
+                    REJECTION_CODES[index] = (byte) (rejection == null ? 0 : rejection.ordinal() + 1);
+                }
+            }
+        }
+    }
+
+    private TicketCombinations() {
+    }
+
+    public static int indexOf(int adults, int children, int infants) {
+        // Any negative count or any count of 32 or more sets a bit above the lowest five
+        if (((adults | children | infants) >>> 5) != 0 || adults + children + infants > MAX_TICKETS) {
+            return INVALID;
+        }
+        return PAIR_OFFSETS[adults * SIDE + children] + infants;
+    }
+
+    // Rule the combination breaks, or null when it may be purchased; INVALID breaks the total rule
+    public static PurchaseRejection rejection(int index) {
+        if (index == INVALID) {
+            return PurchaseRejection.INVALID_TOTAL;
+        }
+        int code = REJECTION_CODES[index];
+        return code == 0 ? null : REJECTIONS[code - 1];
+    }
+
+    public static int adults(int index) {
+        return ADULTS[index];
+    }
+
+    public static int children(int index) {
+        return CHILDREN[index];
+    }
+
+    public static int infants(int index) {
+        return INFANTS[index];
+    }
+
+    public static int seats(int index) {
+        return SEATS[index];
+    }
+}
@@ -0,0 +1,145 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker.
+ * <p>
+ * The outcome of the last {@code slidingWindowSize} calls is kept in a ring. Once at least
+ * {@code minimumCalls} have been recorded and the failure rate reaches {@code failureRatePercent},
+ * the circuit opens and every call is refused for {@code openDuration}. After that up to
+ * {@code halfOpenCalls} trial calls are let through: if all succeed the circuit closes with an
+ * empty window, and any failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final boolean[] failures;
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failureCount;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(int slidingWindowSize, int minimumCalls, int failureRatePercent, Duration openDuration, int halfOpenCalls) {
+        this(slidingWindowSize, minimumCalls, failureRatePercent, openDuration, halfOpenCalls, System::nanoTime);
+    }
+
+    public CircuitBreaker(int slidingWindowSize, int minimumCalls, int failureRatePercent, Duration openDuration, int halfOpenCalls,
+                          LongSupplier nanoClock) {
+        if (slidingWindowSize <= 0 || minimumCalls <= 0 || minimumCalls > slidingWindowSize || halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("Window size, minimum calls and half-open calls must be positive, with minimum calls no more than the window");
+        }
+        if (failureRatePercent <= 0 || failureRatePercent > 100) {
+            throw new IllegalArgumentException("Failure rate must be between 1 and 100 percent");
+        }
+        this.failures = new boolean[slidingWindowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRatePercent = failureRatePercent;
+        this.openNanos = Objects.requireNonNull(openDuration, "Open duration must not be null").toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoClock = Objects.requireNonNull(nanoClock, "Clock must not be null");
+    }
+
+    // Whether a call may go ahead; every permitted call must be followed by onSuccess or onFailure
+    public synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nanoClock.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+                // This call is the first trial
+                return tryStartTrial();
+            default:
+                return tryStartTrial();
+        }
+    }
+
+    private boolean tryStartTrial() {
+        if (trialsStarted >= halfOpenCalls) {
+            return false;
+        }
+        trialsStarted++;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= halfOpenCalls) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failureCount * 100 >= failureRatePercent * recorded) {
+                open();
+            }
+        }
+    }
+
+    // A permitted call that never reached the gateway; frees its half-open trial without recording an outcome
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && trialsStarted > trialsSucceeded) {
+            trialsStarted--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == failures.length) {
+            if (failures[next]) {
+                failureCount--;
+            }
+        } else {
+            recorded++;
+        }
+        failures[next] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        next = next + 1 == failures.length ? 0 : next + 1;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failureCount = 0;
+    }
+}
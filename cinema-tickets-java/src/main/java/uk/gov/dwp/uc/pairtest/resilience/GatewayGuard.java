@@ -0,0 +1,145 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import uk.gov.dwp.uc.pairtest.exception.BulkheadFullException;
+import uk.gov.dwp.uc.pairtest.exception.CircuitOpenException;
+import uk.gov.dwp.uc.pairtest.exception.GatewayTimeoutException;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Runs calls to one gateway behind a circuit breaker, a bulkhead and a timeout.
+ * <p>
+ * A call is refused with {@link CircuitOpenException} while the circuit is open, and with
+ * {@link BulkheadFullException} when {@code maxConcurrentCalls} calls are already running. When a
+ * call timeout is set the call runs on the executor and the caller gives up with
+ * {@link GatewayTimeoutException} after the timeout; the call keeps its bulkhead permit until it
+ * actually returns, so a hung gateway cannot be flooded with more calls than the bulkhead allows.
+ * A call that has started is never interrupted, since it may already have taken effect, e.g. charged
+ * a customer; {@link GatewayTimeoutException} is an {@code OutcomeUnknownException} for that reason.
+ * A call abandoned while still queued on the executor never runs, and its permit is returned at once.
+ */
+public class GatewayGuard {
+    private final String name;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final long callTimeoutNanos;
+    private final ExecutorService executor;
+    private final Predicate<RuntimeException> countsAsFailure;
+
+    // Calls run on the caller's thread, without a timeout
+    public GatewayGuard(String name, CircuitBreaker circuitBreaker, int maxConcurrentCalls, Predicate<RuntimeException> countsAsFailure) {
+        this(name, circuitBreaker, maxConcurrentCalls, null, null, countsAsFailure);
+    }
+
+    public GatewayGuard(String name, CircuitBreaker circuitBreaker, int maxConcurrentCalls, Duration callTimeout, ExecutorService executor,
+                        Predicate<RuntimeException> countsAsFailure) {
+        this.name = Objects.requireNonNull(name, "Gateway name must not be null");
+        this.circuitBreaker = Objects.requireNonNull(circuitBreaker, "CircuitBreaker must not be null");
+        if (maxConcurrentCalls <= 0) {
+            throw new IllegalArgumentException("Maximum concurrent calls must be positive");
+        }
+        if ((callTimeout == null) != (executor == null)) {
+            throw new IllegalArgumentException("A call timeout needs an executor to run calls on");
+        }
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.callTimeoutNanos = callTimeout == null ? 0 : callTimeout.toNanos();
+        this.executor = executor;
+        this.countsAsFailure = Objects.requireNonNull(countsAsFailure, "Failure predicate must not be null");
+    }
+
+    public void call(Runnable gatewayCall) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new CircuitOpenException(name);
+        }
+        if (!bulkhead.tryAcquire()) {
+            // Not the gateway's fault, so the breaker records neither success nor failure
+            circuitBreaker.releasePermission();
+            throw new BulkheadFullException(name);
+        }
+        try {
+            if (executor == null) {
+                runHoldingPermit(gatewayCall);
+            } else {
+                runWithTimeout(gatewayCall);
+            }
+            circuitBreaker.onSuccess();
+        } catch (RuntimeException e) {
+            if (countsAsFailure.test(e)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            throw e;
+        }
+    }
+
+    private void runHoldingPermit(Runnable gatewayCall) {
+        try {
+            gatewayCall.run();
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private void runWithTimeout(Runnable gatewayCall) {
+        // Whichever side claims this first owns the permit: the task by starting, or the caller by giving up
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<?> future;
+        try {
+            future = executor.submit(() -> {
+                if (claimed.compareAndSet(false, true)) {
+                    runHoldingPermit(gatewayCall);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            throw e;
+        }
+        try {
+            future.get(callTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            abandon(future, claimed);
+            throw new GatewayTimeoutException("Gateway " + name + " did not respond within " + Duration.ofNanos(callTimeoutNanos).toMillis() + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            abandon(future, claimed);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for gateway " + name);
+        }
+    }
+
+    // A call that has started runs to completion and keeps its permit until it returns; one still queued is skipped and its permit returned now
+    private void abandon(Future<?> future, AtomicBoolean claimed) {
+        if (claimed.compareAndSet(false, true)) {
+            bulkhead.release();
+            future.cancel(false);
+        }
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int availableCalls() {
+        return bulkhead.availablePermits();
+    }
+}
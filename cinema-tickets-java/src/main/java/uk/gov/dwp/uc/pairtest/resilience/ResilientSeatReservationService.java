@@ -0,0 +1,57 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import thirdparty.seatbooking.BatchSeatReservationService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.exception.SeatsUnavailableException;
+
+import java.util.Objects;
+
+/**
+ * {@link SeatReservationService} decorator that guards every call to the real gateway with a
+ * {@link GatewayGuard}. Use {@link #of} so a gateway with batch support keeps it; a batch is then a
+ * single guarded call.
+ */
+public class ResilientSeatReservationService implements SeatReservationService {
+    private final SeatReservationService delegate;
+    private final GatewayGuard guard;
+
+    private ResilientSeatReservationService(SeatReservationService delegate, GatewayGuard guard) {
+        this.delegate = Objects.requireNonNull(delegate, "ReservationService must not be null");
+        this.guard = Objects.requireNonNull(guard, "GatewayGuard must not be null");
+    }
+
+    public static ResilientSeatReservationService of(SeatReservationService delegate, GatewayGuard guard) {
+        if (delegate instanceof BatchSeatReservationService) {
+            return new Batch((BatchSeatReservationService) delegate, guard);
+        }
+        return new ResilientSeatReservationService(delegate, guard);
+    }
+
+    // A sold-out showing is an answer from a healthy gateway, not a fault
+    public static boolean isGatewayFault(RuntimeException e) {
+        return !(e instanceof SeatsUnavailableException);
+    }
+
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        guard.call(() -> delegate.reserveSeat(accountId, totalSeatsToAllocate));
+    }
+
+    public GatewayGuard getGuard() {
+        return guard;
+    }
+
+    private static final class Batch extends ResilientSeatReservationService implements BatchSeatReservationService {
+        private final BatchSeatReservationService batchDelegate;
+
+        private Batch(BatchSeatReservationService delegate, GatewayGuard guard) {
+            super(delegate, guard);
+            this.batchDelegate = delegate;
+        }
+
+        @Override
+        public void reserveSeats(long[] accountIds, int[] totalSeatsToAllocate) {
+            getGuard().call(() -> batchDelegate.reserveSeats(accountIds, totalSeatsToAllocate));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import thirdparty.paymentgateway.BatchTicketPaymentService;
+import thirdparty.paymentgateway.TicketPaymentService;
+
+import java.util.Objects;
+
+/**
+ * {@link TicketPaymentService} decorator that guards every call to the real gateway with a
+ * {@link GatewayGuard}. Use {@link #of} so a gateway with batch support keeps it; a batch is then a
+ * single guarded call.
+ */
+public class ResilientTicketPaymentService implements TicketPaymentService {
+    private final TicketPaymentService delegate;
+    private final GatewayGuard guard;
+
+    private ResilientTicketPaymentService(TicketPaymentService delegate, GatewayGuard guard) {
+        this.delegate = Objects.requireNonNull(delegate, "PaymentService must not be null");
+        this.guard = Objects.requireNonNull(guard, "GatewayGuard must not be null");
+    }
+
+    public static ResilientTicketPaymentService of(TicketPaymentService delegate, GatewayGuard guard) {
+        if (delegate instanceof BatchTicketPaymentService) {
+            return new Batch((BatchTicketPaymentService) delegate, guard);
+        }
+        return new ResilientTicketPaymentService(delegate, guard);
+    }
+
+    @Override
+    public void makePayment(long accountId, int totalAmountToPay) {
+        guard.call(() -> delegate.makePayment(accountId, totalAmountToPay));
+    }
+
+    public GatewayGuard getGuard() {
+        return guard;
+    }
+
+    private static final class Batch extends ResilientTicketPaymentService implements BatchTicketPaymentService {
+        private final BatchTicketPaymentService batchDelegate;
+
+        private Batch(BatchTicketPaymentService delegate, GatewayGuard guard) {
+            super(delegate, guard);
+            this.batchDelegate = delegate;
+        }
+
+        @Override
+        public void makePayments(long[] accountIds, int[] totalAmountsToPay) {
+            getGuard().call(() -> batchDelegate.makePayments(accountIds, totalAmountsToPay));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package uk.gov.dwp.uc.pairtest.timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel that hands each scheduled item to a callback once its delay has passed.
+ * <p>
+ * Time advances in ticks. There are four levels of 64 slots: level 0 holds items due within the
+ * next 64 ticks, and each level above covers 64 times the span of the one below. When a lower level
+ * completes a rotation, the next slot of the level above is cascaded down, so an item is moved at
+ * most three times before it expires and scheduling, cascading and expiry are all O(1) per item,
+ * however many items are outstanding.
+ * <p>
+ * Callers only add items to a lock-free queue; a single timer thread owns the wheel, inserts queued
+ * items on each tick and runs the callback, so expiry work never runs on a caller's thread. Items
+ * cannot be cancelled: the callback should ignore items that no longer need expiring.
+ */
+public class HierarchicalTimingWheel<T> implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HierarchicalTimingWheel.class);
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    // Longest delay the wheel can hold, in ticks
+    private static final long HORIZON_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Consumer<T> onExpiry;
+    private final Queue<Node<T>> scheduled = new ConcurrentLinkedQueue<>();
+    private final Node<T>[][] slots;
+    private final Thread thread;
+    private volatile boolean running = true;
+    // Last tick processed; only touched by the timer thread
+    private long currentTick;
+
+    public HierarchicalTimingWheel(Duration tick, Consumer<T> onExpiry, String threadName) {
+        this.tickNanos = Objects.requireNonNull(tick, "Tick must not be null").toNanos();
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.onExpiry = Objects.requireNonNull(onExpiry, "Expiry callback must not be null");
+        @SuppressWarnings("unchecked")
+        Node<T>[][] levels = (Node<T>[][]) new Node<?>[LEVELS][SLOTS];
+        this.slots = levels;
+        this.startNanos = System.nanoTime();
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Longest delay that can be scheduled
+    public Duration horizon() {
+        return horizon(Duration.ofNanos(tickNanos));
+    }
+
+    public static Duration horizon(Duration tick) {
+        return tick.multipliedBy(HORIZON_TICKS);
+    }
+
+    /**
+     * Hands {@code item} to the expiry callback once {@code delay} has passed, rounded up to a whole
+     * tick and run no earlier than that.
+     */
+    public void schedule(T item, Duration delay) {
+        long delayTicks = (delay.toNanos() + tickNanos - 1) / tickNanos;
+        if (delayTicks > HORIZON_TICKS) {
+            throw new IllegalArgumentException("Delay " + delay + " is beyond the timer horizon of " + horizon());
+        }
+        if (!running) {
+            throw new IllegalStateException("Timer is closed");
+        }
+        // +1 because the tick in progress has already started
+        long deadlineTick = (System.nanoTime() - startNanos) / tickNanos + Math.max(1, delayTicks) + 1;
+        scheduled.add(new Node<>(item, deadlineTick));
+    }
+
+    private void run() {
+        while (running) {
+            long nowTick = (System.nanoTime() - startNanos) / tickNanos;
+            insertScheduled();
+            while (currentTick < nowTick) {
+                advance();
+            }
+            long nextTickAt = startNanos + (currentTick + 1) * tickNanos;
+            LockSupport.parkNanos(this, nextTickAt - System.nanoTime());
+        }
+    }
+
+    private void insertScheduled() {
+        Node<T> node;
+        while ((node = scheduled.poll()) != null) {
+            // A deadline already passed goes in the next slot; the current one has been processed
+            insert(node, Math.max(node.deadlineTick, currentTick + 1));
+        }
+    }
+
+    // Level is the lowest one whose higher digits of the deadline match the current tick
+    private void insert(Node<T> node, long deadline) {
+        int level = 0;
+        while (level < LEVELS - 1 && (deadline >>> (SLOT_BITS * (level + 1))) != (currentTick >>> (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+        node.next = slots[level][slot];
+        slots[level][slot] = node;
+    }
+
+    private void advance() {
+        currentTick++;
+        // Higher levels first, so items cascaded into a lower level's current slot cascade again this tick
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+                Node<T> node = slots[level][slot];
+                slots[level][slot] = null;
+                while (node != null) {
+                    Node<T> next = node.next;
+                    insert(node, node.deadlineTick);
+                    node = next;
+                }
+            }
+        }
+        int slot = (int) currentTick & SLOT_MASK;
+        Node<T> node = slots[0][slot];
+        slots[0][slot] = null;
+        while (node != null) {
+            Node<T> next = node.next;
+            expire(node.item);
+            node = next;
+        }
+    }
+
+    private void expire(T item) {
+        try {
+            onExpiry.accept(item);
+        } catch (RuntimeException e) {
+            LOGGER.error("Expiry callback failed for {}", item, e);
+        }
+    }
+
+    // Stops the timer thread; items not yet expired are dropped
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Node<T> {
+        private final T item;
+        private final long deadlineTick;
+        private Node<T> next;
+
+        private Node(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package uk.gov.dwp.uc.pairtest.wire;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Direct buffers of one size, reused across connections so accepting one does not allocate native memory
+final class BufferPool {
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final int bufferBytes;
+
+    BufferPool(int bufferBytes, int preallocated) {
+        this.bufferBytes = bufferBytes;
+        for (int i = 0; i < preallocated; i++) {
+            free.offer(ByteBuffer.allocateDirect(bufferBytes));
+        }
+    }
+
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    void release(ByteBuffer buffer) {
+        free.offer(buffer);
+    }
+}
@@ -0,0 +1,91 @@
+package uk.gov.dwp.uc.pairtest.wire;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.UUID;
+
+/**
+ * Blocking client for {@link PurchaseServer}. Requests are buffered by the {@code send} methods and
+ * only written on {@link #flush()}, so callers can pipeline many requests in one write and then read
+ * the responses back in the same order. Not thread-safe; use one client per thread.
+ */
+public class PurchaseClient implements AutoCloseable {
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private long nextRequestId = 1;
+
+    private PurchaseClient(SocketChannel channel) {
+        this.channel = channel;
+        in.flip();
+    }
+
+    public static PurchaseClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return new PurchaseClient(channel);
+    }
+
+    // Queues a request and returns its id; the response to it is read with readResponse after a flush
+    public long send(long accountId, int adults, int children, int infants) throws IOException {
+        return enqueue(accountId, adults, children, infants, false, 0, null);
+    }
+
+    public long send(long accountId, int adults, int children, int infants, UUID idempotencyKey) throws IOException {
+        return enqueue(accountId, adults, children, infants, false, 0, idempotencyKey);
+    }
+
+    public long sendForShowing(long showingId, long accountId, int adults, int children, int infants) throws IOException {
+        return enqueue(accountId, adults, children, infants, true, showingId, null);
+    }
+
+    private long enqueue(long accountId, int adults, int children, int infants, boolean hasShowing, long showingId, UUID key) throws IOException {
+        if (out.remaining() < PurchaseProtocol.REQUEST_BYTES) {
+            flush();
+        }
+        long requestId = nextRequestId++;
+        PurchaseProtocol.putRequest(out, requestId, accountId, adults, children, infants, hasShowing, showingId, key);
+        return requestId;
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    // Blocks until the next response arrives; flush first or this waits for a request never sent
+    public PurchaseResponse readResponse() throws IOException {
+        while (in.remaining() < PurchaseProtocol.RESPONSE_BYTES) {
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+        long requestId = in.getLong();
+        int status = in.get() & 0xFF;
+        int rejectionCode = in.get() & 0xFF;
+        return new PurchaseResponse(requestId, status, rejectionCode);
+    }
+
+    // Sends one request and waits for its response
+    public PurchaseResponse purchase(long accountId, int adults, int children, int infants) throws IOException {
+        send(accountId, adults, children, infants);
+        flush();
+        return readResponse();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,73 @@
+package uk.gov.dwp.uc.pairtest.wire;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Fixed-layout binary frames exchanged by {@link PurchaseServer} and {@link PurchaseClient}, all
+ * big-endian. Every request and every response has the same size, so frames need no length prefix
+ * and a reader can take as many as it has bytes for.
+ * <pre>
+ * Request, 44 bytes:
+ *   0  byte  flags: bit 0 showing id present, bit 1 idempotency key present
+ *   1  long  request id, echoed in the response
+ *   9  long  account id
+ *   17 byte  adults    (unsigned)
+ *   18 byte  children  (unsigned)
+ *   19 byte  infants   (unsigned)
+ *   20 long  showing id, ignored unless flagged
+ *   28 long  idempotency key, most significant half of a UUID, ignored unless flagged
+ *   36 long  idempotency key, least significant half
+ * Response, 10 bytes:
+ *   0  long  request id
+ *   8  byte  {@link PurchaseResponse.Status} code
+ *   9  byte  {@link uk.gov.dwp.uc.pairtest.exception.PurchaseRejection} code for REJECTED, otherwise 0
+ * </pre>
+ * Both codes are fixed per value rather than taken from enum order, so adding a value does not
+ * change what existing ones mean. A request may carry a showing id or an idempotency key but not
+ * both: showings are served by the sharded service, which does not deduplicate purchases, so such a
+ * request is answered with UNSUPPORTED. Responses on a connection come back in the order the
+ * requests were sent.
+ */
+public final class PurchaseProtocol {
+    public static final int REQUEST_BYTES = 44;
+    public static final int RESPONSE_BYTES = 10;
+    public static final byte HAS_SHOWING = 1;
+    public static final byte HAS_IDEMPOTENCY_KEY = 2;
+    static final int MAX_COUNT = 0xFF;
+
+    static final int FLAGS = 0;
+    static final int REQUEST_ID = 1;
+    static final int ACCOUNT_ID = 9;
+    static final int ADULTS = 17;
+    static final int CHILDREN = 18;
+    static final int INFANTS = 19;
+    static final int SHOWING_ID = 20;
+    static final int KEY_HIGH = 28;
+    static final int KEY_LOW = 36;
+
+    private PurchaseProtocol() {
+    }
+
+    // Appends a request at the buffer's position; showingId is only sent when hasShowing, key may be null
+    static void putRequest(ByteBuffer buffer, long requestId, long accountId, int adults, int children, int infants,
+                           boolean hasShowing, long showingId, UUID idempotencyKey) {
+        if (adults < 0 || children < 0 || infants < 0 || adults > MAX_COUNT || children > MAX_COUNT || infants > MAX_COUNT) {
+            throw new IllegalArgumentException("Ticket counts must be between 0 and " + MAX_COUNT);
+        }
+        byte flags = (byte) ((hasShowing ? HAS_SHOWING : 0) | (idempotencyKey != null ? HAS_IDEMPOTENCY_KEY : 0));
+        buffer.put(flags)
+                .putLong(requestId)
+                .putLong(accountId)
+                .put((byte) adults)
+                .put((byte) children)
+                .put((byte) infants)
+                .putLong(hasShowing ? showingId : 0)
+                .putLong(idempotencyKey != null ? idempotencyKey.getMostSignificantBits() : 0)
+                .putLong(idempotencyKey != null ? idempotencyKey.getLeastSignificantBits() : 0);
+    }
+
+    static void putResponse(ByteBuffer buffer, long requestId, PurchaseResponse.Status status, int rejectionCode) {
+        buffer.putLong(requestId).put((byte) status.getCode()).put((byte) rejectionCode);
+    }
+}
@@ -0,0 +1,69 @@
+package uk.gov.dwp.uc.pairtest.wire;
+
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+
+/**
+ * Immutable Object
+ */
+
+public final class PurchaseResponse {
+    // Codes are part of the wire protocol: a new status takes the next free code, and a code is never renumbered or reused
+    public enum Status {
+        SUCCESS(0),
+        // The order was invalid; getRejection names the rule when the server knows it
+        REJECTED(1),
+        // Payment was taken but seats could not be reserved; the payment is being refunded
+        RESERVATION_FAILED(2),
+        // The showing did not have enough seats left; nothing was charged
+        SEATS_UNAVAILABLE(3),
+        // The request asked for something this server does not offer, such as a showing id without a showing router
+        UNSUPPORTED(4),
+        // Any other failure, e.g. a gateway error
+        FAILED(5);
+
+        private static final Status[] BY_CODE = {SUCCESS, REJECTED, RESERVATION_FAILED, SEATS_UNAVAILABLE, UNSUPPORTED, FAILED};
+
+        private final int code;
+
+        Status(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        // Codes this version does not know are read as FAILED
+        static Status fromCode(int code) {
+            return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : FAILED;
+        }
+    }
+
+    private final long requestId;
+    private final Status status;
+    private final PurchaseRejection rejection;
+
+    PurchaseResponse(long requestId, int status, int rejectionCode) {
+        this.requestId = requestId;
+        this.status = Status.fromCode(status);
+        this.rejection = PurchaseRejection.fromCode(rejectionCode);
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // Null unless the status is REJECTED and the reason is one of the known rejections
+    public PurchaseRejection getRejection() {
+        return rejection;
+    }
+
+    @Override
+    public String toString() {
+        return "PurchaseResponse[request=" + requestId + ", " + status + (rejection == null ? "" : ", " + rejection) + "]";
+    }
+}
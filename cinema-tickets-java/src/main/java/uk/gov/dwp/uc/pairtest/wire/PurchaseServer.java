@@ -0,0 +1,260 @@
+package uk.gov.dwp.uc.pairtest.wire;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.dwp.uc.pairtest.ShardedTicketService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.exception.ReservationFailedException;
+import uk.gov.dwp.uc.pairtest.exception.SeatsUnavailableException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Minimal network endpoint for purchases speaking {@link PurchaseProtocol}. Each connection is served
+ * by one task on the supplied executor, reading with a blocking {@link SocketChannel} into a pooled
+ * direct buffer; with {@code AsyncTicketServiceImpl.newGatewayExecutor()} those tasks run on virtual
+ * threads where the runtime has them.
+ * <p>
+ * A connection may pipeline requests: every complete request already read is decoded in place from
+ * the buffer and processed in order, and their responses are written back together once the buffer
+ * holds no further complete request. A plain request goes straight to the primitive
+ * {@link TicketServiceImpl#purchaseTickets(long, int, int, int)} path, so decoding and purchasing it
+ * allocates nothing. Requests with an idempotency key go through {@link TicketServiceImpl#purchase},
+ * and requests for a showing through the {@link ShardedTicketService}, when one is configured; a
+ * request with both is answered UNSUPPORTED, as {@link PurchaseProtocol} describes.
+ */
+public class PurchaseServer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PurchaseServer.class);
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private final TicketServiceImpl ticketService;
+    private final ShardedTicketService showings;
+    private final ExecutorService connectionExecutor;
+    private final Semaphore connectionSlots;
+    private final BufferPool buffers;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+
+    /**
+     * {@code showings} may be null, in which case requests carrying a showing id are answered with
+     * UNSUPPORTED. Connections beyond {@code maxConnections} are closed as soon as they are accepted.
+     */
+    public PurchaseServer(TicketServiceImpl ticketService, ShardedTicketService showings, ExecutorService connectionExecutor, int maxConnections) {
+        this.ticketService = Objects.requireNonNull(ticketService, "TicketService must not be null");
+        this.showings = showings;
+        this.connectionExecutor = Objects.requireNonNull(connectionExecutor, "Executor must not be null");
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("Maximum connections must be positive");
+        }
+        this.connectionSlots = new Semaphore(maxConnections);
+        this.buffers = new BufferPool(BUFFER_BYTES, Math.min(maxConnections, 64) * 2);
+    }
+
+    // Binds and starts accepting; returns the bound address, which gives the port when binding to port 0
+    public synchronized InetSocketAddress start(InetSocketAddress address) throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        serverChannel = ServerSocketChannel.open().bind(address);
+        acceptor = new Thread(this::acceptConnections, "purchase-server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    private void acceptConnections() {
+        while (serverChannel.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Failed to accept purchase connection", e);
+                continue;
+            }
+            if (!connectionSlots.tryAcquire()) {
+                LOGGER.warn("Refusing purchase connection from {}: too many connections", remoteAddress(channel));
+                closeQuietly(channel);
+                continue;
+            }
+            try {
+                connectionExecutor.execute(() -> serve(channel));
+            } catch (RejectedExecutionException e) {
+                connectionSlots.release();
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        connections.add(channel);
+        ByteBuffer in = buffers.acquire();
+        ByteBuffer out = buffers.acquire();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (in.remaining() >= PurchaseProtocol.REQUEST_BYTES) {
+                    if (out.remaining() < PurchaseProtocol.RESPONSE_BYTES) {
+                        flush(channel, out);
+                    }
+                    handle(in, out);
+                    in.position(in.position() + PurchaseProtocol.REQUEST_BYTES);
+                }
+                in.compact();
+                flush(channel, out);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Purchase connection from {} closed: {}", remoteAddress(channel), e.getMessage());
+        } finally {
+            connections.remove(channel);
+            closeQuietly(channel);
+            buffers.release(in);
+            buffers.release(out);
+            connectionSlots.release();
+        }
+    }
+
+    private static void flush(SocketChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    // Decodes the request at the input's position, without moving it, and appends the response
+    private void handle(ByteBuffer in, ByteBuffer out) {
+        int at = in.position();
+        byte flags = in.get(at + PurchaseProtocol.FLAGS);
+        long requestId = in.getLong(at + PurchaseProtocol.REQUEST_ID);
+        long accountId = in.getLong(at + PurchaseProtocol.ACCOUNT_ID);
+        int adults = in.get(at + PurchaseProtocol.ADULTS) & PurchaseProtocol.MAX_COUNT;
+        int children = in.get(at + PurchaseProtocol.CHILDREN) & PurchaseProtocol.MAX_COUNT;
+        int infants = in.get(at + PurchaseProtocol.INFANTS) & PurchaseProtocol.MAX_COUNT;
+        PurchaseResponse.Status status;
+        int rejectionCode = 0;
+        try {
+            if (flags == 0) {
+                ticketService.purchaseTickets(accountId, adults, children, infants);
+                status = PurchaseResponse.Status.SUCCESS;
+            } else if (flags == PurchaseProtocol.HAS_IDEMPOTENCY_KEY) {
+                String key = new UUID(in.getLong(at + PurchaseProtocol.KEY_HIGH), in.getLong(at + PurchaseProtocol.KEY_LOW)).toString();
+                PurchaseResult result = ticketService.purchase(new PurchaseOrder(accountId, requests(adults, children, infants)).withIdempotencyKey(key));
+                status = statusOf(result);
+                rejectionCode = rejectionCode(result);
+            } else if (flags == PurchaseProtocol.HAS_SHOWING && showings != null) {
+                PurchaseResult result = showings.purchaseTickets(in.getLong(at + PurchaseProtocol.SHOWING_ID), accountId, requests(adults, children, infants)).join();
+                status = statusOf(result);
+                rejectionCode = rejectionCode(result);
+            } else {
+                status = PurchaseResponse.Status.UNSUPPORTED;
+            }
+        } catch (InvalidPurchaseException e) {
+            status = PurchaseResponse.Status.REJECTED;
+            rejectionCode = rejectionCode(e.getRejection());
+        } catch (ReservationFailedException e) {
+            // Paid for, then refunded when the seats could not be reserved
+            status = statusOf(e.getResult());
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof SeatsUnavailableException) {
+                status = PurchaseResponse.Status.SEATS_UNAVAILABLE;
+            } else {
+                LOGGER.warn("Purchase {} for account ID: {} failed", requestId, accountId, cause);
+                status = PurchaseResponse.Status.FAILED;
+            }
+        }
+        PurchaseProtocol.putResponse(out, requestId, status, rejectionCode);
+    }
+
+    private static TicketTypeRequest[] requests(int adults, int children, int infants) {
+        List<TicketTypeRequest> requests = new ArrayList<>(3);
+        if (adults > 0) {
+            requests.add(new TicketTypeRequest(TicketTypeRequest.Type.ADULT, adults));
+        }
+        if (children > 0) {
+            requests.add(new TicketTypeRequest(TicketTypeRequest.Type.CHILD, children));
+        }
+        if (infants > 0) {
+            requests.add(new TicketTypeRequest(TicketTypeRequest.Type.INFANT, infants));
+        }
+        return requests.toArray(new TicketTypeRequest[0]);
+    }
+
+    private static PurchaseResponse.Status statusOf(PurchaseResult result) {
+        switch (result.getStatus()) {
+            case SUCCESS:
+                return PurchaseResponse.Status.SUCCESS;
+            case RESERVATION_FAILED:
+                return PurchaseResponse.Status.RESERVATION_FAILED;
+            case REJECTED:
+                return PurchaseResponse.Status.REJECTED;
+            default:
+                return PurchaseResponse.Status.FAILED;
+        }
+    }
+
+    private static int rejectionCode(PurchaseResult result) {
+        return result.getStatus() == PurchaseResult.Status.REJECTED ? rejectionCode(result.getRejection()) : 0;
+    }
+
+    private static int rejectionCode(PurchaseRejection rejection) {
+        return rejection == null ? 0 : rejection.getCode();
+    }
+
+    private static Object remoteAddress(SocketChannel channel) {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Error closing purchase connection", e);
+        }
+    }
+
+    // Stops accepting and closes open connections; requests already being processed still complete
+    @Override
+    public synchronized void close() throws IOException {
+        if (serverChannel == null) {
+            return;
+        }
+        serverChannel.close();
+        for (SocketChannel channel : connections) {
+            closeQuietly(channel);
+        }
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.limits.AccountPurchaseLedger;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doThrow;
+
+public class AccountPurchaseLedgerTest {
+
+    // Clock whose time can be moved forward by the test
+    private static final class MutableClock extends Clock {
+        private volatile Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private static TicketServiceImpl ticketService(TicketPaymentService paymentService, AccountPurchaseLedger ledger) {
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "25");
+        prices.setProperty("child.ticket.price", "15");
+        return new TicketServiceImpl(paymentService, Mockito.mock(SeatReservationService.class), new ReloadablePriceTable(() -> prices))
+                .withAccountLimits(ledger);
+    }
+
+    @Test
+    void shouldEnforceAllowancePerWindow() {
+        MutableClock clock = new MutableClock();
+        AccountPurchaseLedger ledger = new AccountPurchaseLedger(25, Duration.ofHours(1), clock, 4);
+
+        assertTrue(ledger.tryAcquire(1L, 20));
+        assertFalse(ledger.tryAcquire(1L, 6));
+        assertTrue(ledger.tryAcquire(2L, 25));
+        assertTrue(ledger.tryAcquire(1L, 5));
+        assertEquals(25, ledger.ticketsInCurrentWindow(1L));
+
+        clock.now = clock.now.plus(Duration.ofHours(1));
+        assertEquals(0, ledger.ticketsInCurrentWindow(1L));
+        assertTrue(ledger.tryAcquire(1L, 25));
+    }
+
+    @Test
+    void shouldKeepManyAccountsAcrossTableGrowth() {
+        AccountPurchaseLedger ledger = new AccountPurchaseLedger(10, Duration.ofHours(1), Clock.systemUTC(), 2);
+        for (long account = 1; account <= 10_000; account++) {
+            assertTrue(ledger.tryAcquire(account, (int) (account % 10) + 1));
+        }
+        for (long account = 1; account <= 10_000; account++) {
+            assertEquals((int) (account % 10) + 1, ledger.ticketsInCurrentWindow(account));
+        }
+    }
+
+    @Test
+    void shouldRejectPurchaseOverAllowanceAndRefundFailedPurchases() {
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+        AccountPurchaseLedger ledger = new AccountPurchaseLedger(25, Duration.ofHours(1));
+        TicketServiceImpl service = ticketService(paymentService, ledger);
+
+        service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 20));
+        InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class, () -> service.purchaseTickets(1L, 2, 3, 1));
+        assertSame(PurchaseRejection.ACCOUNT_LIMIT_EXCEEDED, exception.getRejection());
+
+        // A purchase that fails at the gateway does not use up the allowance
+        doThrow(new IllegalStateException("gateway down")).when(paymentService).makePayment(2L, 125);
+        assertThrows(IllegalStateException.class, () -> service.purchaseTickets(2L, 5, 0, 0));
+        assertEquals(0, ledger.ticketsInCurrentWindow(2L));
+    }
+
+    @Test
+    void shouldNeverExceedAllowanceForConcurrentPurchasesOnSameAccount() throws InterruptedException {
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+        AccountPurchaseLedger ledger = new AccountPurchaseLedger(100, Duration.ofHours(1));
+        TicketServiceImpl service = ticketService(paymentService, ledger);
+        AtomicInteger sharedAccountTickets = new AtomicInteger();
+        AtomicInteger ownAccountTickets = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            long ownAccount = 100L + t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 200; i++) {
+                    purchase(service, 1L, 3, sharedAccountTickets);
+                    purchase(service, ownAccount, 1, ownAccountTickets);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // 100 / 3 whole purchases fit on the shared account; each thread's own account fills to its allowance
+        assertEquals(99, sharedAccountTickets.get());
+        assertEquals(99, ledger.ticketsInCurrentWindow(1L));
+        assertEquals(threads * 100, ownAccountTickets.get());
+    }
+
+    private static void purchase(TicketServiceImpl service, long accountId, int adults, AtomicInteger sold) {
+        try {
+            service.purchaseTickets(accountId, adults, 0, 0);
+            sold.addAndGet(adults);
+        } catch (InvalidPurchaseException e) {
+            assertSame(PurchaseRejection.ACCOUNT_LIMIT_EXCEEDED, e.getRejection());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.AdmissionControlledTicketService;
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.admission.AdmissionController;
+import uk.gov.dwp.uc.pairtest.benchmark.SimulatedPaymentGateway;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.metrics.LatencyHistogram;
+import uk.gov.dwp.uc.pairtest.metrics.LatencySnapshot;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Legitimate customers buying through a gateway that serves one call at a time, while abusive
+ * clients hammer a single account in tight loops. Admission control should keep the bots off the
+ * gateway, so customer latency stays close to one gateway round trip.
+ * <p>
+ * The latency comparison runs on the wall clock for a few seconds, so it is tagged {@code load} and
+ * only runs with {@code -Ploadtest}; the limit on what the bots get through runs on a simulated clock.
+ */
+public class AdmissionControlLoadTest {
+    private static final int BOTS = 3;
+    private static final long GATEWAY_LATENCY_MILLIS = 2;
+    private static final long RUN_MILLIS = 1500;
+
+    @Test
+    void shouldHoldAbusiveAccountToItsBurstAndRate() {
+        AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+        AdmissionController admission = new AdmissionController(5, 5, 500, 50, 1024, clock::get);
+        TicketService protectedService = new AdmissionControlledTicketService(ticketService((accountId, amount) -> { }), admission, PurchaseMetrics.NOOP);
+
+        // Every bot tries once a millisecond for the length of a load run
+        long botAdmitted = 0;
+        for (long elapsed = 0; elapsed < RUN_MILLIS; elapsed++) {
+            for (int bot = 0; bot < BOTS; bot++) {
+                try {
+                    protectedService.purchaseTickets(666L, 1, 0, 0);
+                    botAdmitted++;
+                } catch (InvalidPurchaseException e) {
+                    // Shed
+                }
+            }
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        // Bots get their burst plus the account rate, nothing more
+        assertTrue(botAdmitted <= 5 + 5 * (RUN_MILLIS / 1000 + 1), botAdmitted + " bot purchases admitted");
+        assertTrue(botAdmitted >= 5 + 5 * (RUN_MILLIS / 1000), botAdmitted + " bot purchases admitted");
+    }
+
+    @Test
+    @Tag("load")
+    void shouldKeepLegitimateLatencyLowUnderAbusiveLoad() throws InterruptedException {
+        SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(GATEWAY_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        TicketService unprotected = ticketService(gateway);
+        AdmissionController admission = new AdmissionController(5, 5, 500, 50, 1024);
+        TicketService protectedService = new AdmissionControlledTicketService(unprotected, admission, PurchaseMetrics.NOOP);
+
+        LatencySnapshot customers = runLoad(protectedService);
+
+        assertTrue(customers.getCount() > 0);
+        assertTrue(customers.getP99() < TimeUnit.MILLISECONDS.toNanos(50), "customers with admission control: " + customers);
+
+        // The same load with nothing in front of the ticket service, for comparison
+        LatencySnapshot unprotectedCustomers = runLoad(unprotected);
+        assertTrue(customers.getP50() < unprotectedCustomers.getP50(),
+                "with admission control " + customers + ", without " + unprotectedCustomers);
+    }
+
+    private static TicketService ticketService(TicketPaymentService gateway) {
+        SeatReservationService seats = (accountId, totalSeatsToAllocate) -> { };
+        return new TicketServiceImpl(gateway, seats, TestPrices.priceTable());
+    }
+
+    private static LatencySnapshot runLoad(TicketService service) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+        List<Thread> bots = new ArrayList<>();
+        for (int i = 0; i < BOTS; i++) {
+            Thread bot = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    try {
+                        service.purchaseTickets(666L, 1, 0, 0);
+                    } catch (InvalidPurchaseException e) {
+                        // Shed; try again straight away
+                    }
+                }
+            }, "bot-" + i);
+            bots.add(bot);
+            bot.start();
+        }
+
+        // Customers arrive on an open schedule of one purchase every 20ms, each from a new account
+        LatencyHistogram latency = new LatencyHistogram();
+        long account = 1;
+        long next = System.nanoTime();
+        while (next < deadline) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            service.purchaseTickets(account++, 2, 1, 0);
+            latency.record(System.nanoTime() - next);
+            next += TimeUnit.MILLISECONDS.toNanos(20);
+        }
+        for (Thread bot : bots) {
+            bot.join();
+        }
+        return latency.snapshot();
+    }
+}
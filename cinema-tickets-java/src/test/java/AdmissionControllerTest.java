@@ -0,0 +1,164 @@
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.AdmissionControlledTicketService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.admission.AdmissionController;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.metrics.DefaultPurchaseMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class AdmissionControllerTest {
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+
+    private static int admitted(AdmissionController admission, long accountId, int attempts) {
+        int admitted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (admission.tryAdmit(accountId)) {
+                admitted++;
+            }
+        }
+        return admitted;
+    }
+
+    @Test
+    void shouldAllowBurstThenRefillAtAccountRate() {
+        AdmissionController admission = new AdmissionController(10, 5, 1000, 1000, 64, clock::get);
+
+        assertEquals(5, admitted(admission, 7L, 20));
+        assertEquals(15, admission.shedByAccount());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+        assertEquals(3, admitted(admission, 7L, 20));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(5, admitted(admission, 7L, 20));
+    }
+
+    @Test
+    void shouldLimitAccountsIndependently() {
+        AdmissionController admission = new AdmissionController(10, 2, 1000, 1000, 64, clock::get);
+
+        assertEquals(2, admitted(admission, 7L, 10));
+        assertEquals(2, admitted(admission, 8L, 10));
+    }
+
+    @Test
+    void shouldApplyGlobalLimitAcrossAccountsWithoutChargingShedAccounts() {
+        AdmissionController admission = new AdmissionController(10, 2, 100, 3, 64, clock::get);
+
+        assertEquals(2, admitted(admission, 1L, 2));
+        assertEquals(1, admitted(admission, 2L, 2));
+        assertEquals(1, admission.shedGlobally());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(1, admitted(admission, 2L, 1));
+    }
+
+    @Test
+    void shouldShareOneBucketForMissingAndInvalidAccounts() {
+        AdmissionController admission = new AdmissionController(10, 3, 1000, 1000, 64, clock::get);
+
+        assertTrue(admission.tryAdmit((Long) null));
+        assertTrue(admission.tryAdmit(0L));
+        assertTrue(admission.tryAdmit(-42L));
+        assertFalse(admission.tryAdmit(-1L));
+    }
+
+    @Test
+    void shouldReuseIdleBucketsSoMemoryStaysBounded() {
+        AdmissionController admission = new AdmissionController(10, 1, 1_000_000, 1_000_000, 16, clock::get);
+
+        for (long account = 1; account <= 10_000; account++) {
+            assertTrue(admission.tryAdmit(account), "account " + account);
+            // Each bucket refills completely before the next account arrives
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertEquals(0, admission.shedTableFull());
+    }
+
+    @Test
+    void shouldShedWhenEveryBucketBelongsToAnActiveAccount() {
+        AdmissionController admission = new AdmissionController(1, 1, 1_000_000, 1_000_000, 16, clock::get);
+
+        int admitted = 0;
+        for (long account = 1; account <= 64; account++) {
+            if (admission.tryAdmit(account)) {
+                admitted++;
+            }
+        }
+
+        assertTrue(admitted <= 16, "admitted " + admitted);
+        assertEquals(64 - admitted, admission.shedTableFull());
+    }
+
+    @Test
+    void shouldShedBeforeReachingTheTicketService() {
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+        TicketServiceImpl ticketService = new TicketServiceImpl(paymentService, Mockito.mock(SeatReservationService.class), TestPrices.priceTable());
+        DefaultPurchaseMetrics metrics = new DefaultPurchaseMetrics();
+        AdmissionControlledTicketService service = new AdmissionControlledTicketService(ticketService,
+                new AdmissionController(1, 1, 1000, 1000, 64, clock::get), metrics);
+
+        service.purchaseTickets(7L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        InvalidPurchaseException shed = assertThrows(InvalidPurchaseException.class, () -> service.purchaseTickets(7L, 1, 0, 0));
+
+        assertSame(PurchaseRejection.RATE_LIMITED, shed.getRejection());
+        assertEquals(1, metrics.rejections(PurchaseRejection.RATE_LIMITED));
+        verify(paymentService, times(1)).makePayment(anyLong(), anyInt());
+
+        List<PurchaseResult> results = service.purchaseTicketsBatch(List.of(
+                new PurchaseOrder(7L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(8L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1))));
+        assertEquals(PurchaseResult.Status.REJECTED, results.get(0).getStatus());
+        assertEquals(PurchaseRejection.RATE_LIMITED.getMessage(), results.get(0).getFailureReason());
+        assertTrue(results.get(1).isSuccess());
+        verify(paymentService).makePayment(8L, TestPrices.ADULT);
+        verify(paymentService, times(2)).makePayment(anyLong(), anyInt());
+    }
+
+    @Test
+    void shouldNotAllocateWhenShedding() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        TicketServiceImpl ticketService = Mockito.mock(TicketServiceImpl.class);
+        AdmissionControlledTicketService service = new AdmissionControlledTicketService(ticketService,
+                new AdmissionController(1, 1, 1000, 1000, 64, clock::get), new DefaultPurchaseMetrics());
+        service.purchaseTickets(7L, 1, 0, 0);
+        for (int i = 0; i < 100_000; i++) {
+            shed(service);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            shed(service);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // Room for the measurement itself, far below one object per rejection
+        assertTrue(allocated < 10_000, allocated + " bytes allocated");
+    }
+
+    private static void shed(AdmissionControlledTicketService service) {
+        try {
+            service.purchaseTickets(7L, 1, 0, 0);
+            fail("Request should have been shed");
+        } catch (InvalidPurchaseException e) {
+            assertSame(PurchaseRejection.RATE_LIMITED, e.getRejection());
+        }
+    }
+}
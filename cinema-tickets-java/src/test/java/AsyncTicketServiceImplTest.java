@@ -0,0 +1,190 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.RefundableTicketPaymentService;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.AsyncTicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.DefaultConfigurationLoader;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.compensation.CompensationWorker;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AsyncTicketServiceImplTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private final CountDownLatch gatewayRelease = new CountDownLatch(1);
+    private SeatReservationService seatReservationService;
+    private DefaultConfigurationLoader configLoader;
+    private ExecutorService executor;
+    private CompensationWorker worker;
+
+    @BeforeEach
+    public void setUp() {
+        seatReservationService = Mockito.mock(SeatReservationService.class);
+        configLoader = Mockito.mock(DefaultConfigurationLoader.class);
+        Properties properties = new Properties();
+        properties.setProperty("adult.ticket.price", "25");
+        properties.setProperty("child.ticket.price", "15");
+        when(configLoader.loadProperties()).thenReturn(properties);
+        executor = AsyncTicketServiceImpl.newGatewayExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gatewayRelease.countDown();
+        executor.shutdownNow();
+        if (worker != null) {
+            worker.close();
+        }
+    }
+
+    private AsyncTicketServiceImpl newService(TicketPaymentService paymentService, int maxInFlight, Duration paymentTimeout) {
+        TicketServiceImpl ticketService = new TicketServiceImpl(paymentService, seatReservationService, configLoader);
+        return new AsyncTicketServiceImpl(ticketService, executor, maxInFlight, paymentTimeout, TIMEOUT);
+    }
+
+    private AsyncTicketServiceImpl newCompensatingService(RefundableTicketPaymentService paymentService, Duration paymentTimeout, Duration reservationTimeout) {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        TicketServiceImpl ticketService = new TicketServiceImpl(paymentService, seatReservationService, configLoader).withCompensation(worker);
+        return new AsyncTicketServiceImpl(ticketService, executor, 10, paymentTimeout, reservationTimeout);
+    }
+
+    // Payment gateway that blocks until the test releases it
+    private TicketPaymentService blockingPaymentService() {
+        return (accountId, totalAmountToPay) -> {
+            try {
+                gatewayRelease.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    @Test
+    void shouldCompleteWithPurchaseResult() throws Exception {
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+        AsyncTicketServiceImpl service = newService(paymentService, 10, TIMEOUT);
+
+        PurchaseResult result = service.purchaseTickets(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+                new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)).get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccess());
+        assertEquals(65, result.getTotalAmountPaid());
+        assertEquals(3, result.getTotalSeatsReserved());
+        verify(paymentService).makePayment(1L, 65);
+        verify(seatReservationService).reserveSeat(1L, 3);
+    }
+
+    @Test
+    void shouldCompleteInvalidPurchaseWithRejection() throws Exception {
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+        AsyncTicketServiceImpl service = newService(paymentService, 10, TIMEOUT);
+
+        CompletableFuture<PurchaseResult> future = service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1));
+
+        assertTrue(future.isDone());
+        assertFalse(future.get().isSuccess());
+        assertEquals("Child and Infant tickets require an accompanying Adult ticket purchase.", future.get().getFailureReason());
+        verify(paymentService, never()).makePayment(Mockito.anyLong(), Mockito.anyInt());
+    }
+
+    @Test
+    void shouldTimeOutSlowPaymentWithoutReservingSeats() {
+        AsyncTicketServiceImpl service = newService(blockingPaymentService(), 10, Duration.ofMillis(50));
+
+        CompletableFuture<PurchaseResult> future = service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        verify(seatReservationService, never()).reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+    }
+
+    @Test
+    void shouldRejectPurchasesBeyondInFlightLimit() throws Exception {
+        AsyncTicketServiceImpl service = newService(blockingPaymentService(), 1, TIMEOUT);
+
+        CompletableFuture<PurchaseResult> first = service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        CompletableFuture<PurchaseResult> second = service.purchaseTickets(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, second::get);
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+
+        gatewayRelease.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS).isSuccess());
+        // The permit is free again once the first purchase has completed
+        assertTrue(service.purchaseTickets(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)).get(5, TimeUnit.SECONDS).isSuccess());
+    }
+
+    @Test
+    void shouldRefundPaymentThatGoesThroughAfterTimingOut() {
+        RefundableTicketPaymentService paymentService = Mockito.mock(RefundableTicketPaymentService.class);
+        doAnswer(invocation -> gatewayRelease.await(5, TimeUnit.SECONDS)).when(paymentService).makePayment(1L, 25);
+        AsyncTicketServiceImpl service = newCompensatingService(paymentService, Duration.ofMillis(50), TIMEOUT);
+
+        CompletableFuture<PurchaseResult> future = service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+
+        gatewayRelease.countDown();
+        verify(paymentService, timeout(5000)).refundPayment(1L, 25);
+        verify(seatReservationService, never()).reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+    }
+
+    @Test
+    void shouldKeepPurchaseWhenSeatsAreReservedAfterTimingOut() throws Exception {
+        RefundableTicketPaymentService paymentService = Mockito.mock(RefundableTicketPaymentService.class);
+        doAnswer(invocation -> gatewayRelease.await(5, TimeUnit.SECONDS)).when(seatReservationService).reserveSeat(1L, 1);
+        AsyncTicketServiceImpl service = newCompensatingService(paymentService, TIMEOUT, Duration.ofMillis(50));
+
+        PurchaseResult result = service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)).get(5, TimeUnit.SECONDS);
+        // Paid for and possibly seated, so the caller must not take the timeout as nothing bought
+        assertEquals(PurchaseResult.Status.OUTCOME_UNKNOWN, result.getStatus());
+        assertEquals(25, result.getTotalAmountPaid());
+        assertFalse(result.getSettlement().isDone());
+
+        gatewayRelease.countDown();
+        assertTrue(result.getSettlement().get(5, TimeUnit.SECONDS).isSuccess());
+        verify(paymentService, after(200).never()).refundPayment(Mockito.anyLong(), Mockito.anyInt());
+    }
+
+    @Test
+    void shouldRefundWhenReservationFailsAfterTimingOut() throws Exception {
+        RefundableTicketPaymentService paymentService = Mockito.mock(RefundableTicketPaymentService.class);
+        doAnswer(invocation -> {
+            gatewayRelease.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("Seat booking unavailable");
+        }).when(seatReservationService).reserveSeat(1L, 1);
+        AsyncTicketServiceImpl service = newCompensatingService(paymentService, TIMEOUT, Duration.ofMillis(50));
+
+        PurchaseResult result = service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)).get(5, TimeUnit.SECONDS);
+        assertEquals(PurchaseResult.Status.OUTCOME_UNKNOWN, result.getStatus());
+        verify(paymentService, never()).refundPayment(Mockito.anyLong(), Mockito.anyInt());
+
+        gatewayRelease.countDown();
+        PurchaseResult settled = result.getSettlement().get(5, TimeUnit.SECONDS);
+        assertEquals(PurchaseResult.Status.RESERVATION_FAILED, settled.getStatus());
+        assertEquals("Seat booking unavailable", settled.getFailureReason());
+        verify(paymentService, timeout(5000)).refundPayment(1L, 25);
+    }
+}
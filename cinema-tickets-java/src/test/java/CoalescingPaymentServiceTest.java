@@ -0,0 +1,186 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import thirdparty.paymentgateway.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.AsyncTicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.benchmark.SimulatedPaymentGateway;
+import uk.gov.dwp.uc.pairtest.exception.OutcomeUnknownException;
+import uk.gov.dwp.uc.pairtest.payment.CoalescingPaymentService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoalescingPaymentServiceTest {
+    private final ExecutorService executor = AsyncTicketServiceImpl.newGatewayExecutor();
+    private CoalescingPaymentService coalescer;
+
+    @AfterEach
+    void tearDown() {
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldCoalesceConcurrentPaymentsIntoFewerGatewayCalls() throws Exception {
+        SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(2, TimeUnit.MILLISECONDS);
+        coalescer = new CoalescingPaymentService(gateway, executor, 32, Duration.ofMillis(2), 1);
+        int threads = 32;
+        int paymentsPerThread = 10;
+        List<Thread> payers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long accountId = t + 1;
+            Thread payer = new Thread(() -> {
+                for (int i = 0; i < paymentsPerThread; i++) {
+                    coalescer.makePayment(accountId, 25);
+                }
+            });
+            payers.add(payer);
+            payer.start();
+        }
+        for (Thread payer : payers) {
+            payer.join();
+        }
+
+        assertEquals(threads * paymentsPerThread, gateway.payments());
+        // Calling the gateway directly would take one call per payment
+        assertTrue(gateway.calls() <= threads * paymentsPerThread / 4, "expected batching but made " + gateway.calls() + " calls");
+    }
+
+    @Test
+    void shouldNeverExceedMaximumBatchSize() throws Exception {
+        AtomicInteger largestBatch = new AtomicInteger();
+        BatchTicketPaymentService gateway = new BatchTicketPaymentService() {
+            @Override
+            public void makePayments(long[] accountIds, int[] totalAmountsToPay) {
+                largestBatch.accumulateAndGet(accountIds.length, Math::max);
+            }
+
+            @Override
+            public void makePayment(long accountId, int totalAmountToPay) {
+            }
+        };
+        coalescer = new CoalescingPaymentService(gateway, executor, 8, Duration.ofMillis(50), 1);
+        List<CompletableFuture<Void>> outcomes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            outcomes.add(coalescer.submit(i + 1, 25));
+        }
+        CompletableFuture.allOf(outcomes.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+
+        assertTrue(largestBatch.get() <= 8);
+    }
+
+    @Test
+    void shouldFailEveryPaymentOfFailedBatchAsUnknownWithoutResendingIt() throws Exception {
+        CountDownLatch blocking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger batchCalls = new AtomicInteger();
+        AtomicInteger singleCalls = new AtomicInteger();
+        BatchTicketPaymentService gateway = new BatchTicketPaymentService() {
+            @Override
+            public void makePayments(long[] accountIds, int[] totalAmountsToPay) {
+                batchCalls.incrementAndGet();
+                throw new IllegalStateException("Batch rejected");
+            }
+
+            @Override
+            public void makePayment(long accountId, int totalAmountToPay) {
+                singleCalls.incrementAndGet();
+                if (accountId == 9L) {
+                    blocking.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        coalescer = new CoalescingPaymentService(gateway, executor, 3, Duration.ofMillis(2), 1);
+        // Occupy the only batch slot so the next three payments queue up and go out together
+        CompletableFuture<Void> blocker = coalescer.submit(9L, 25);
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+
+        List<CompletableFuture<Void>> batch = List.of(coalescer.submit(1L, 25), coalescer.submit(2L, 25), coalescer.submit(3L, 25));
+        release.countDown();
+
+        assertNull(blocker.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<Void> payment : batch) {
+            ExecutionException failed = assertThrows(ExecutionException.class, () -> payment.get(5, TimeUnit.SECONDS));
+            // The gateway may have taken the payment before failing, so the caller must refund it
+            assertInstanceOf(OutcomeUnknownException.class, failed.getCause());
+            assertEquals("Batch rejected", failed.getCause().getCause().getMessage());
+        }
+        assertEquals(1, batchCalls.get());
+        // Only the blocker went out on its own; the failed batch may have charged some of its payments already
+        assertEquals(1, singleCalls.get());
+    }
+
+    @Test
+    void shouldNotWaitWhenPaymentsArriveSlowly() throws Exception {
+        SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(0, TimeUnit.MILLISECONDS);
+        coalescer = new CoalescingPaymentService(gateway, executor, 32, Duration.ofMillis(2), 1);
+        for (int i = 0; i < 5; i++) {
+            coalescer.makePayment(1L, 25);
+            Thread.sleep(10);
+        }
+
+        assertEquals(Duration.ZERO, coalescer.currentWindow());
+        assertEquals(5, gateway.calls());
+    }
+
+    @Test
+    void shouldRejectPaymentsAfterClose() {
+        coalescer = new CoalescingPaymentService(new SimulatedPaymentGateway(0, TimeUnit.MILLISECONDS), executor, 8, Duration.ofMillis(2), 1);
+        coalescer.close();
+
+        assertThrows(RejectedExecutionException.class, () -> coalescer.makePayment(1L, 25));
+    }
+
+    @Test
+    void shouldStopWaitingForBatchSlotWhenClosing() throws Exception {
+        CountDownLatch blocking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchTicketPaymentService gateway = new BatchTicketPaymentService() {
+            @Override
+            public void makePayments(long[] accountIds, int[] totalAmountsToPay) {
+            }
+
+            @Override
+            public void makePayment(long accountId, int totalAmountToPay) {
+                if (accountId == 9L) {
+                    blocking.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        coalescer = new CoalescingPaymentService(gateway, executor, 8, Duration.ofMillis(2), 1);
+        try {
+            // A hung gateway call holds the only batch slot
+            coalescer.submit(9L, 25);
+            assertTrue(blocking.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Void> queued = coalescer.submit(1L, 25);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(15), () -> coalescer.close());
+
+            ExecutionException failed = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, failed.getCause());
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.RefundableTicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.compensation.CompensationWorker;
+import uk.gov.dwp.uc.pairtest.domain.CompensationOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.GatewayTimeoutException;
+import uk.gov.dwp.uc.pairtest.exception.ReservationFailedException;
+import uk.gov.dwp.uc.pairtest.exception.SeatsUnavailableException;
+import uk.gov.dwp.uc.pairtest.idempotency.IdempotencyCache;
+import uk.gov.dwp.uc.pairtest.limits.AccountPurchaseLedger;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CompensationWorkerTest {
+    private final RefundableTicketPaymentService paymentService = Mockito.mock(RefundableTicketPaymentService.class);
+    private final SeatReservationService reservationService = Mockito.mock(SeatReservationService.class);
+    private CompensationWorker worker;
+
+    @AfterEach
+    void tearDown() {
+        if (worker != null) {
+            worker.close();
+        }
+    }
+
+    private TicketServiceImpl ticketService() {
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "25");
+        prices.setProperty("child.ticket.price", "15");
+        return new TicketServiceImpl(paymentService, reservationService, new ReloadablePriceTable(() -> prices)).withCompensation(worker);
+    }
+
+    private static CompensationOutcome await(CompletableFuture<CompensationOutcome> outcome) throws Exception {
+        return outcome.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void shouldRefundPaymentWhenReservationFails() throws Exception {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        doThrow(new SeatsUnavailableException("Sold out")).when(reservationService).reserveSeat(1L, 2);
+
+        PurchaseResult result = ticketService().purchase(new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)));
+
+        assertEquals(PurchaseResult.Status.RESERVATION_FAILED, result.getStatus());
+        assertFalse(result.isSuccess());
+        assertEquals(50, result.getTotalAmountPaid());
+        assertEquals("Sold out", result.getFailureReason());
+        assertEquals(CompensationOutcome.REFUNDED, await(result.getCompensation()));
+        verify(paymentService).refundPayment(1L, 50);
+    }
+
+    @Test
+    void shouldThrowWithPendingRefundFromVoidPurchase() throws Exception {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        doThrow(new SeatsUnavailableException("Sold out")).when(reservationService).reserveSeat(1L, 1);
+
+        ReservationFailedException exception = assertThrows(ReservationFailedException.class,
+                () -> ticketService().purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+
+        assertTrue(exception.getCause() instanceof SeatsUnavailableException);
+        assertEquals(CompensationOutcome.REFUNDED, await(exception.getResult().getCompensation()));
+    }
+
+    @Test
+    void shouldNotRefundWhenPaymentFails() throws Exception {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        doThrow(new IllegalStateException("Card declined")).when(paymentService).makePayment(1L, 25);
+
+        assertThrows(IllegalStateException.class,
+                () -> ticketService().purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+
+        worker.close();
+        verify(paymentService, never()).refundPayment(anyLong(), anyInt());
+        verify(paymentService, never()).refundPayments(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void shouldRefundPaymentThatTimedOut() throws Exception {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        doThrow(new GatewayTimeoutException("Gateway payments did not respond within 50 ms")).when(paymentService).makePayment(1L, 25);
+        doThrow(new GatewayTimeoutException("Gateway payments did not respond within 50 ms")).when(paymentService).makePayment(2L, 50);
+
+        // The timed-out call may have charged the customer, and no seats will be reserved for it
+        assertThrows(GatewayTimeoutException.class,
+                () -> ticketService().purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+        verify(paymentService, Mockito.timeout(5000)).refundPayment(1L, 25);
+        PurchaseResult result = ticketService().purchaseTicketsBatch(List.of(new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)))).get(0);
+
+        assertEquals(PurchaseResult.Status.PAYMENT_FAILED, result.getStatus());
+        assertEquals(CompensationOutcome.REFUNDED, await(result.getCompensation()));
+        verify(reservationService, never()).reserveSeat(anyLong(), anyInt());
+    }
+
+    @Test
+    void shouldReturnAllowanceOfCompensatedPurchase() {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        AccountPurchaseLedger ledger = new AccountPurchaseLedger(10, Duration.ofHours(1));
+        doThrow(new SeatsUnavailableException("Sold out")).when(reservationService).reserveSeat(1L, 4);
+
+        ticketService().withAccountLimits(ledger).purchase(new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 4)));
+
+        assertEquals(0, ledger.ticketsInCurrentWindow(1L));
+    }
+
+    @Test
+    void shouldNotReplayReservationFailureForIdempotentRetry() {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        TicketServiceImpl service = ticketService().withIdempotency(new IdempotencyCache(100, Duration.ofMinutes(5)));
+        doThrow(new SeatsUnavailableException("Sold out")).doNothing().when(reservationService).reserveSeat(1L, 1);
+        PurchaseOrder order = new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)).withIdempotencyKey("retry-1");
+
+        assertEquals(PurchaseResult.Status.RESERVATION_FAILED, service.purchase(order).getStatus());
+        assertTrue(service.purchase(order).isSuccess());
+        verify(paymentService, times(2)).makePayment(1L, 25);
+    }
+
+    @Test
+    void shouldRefundOnlyFailedOrdersOfBatch() throws Exception {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        doThrow(new SeatsUnavailableException("Sold out")).when(reservationService).reserveSeat(2L, 2);
+
+        List<PurchaseResult> results = ticketService().purchaseTicketsBatch(Arrays.asList(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)),
+                new PurchaseOrder(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3))));
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(PurchaseResult.Status.RESERVATION_FAILED, results.get(1).getStatus());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(CompensationOutcome.REFUNDED, await(results.get(1).getCompensation()));
+        verify(paymentService).refundPayment(2L, 50);
+    }
+
+    @Test
+    void shouldNotResendRefundsOfFailedBatchIndividually() throws Exception {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        doThrow(new IllegalStateException("Batch refunds unavailable")).when(paymentService).refundPayments(Mockito.any(), Mockito.any());
+        // Hold the worker until both refunds are queued so they are drained as one batch
+        CountDownLatch blocking = new CountDownLatch(1);
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            blocking.countDown();
+            return gate.get();
+        }).when(paymentService).refundPayment(9L, 1);
+        CompletableFuture<CompensationOutcome> blocker = worker.submitRefund(9L, 1);
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<CompensationOutcome> first = worker.submitRefund(1L, 25);
+        CompletableFuture<CompensationOutcome> second = worker.submitRefund(2L, 40);
+        gate.complete(null);
+
+        assertEquals(CompensationOutcome.REFUNDED, await(blocker));
+        // The failed batch may have refunded either payment, so both are left to be reconciled by hand
+        assertEquals(CompensationOutcome.REFUND_FAILED, await(first));
+        assertEquals(CompensationOutcome.REFUND_FAILED, await(second));
+        verify(paymentService).refundPayments(new long[]{1L, 2L}, new int[]{25, 40});
+        verify(paymentService, never()).refundPayment(1L, 25);
+        verify(paymentService, never()).refundPayment(2L, 40);
+    }
+
+    @Test
+    void shouldRetryOnlyTheRefundsOfABatchThatWereNotMade() throws Exception {
+        // No batch call of its own, so refundPayments refunds one entry at a time and says where it stopped
+        RefundableTicketPaymentService gateway = Mockito.mock(RefundableTicketPaymentService.class, Mockito.CALLS_REAL_METHODS);
+        worker = new CompensationWorker(gateway, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        doThrow(new IllegalStateException("Gateway unavailable")).doNothing().when(gateway).refundPayment(2L, 40);
+        doNothing().when(gateway).refundPayment(1L, 25);
+        doNothing().when(gateway).refundPayment(3L, 10);
+        CountDownLatch blocking = new CountDownLatch(1);
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            blocking.countDown();
+            return gate.get();
+        }).when(gateway).refundPayment(9L, 1);
+        CompletableFuture<CompensationOutcome> blocker = worker.submitRefund(9L, 1);
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<CompensationOutcome> first = worker.submitRefund(1L, 25);
+        CompletableFuture<CompensationOutcome> second = worker.submitRefund(2L, 40);
+        CompletableFuture<CompensationOutcome> third = worker.submitRefund(3L, 10);
+        gate.complete(null);
+
+        assertEquals(CompensationOutcome.REFUNDED, await(blocker));
+        assertEquals(CompensationOutcome.REFUNDED, await(first));
+        assertEquals(CompensationOutcome.REFUNDED, await(second));
+        assertEquals(CompensationOutcome.REFUNDED, await(third));
+        verify(gateway).refundPayments(new long[]{1L, 2L, 3L}, new int[]{25, 40, 10});
+        verify(gateway, times(1)).refundPayment(1L, 25);
+        verify(gateway, times(2)).refundPayment(2L, 40);
+        verify(gateway, times(1)).refundPayment(3L, 10);
+    }
+
+    @Test
+    void shouldRetryFailedRefundWithBackoff() throws Exception {
+        worker = new CompensationWorker(paymentService, 16, 5, Duration.ofMillis(1), Duration.ofMillis(10));
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("Gateway unavailable");
+            }
+            return null;
+        }).when(paymentService).refundPayment(1L, 25);
+
+        assertEquals(CompensationOutcome.REFUNDED, await(worker.submitRefund(1L, 25)));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void shouldReportRefundFailedAfterMaxAttempts() throws Exception {
+        worker = new CompensationWorker(paymentService, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        doThrow(new IllegalStateException("Gateway unavailable")).when(paymentService).refundPayment(1L, 25);
+
+        assertEquals(CompensationOutcome.REFUND_FAILED, await(worker.submitRefund(1L, 25)));
+        verify(paymentService, times(3)).refundPayment(1L, 25);
+    }
+}
@@ -0,0 +1,257 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.AsyncTicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.BulkheadFullException;
+import uk.gov.dwp.uc.pairtest.exception.CircuitOpenException;
+import uk.gov.dwp.uc.pairtest.exception.GatewayTimeoutException;
+import uk.gov.dwp.uc.pairtest.exception.SeatsUnavailableException;
+import uk.gov.dwp.uc.pairtest.limits.AccountPurchaseLedger;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+import uk.gov.dwp.uc.pairtest.resilience.CircuitBreaker;
+import uk.gov.dwp.uc.pairtest.resilience.GatewayGuard;
+import uk.gov.dwp.uc.pairtest.resilience.ResilientSeatReservationService;
+import uk.gov.dwp.uc.pairtest.resilience.ResilientTicketPaymentService;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GatewayGuardTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final ExecutorService executor = AsyncTicketServiceImpl.newGatewayExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // Stand-in payment gateway that fails every call while it is down
+    private static final class FaultyPaymentService implements TicketPaymentService {
+        private final AtomicBoolean down = new AtomicBoolean(true);
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void makePayment(long accountId, int totalAmountToPay) {
+            calls.incrementAndGet();
+            if (down.get()) {
+                throw new IllegalStateException("Payment gateway unavailable");
+            }
+        }
+    }
+
+    // Stand-in reservation gateway that hangs until released, ignoring interrupts like a stuck socket read
+    private static final class SlowReservationService implements SeatReservationService {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+            calls.incrementAndGet();
+            started.countDown();
+            boolean interrupted = false;
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private CircuitBreaker circuitBreaker() {
+        return new CircuitBreaker(10, 4, 50, Duration.ofSeconds(30), 2, clock::get);
+    }
+
+    @Test
+    void shouldOpenCircuitAndRejectFastOnceFailureRateIsReached() {
+        FaultyPaymentService gateway = new FaultyPaymentService();
+        ResilientTicketPaymentService payments = ResilientTicketPaymentService.of(gateway, new GatewayGuard("payments", circuitBreaker(), 10, e -> true));
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalStateException.class, () -> payments.makePayment(1L, 25));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, payments.getGuard().circuitState());
+
+        assertThrows(CircuitOpenException.class, () -> payments.makePayment(1L, 25));
+        assertEquals(4, gateway.calls.get());
+    }
+
+    @Test
+    void shouldStayClosedBelowFailureRate() {
+        FaultyPaymentService gateway = new FaultyPaymentService();
+        ResilientTicketPaymentService payments = ResilientTicketPaymentService.of(gateway, new GatewayGuard("payments", circuitBreaker(), 10, e -> true));
+        gateway.down.set(false);
+        for (int i = 0; i < 7; i++) {
+            payments.makePayment(1L, 25);
+        }
+        gateway.down.set(true);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalStateException.class, () -> payments.makePayment(1L, 25));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, payments.getGuard().circuitState());
+    }
+
+    @Test
+    void shouldCloseAfterSuccessfulTrialCalls() {
+        FaultyPaymentService gateway = new FaultyPaymentService();
+        ResilientTicketPaymentService payments = ResilientTicketPaymentService.of(gateway, new GatewayGuard("payments", circuitBreaker(), 10, e -> true));
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalStateException.class, () -> payments.makePayment(1L, 25));
+        }
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        gateway.down.set(false);
+        payments.makePayment(1L, 25);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, payments.getGuard().circuitState());
+        payments.makePayment(1L, 25);
+
+        assertEquals(CircuitBreaker.State.CLOSED, payments.getGuard().circuitState());
+    }
+
+    @Test
+    void shouldReopenWhenTrialCallFails() {
+        FaultyPaymentService gateway = new FaultyPaymentService();
+        ResilientTicketPaymentService payments = ResilientTicketPaymentService.of(gateway, new GatewayGuard("payments", circuitBreaker(), 10, e -> true));
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalStateException.class, () -> payments.makePayment(1L, 25));
+        }
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertThrows(IllegalStateException.class, () -> payments.makePayment(1L, 25));
+
+        assertEquals(CircuitBreaker.State.OPEN, payments.getGuard().circuitState());
+        assertThrows(CircuitOpenException.class, () -> payments.makePayment(1L, 25));
+    }
+
+    @Test
+    void shouldNotCountSoldOutShowingsAsGatewayFaults() {
+        SeatReservationService soldOut = (accountId, seats) -> {
+            throw new SeatsUnavailableException("Sold out");
+        };
+        ResilientSeatReservationService reservations = ResilientSeatReservationService.of(soldOut,
+                new GatewayGuard("reservations", circuitBreaker(), 10, ResilientSeatReservationService::isGatewayFault));
+
+        for (int i = 0; i < 10; i++) {
+            assertThrows(SeatsUnavailableException.class, () -> reservations.reserveSeat(1L, 2));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, reservations.getGuard().circuitState());
+    }
+
+    @Test
+    void shouldTimeOutSlowGatewayAndKeepPermitUntilItReturns() throws InterruptedException {
+        SlowReservationService gateway = new SlowReservationService();
+        ResilientSeatReservationService reservations = ResilientSeatReservationService.of(gateway,
+                new GatewayGuard("reservations", circuitBreaker(), 1, Duration.ofMillis(50), executor, ResilientSeatReservationService::isGatewayFault));
+
+        assertThrows(GatewayTimeoutException.class, () -> reservations.reserveSeat(1L, 2));
+        assertThrows(BulkheadFullException.class, () -> reservations.reserveSeat(2L, 2));
+        assertEquals(1, gateway.calls.get());
+        gateway.release.countDown();
+    }
+
+    @Test
+    void shouldLeaveCallThatHasStartedToFinishUninterrupted() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        GatewayGuard guard = new GatewayGuard("payments", circuitBreaker(), 1, Duration.ofMillis(50), executor, e -> true);
+
+        // A payment in flight may already have charged the customer, so it must not be cut short
+        assertThrows(GatewayTimeoutException.class, () -> guard.call(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+    }
+
+    @Test
+    void shouldReturnPermitOfCallThatTimedOutBeforeStarting() throws InterruptedException {
+        // A single busy thread, so the guarded call stays queued until it times out
+        ExecutorService busy = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        busy.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AtomicInteger calls = new AtomicInteger();
+        GatewayGuard guard = new GatewayGuard("reservations", circuitBreaker(), 2, Duration.ofMillis(50), busy, e -> true);
+
+        assertThrows(GatewayTimeoutException.class, () -> guard.call(calls::incrementAndGet));
+        assertEquals(2, guard.availableCalls());
+
+        release.countDown();
+        busy.shutdown();
+        assertTrue(busy.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, calls.get());
+        assertEquals(2, guard.availableCalls());
+    }
+
+    @Test
+    void shouldCapConcurrentCallsWithBulkhead() throws InterruptedException {
+        SlowReservationService gateway = new SlowReservationService();
+        ResilientSeatReservationService reservations = ResilientSeatReservationService.of(gateway,
+                new GatewayGuard("reservations", circuitBreaker(), 1, ResilientSeatReservationService::isGatewayFault));
+        Thread first = new Thread(() -> reservations.reserveSeat(1L, 2));
+        first.start();
+        assertTrue(gateway.started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(BulkheadFullException.class, () -> reservations.reserveSeat(2L, 2));
+
+        gateway.release.countDown();
+        first.join();
+        assertEquals(1, reservations.getGuard().availableCalls());
+        reservations.reserveSeat(3L, 2);
+        assertEquals(2, gateway.calls.get());
+    }
+
+    @Test
+    void shouldReturnAllowanceWhenCircuitIsOpen() {
+        FaultyPaymentService gateway = new FaultyPaymentService();
+        ResilientTicketPaymentService payments = ResilientTicketPaymentService.of(gateway, new GatewayGuard("payments", circuitBreaker(), 10, e -> true));
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "25");
+        prices.setProperty("child.ticket.price", "15");
+        AccountPurchaseLedger ledger = new AccountPurchaseLedger(100, Duration.ofHours(1));
+        TicketServiceImpl ticketService = new TicketServiceImpl(payments, (accountId, seats) -> { }, new ReloadablePriceTable(() -> prices))
+                .withAccountLimits(ledger);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalStateException.class, () -> ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+        }
+
+        assertThrows(CircuitOpenException.class, () -> ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+
+        assertEquals(0, ledger.ticketsInCurrentWindow(1L));
+    }
+}
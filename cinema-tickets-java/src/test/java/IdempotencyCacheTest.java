@@ -0,0 +1,152 @@
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.idempotency.IdempotencyCache;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class IdempotencyCacheTest {
+    private final TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+    private final SeatReservationService reservationService = Mockito.mock(SeatReservationService.class);
+
+    private TicketServiceImpl ticketService(IdempotencyCache cache) {
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "25");
+        prices.setProperty("child.ticket.price", "15");
+        return new TicketServiceImpl(paymentService, reservationService, new ReloadablePriceTable(() -> prices)).withIdempotency(cache);
+    }
+
+    private static PurchaseOrder order(long accountId, String key, int adults) {
+        return new PurchaseOrder(accountId, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, adults)).withIdempotencyKey(key);
+    }
+
+    @Test
+    void shouldBoundEntriesAndEvictLeastRecentlyUsed() {
+        IdempotencyCache cache = new IdempotencyCache(4, Duration.ofMinutes(5), 1, System::nanoTime);
+        for (int i = 0; i < 4; i++) {
+            cache.putIfAbsent("key" + i, CompletableFuture.completedFuture(PurchaseResult.rejected(1L, "r" + i)));
+        }
+        // Touch key0 so key1 becomes the eldest
+        assertNotNull(cache.getIfPresent("key0"));
+        cache.putIfAbsent("key4", CompletableFuture.completedFuture(PurchaseResult.rejected(1L, "r4")));
+
+        assertEquals(4, cache.size());
+        assertNotNull(cache.getIfPresent("key0"));
+        assertNull(cache.getIfPresent("key1"));
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        IdempotencyCache cache = new IdempotencyCache(16, Duration.ofSeconds(10), 4, now::get);
+        CompletableFuture<PurchaseResult> first = CompletableFuture.completedFuture(PurchaseResult.rejected(1L, "first"));
+        assertNull(cache.putIfAbsent("key", first));
+        assertSame(first, cache.putIfAbsent("key", new CompletableFuture<>()));
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertNull(cache.getIfPresent("key"));
+        assertNull(cache.putIfAbsent("key", new CompletableFuture<>()));
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        cache.purgeExpired();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldReplayOriginalOutcomeWithoutCallingGateways() {
+        TicketServiceImpl service = ticketService(new IdempotencyCache(1000, Duration.ofMinutes(5)));
+
+        PurchaseResult first = service.purchase(order(1L, "abc", 2));
+        PurchaseResult retry = service.purchase(order(1L, "abc", 2));
+        PurchaseResult otherAccount = service.purchase(order(2L, "abc", 2));
+
+        assertTrue(first.isSuccess());
+        assertSame(first, retry);
+        assertNotSame(first, otherAccount);
+        verify(paymentService, times(1)).makePayment(1L, 50);
+        verify(reservationService, times(1)).reserveSeat(1L, 2);
+        verify(paymentService, times(1)).makePayment(2L, 50);
+    }
+
+    @Test
+    void shouldReplayRejectionsButRetryGatewayFailures() {
+        TicketServiceImpl service = ticketService(new IdempotencyCache(1000, Duration.ofMinutes(5)));
+
+        PurchaseResult rejected = service.purchase(order(1L, "too-many", 26));
+        assertSame(rejected, service.purchase(order(1L, "too-many", 26)));
+
+        doThrow(new IllegalStateException("gateway down")).doNothing().when(paymentService).makePayment(3L, 25);
+        assertThrows(IllegalStateException.class, () -> service.purchase(order(3L, "retry", 1)));
+        assertTrue(service.purchase(order(3L, "retry", 1)).isSuccess());
+        verify(paymentService, times(2)).makePayment(3L, 25);
+    }
+
+    @Test
+    void shouldDeduplicateInBatches() {
+        TicketServiceImpl service = ticketService(new IdempotencyCache(1000, Duration.ofMinutes(5)));
+        PurchaseResult original = service.purchase(order(1L, "a", 1));
+
+        List<PurchaseResult> results = service.purchaseTicketsBatch(Arrays.asList(order(1L, "a", 1), order(1L, "b", 1)));
+
+        assertSame(original, results.get(0));
+        assertTrue(results.get(1).isSuccess());
+        assertSame(results.get(1), service.purchase(order(1L, "b", 1)));
+        verify(paymentService, times(2)).makePayment(1L, 25);
+    }
+
+    @Test
+    void shouldCallGatewaysOnceForConcurrentRetries() throws InterruptedException {
+        AtomicInteger payments = new AtomicInteger();
+        TicketPaymentService countingPayments = (accountId, amount) -> payments.incrementAndGet();
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "25");
+        prices.setProperty("child.ticket.price", "15");
+        TicketServiceImpl service = new TicketServiceImpl(countingPayments, reservationService, new ReloadablePriceTable(() -> prices))
+                .withIdempotency(new IdempotencyCache(10_000, Duration.ofMinutes(5)));
+        ConcurrentLinkedQueue<PurchaseResult> results = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int key = 0; key < 500; key++) {
+                    results.add(service.purchase(order(1L, "order-" + key, 1)));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(500, payments.get());
+        assertEquals(8 * 500, results.size());
+        assertTrue(results.stream().allMatch(PurchaseResult::isSuccess));
+    }
+}
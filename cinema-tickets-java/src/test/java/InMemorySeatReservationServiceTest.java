@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.exception.SeatsUnavailableException;
+import uk.gov.dwp.uc.pairtest.inventory.InMemorySeatReservationService;
+import uk.gov.dwp.uc.pairtest.inventory.SeatAllocation;
+import uk.gov.dwp.uc.pairtest.inventory.ShowingSeatMap;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemorySeatReservationServiceTest {
+    private static final long SHOWING = 1L;
+
+    @Test
+    void shouldAllocateContiguousBlockNearCentreOfPreferredRow() {
+        InMemorySeatReservationService service = new InMemorySeatReservationService(SHOWING, 9, 20);
+
+        SeatAllocation allocation = service.reserveSeats(SHOWING, 4);
+
+        // Row 6 is two thirds of the way back; seats 8-11 are the centre of a 20 seat row
+        assertArrayEquals(new int[]{128, 129, 130, 131}, allocation.getSeats());
+        assertEquals(9 * 20 - 4, service.showing(SHOWING).availableSeats());
+    }
+
+    @Test
+    void shouldSplitGroupWhenNoRowHasRoom() {
+        InMemorySeatReservationService service = new InMemorySeatReservationService(SHOWING, 3, 4);
+        service.reserveSeats(SHOWING, 3);
+        service.reserveSeats(SHOWING, 3);
+        service.reserveSeats(SHOWING, 3);
+
+        SeatAllocation allocation = service.reserveSeats(SHOWING, 3);
+
+        assertEquals(3, allocation.size());
+        assertEquals(0, service.showing(SHOWING).availableSeats());
+        assertThrows(SeatsUnavailableException.class, () -> service.reserveSeat(1L, 1));
+    }
+
+    @Test
+    void shouldReleaseSeatsBackToInventory() {
+        InMemorySeatReservationService service = new InMemorySeatReservationService(SHOWING, 2, 10);
+        SeatAllocation allocation = service.reserveSeats(SHOWING, 10);
+        service.release(allocation);
+
+        assertEquals(20, service.showing(SHOWING).availableSeats());
+        for (int seat : allocation.getSeats()) {
+            assertFalse(service.showing(SHOWING).isReserved(seat));
+        }
+        assertThrows(IllegalStateException.class, () -> service.release(allocation));
+    }
+
+    @Test
+    void shouldKeepShowingsIndependent() {
+        InMemorySeatReservationService service = new InMemorySeatReservationService(SHOWING, 1, 5);
+        service.addShowing(2L, 1, 5);
+
+        service.reserveSeats(SHOWING, 5);
+
+        assertEquals(5, service.reserveSeats(2L, 5).size());
+        assertThrows(IllegalArgumentException.class, () -> service.reserveSeats(3L, 1));
+    }
+
+    @Test
+    void shouldNeverDoubleBookUnderContention() throws InterruptedException {
+        int rows = 40;
+        int seatsPerRow = 30;
+        InMemorySeatReservationService service = new InMemorySeatReservationService(SHOWING, rows, seatsPerRow);
+        ShowingSeatMap seatMap = service.showing(SHOWING);
+        ConcurrentLinkedQueue<SeatAllocation> allocations = new ConcurrentLinkedQueue<>();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (seatMap.availableSeats() > 0) {
+                    SeatAllocation allocation = seatMap.reserveBestAvailable(1 + random.nextInt(40));
+                    if (allocation == null) {
+                        continue;
+                    }
+                    // Give some seats back now and then so released seats are contended too
+                    if (random.nextInt(10) == 0) {
+                        seatMap.release(allocation);
+                    } else {
+                        allocations.add(allocation);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        BitSet booked = new BitSet(rows * seatsPerRow);
+        for (SeatAllocation allocation : allocations) {
+            for (int seat : allocation.getSeats()) {
+                assertFalse(booked.get(seat), "Seat " + seat + " was booked twice");
+                booked.set(seat);
+                assertTrue(seatMap.isReserved(seat));
+            }
+        }
+        assertEquals(rows * seatsPerRow, booked.cardinality());
+        assertEquals(0, seatMap.availableSeats());
+    }
+}
@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.loadtest.LoadGenerator;
+import uk.gov.dwp.uc.pairtest.loadtest.LoadReport;
+import uk.gov.dwp.uc.pairtest.loadtest.StandInGateway;
+import uk.gov.dwp.uc.pairtest.loadtest.TicketMix;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadGeneratorTest {
+    private static final TicketMix VALID_MIX = TicketMix.parse("ADULT=1..2,CHILD=0..2");
+
+    private static TicketServiceImpl ticketService(StandInGateway payment) {
+        return new TicketServiceImpl(payment, StandInGateway.instant(), TestPrices.priceTable());
+    }
+
+    private static LoadGenerator generator(double rate, int threads, TicketMix mix) {
+        return new LoadGenerator(rate, false, Duration.ZERO, Duration.ofMillis(400), threads, mix, 100, 1L);
+    }
+
+    @Test
+    void shouldOfferTheConfiguredRateAndCountOutcomes() throws InterruptedException {
+        LoadReport report = generator(500, 4, TicketMix.parse("ADULT=0..1,CHILD=0..1")).run(ticketService(StandInGateway.instant()));
+
+        long completed = report.getSucceeded() + report.getRejected() + report.getFailed();
+        assertEquals(200, completed, 5);
+        assertTrue(report.getSucceeded() > 0);
+        // Orders without an adult, or with no tickets at all, are rejected
+        assertTrue(report.getRejected() > 0);
+        assertEquals(0, report.getFailed());
+        assertEquals(completed, report.getLatency().getCount());
+    }
+
+    @Test
+    void shouldCountInjectedGatewayFailures() throws InterruptedException {
+        LoadReport report = generator(200, 4, VALID_MIX).run(ticketService(new StandInGateway(Duration.ZERO, Duration.ZERO, 1.0)));
+
+        assertEquals(0, report.getSucceeded());
+        assertEquals(80, report.getFailed(), 5);
+    }
+
+    @Test
+    void shouldChargeQueueingBehindAStallToEveryDelayedRequest() throws InterruptedException {
+        StandInGateway payment = new StandInGateway(Duration.ZERO, Duration.ZERO, 0);
+        payment.stallFor(Duration.ofMillis(300));
+
+        LoadReport report = generator(200, 1, VALID_MIX).run(ticketService(payment));
+
+        // About 60 of the 80 requests are scheduled during the stall, the median one about 100ms before it ends;
+        // measured from their actual start most would look instant
+        assertTrue(report.getLatency().getP50() > TimeUnit.MILLISECONDS.toNanos(50), report.toString());
+        assertTrue(report.getLatency().getP99() > TimeUnit.MILLISECONDS.toNanos(250), report.toString());
+    }
+
+    @Test
+    void shouldRecordRequestsThatNeverStartedAsUnfinished() throws InterruptedException {
+        StandInGateway payment = new StandInGateway(Duration.ZERO, Duration.ZERO, 0);
+        // Outlasts the run and the grace period after it, so every later request is still queued when the run gives up
+        payment.stallFor(Duration.ofMillis(1500));
+
+        LoadReport report = generator(200, 1, VALID_MIX).run(ticketService(payment));
+
+        assertTrue(report.getUnfinished() >= 75, report.toString());
+        assertTrue(report.getLatency().getCount() >= 75, report.toString());
+        // The latest were scheduled 400ms into the run and dropped after the 400ms grace period
+        assertTrue(report.getLatency().getP50() > TimeUnit.MILLISECONDS.toNanos(300), report.toString());
+    }
+
+    @Test
+    void shouldRecordRequestStillRunningAtCutoff() throws InterruptedException {
+        StandInGateway payment = new StandInGateway(Duration.ZERO, Duration.ZERO, 0);
+        // The first request is still inside the stalled gateway call when the run gives up at about 800ms
+        payment.stallFor(Duration.ofMillis(1500));
+
+        LoadReport report = generator(200, 1, VALID_MIX).run(ticketService(payment));
+
+        long completed = report.getSucceeded() + report.getRejected() + report.getFailed();
+        assertEquals(completed + report.getUnfinished(), report.getLatency().getCount(), report.toString());
+        assertTrue(report.getLatency().getMax() > TimeUnit.MILLISECONDS.toNanos(700), report.toString());
+    }
+
+    @Test
+    void shouldParseTicketMix() {
+        assertEquals("ADULT=1..4,CHILD=0..3,INFANT=0..1", TicketMix.parse("ADULT=1..4, child=0..3,INFANT=0..1").toString());
+        assertThrows(IllegalArgumentException.class, () -> TicketMix.parse("ADULT=4..1"));
+        assertThrows(IllegalArgumentException.class, () -> TicketMix.parse("ADULT=3"));
+    }
+}
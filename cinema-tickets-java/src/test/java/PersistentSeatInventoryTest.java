@@ -0,0 +1,181 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.inventory.SeatAllocation;
+import uk.gov.dwp.uc.pairtest.persistence.JournalSyncMode;
+import uk.gov.dwp.uc.pairtest.persistence.PersistentSeatInventory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentSeatInventoryTest {
+    private static final long SHOWING = 1L;
+
+    @TempDir
+    Path directory;
+
+    private PersistentSeatInventory open(JournalSyncMode syncMode) throws IOException {
+        return PersistentSeatInventory.open(directory, SHOWING, 10, 20, syncMode, Duration.ofMillis(5), Duration.ZERO);
+    }
+
+    private List<String> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void shouldReplayJournalOnReopen() throws IOException {
+        SeatAllocation kept;
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            inventory.addShowing(2L, 5, 8);
+            kept = inventory.reserveSeats(SHOWING, 4);
+            inventory.release(inventory.reserveSeats(SHOWING, 3));
+            inventory.reserveSeats(2L, 8);
+            inventory.recordPurchase(7L, 2, 1, 1, 65);
+        }
+
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            assertEquals(6, inventory.getRecoveredEvents());
+            assertEquals(196, inventory.showing(SHOWING).availableSeats());
+            for (int seat : kept.getSeats()) {
+                assertTrue(inventory.showing(SHOWING).isReserved(seat));
+            }
+            assertEquals(32, inventory.showing(2L).availableSeats());
+            assertEquals(1, inventory.getOrderTotals().getOrders());
+            assertEquals(65, inventory.getOrderTotals().getRevenue());
+        }
+    }
+
+    @Test
+    void shouldRecoverFromSnapshotAndJournalTail() throws IOException {
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            inventory.reserveSeats(SHOWING, 10);
+            inventory.recordPurchase(7L, 10, 0, 0, 250);
+            inventory.snapshot();
+            inventory.reserveSeats(SHOWING, 5);
+        }
+        assertEquals(1, files("snapshot-").size());
+        assertEquals(List.of("journal-00000002.log"), files("journal-"));
+
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            assertEquals(1, inventory.getRecoveredEvents());
+            assertEquals(185, inventory.showing(SHOWING).availableSeats());
+            assertEquals(10, inventory.getOrderTotals().getAdultTickets());
+            inventory.snapshot();
+        }
+
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            assertEquals(0, inventory.getRecoveredEvents());
+            assertEquals(185, inventory.showing(SHOWING).availableSeats());
+        }
+    }
+
+    @Test
+    void shouldRefuseToOpenWhenSnapshotIsDamagedAndEarlierJournalIsGone() throws IOException {
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            inventory.reserveSeats(SHOWING, 10);
+            inventory.snapshot();
+            inventory.reserveSeats(SHOWING, 5);
+        }
+        Path snapshot = directory.resolve(files("snapshot-").get(0));
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x7F;
+        Files.write(snapshot, bytes);
+
+        // Replaying only journal-00000002.log would silently lose the first ten seats
+        assertThrows(IOException.class, () -> open(JournalSyncMode.PERIODIC));
+    }
+
+    @Test
+    void shouldKeepSeatsReservedWhenReleaseCannotBeJournalled() throws IOException {
+        PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC);
+        SeatAllocation allocation = inventory.reserveSeats(SHOWING, 3);
+        inventory.close();
+
+        assertThrows(IllegalStateException.class, () -> inventory.release(allocation));
+        for (int seat : allocation.getSeats()) {
+            assertTrue(inventory.showing(SHOWING).isReserved(seat));
+        }
+    }
+
+    @Test
+    void shouldNotJournalSecondReleaseOfSameSeats() throws IOException {
+        SeatAllocation kept;
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            SeatAllocation released = inventory.reserveSeats(SHOWING, 3);
+            inventory.release(released);
+
+            assertThrows(IllegalStateException.class, () -> inventory.release(released));
+            kept = inventory.reserveSeats(SHOWING, 2);
+        }
+
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            assertEquals(3, inventory.getRecoveredEvents());
+            assertEquals(198, inventory.showing(SHOWING).availableSeats());
+            for (int seat : kept.getSeats()) {
+                assertTrue(inventory.showing(SHOWING).isReserved(seat));
+            }
+        }
+    }
+
+    @Test
+    void shouldDropTornRecordAtEndOfJournal() throws IOException {
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            inventory.reserveSeats(SHOWING, 2);
+        }
+        Path segment = directory.resolve("journal-00000001.log");
+        long intact = Files.size(segment);
+        // A length prefix promising more bytes than were written before the crash
+        Files.write(segment, new byte[] {0, 0, 0, 40, 2, 0, 0}, StandardOpenOption.APPEND);
+
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            assertEquals(1, inventory.getRecoveredEvents());
+            assertEquals(198, inventory.showing(SHOWING).availableSeats());
+            inventory.reserveSeats(SHOWING, 3);
+        }
+        assertEquals(intact, Files.size(segment));
+
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            assertEquals(195, inventory.showing(SHOWING).availableSeats());
+        }
+    }
+
+    @Test
+    void shouldReachDiskBeforeReturningWithPerEventSync() throws IOException {
+        try (PersistentSeatInventory inventory = PersistentSeatInventory.open(directory, SHOWING, 10, 20,
+                JournalSyncMode.PER_EVENT, Duration.ofMinutes(1), Duration.ZERO)) {
+            inventory.reserveSeats(SHOWING, 2);
+
+            assertTrue(Files.size(directory.resolve("journal-00000001.log")) > 0);
+        }
+    }
+
+    @Test
+    void shouldJournalCompletedPurchases() throws IOException {
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            TicketServiceImpl ticketService = new TicketServiceImpl(Mockito.mock(TicketPaymentService.class), inventory,
+                    TestPrices.priceTable()).withJournal(inventory);
+
+            ticketService.purchaseTickets(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+                    new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+        }
+
+        try (PersistentSeatInventory inventory = open(JournalSyncMode.PERIODIC)) {
+            assertEquals(197, inventory.showing(SHOWING).availableSeats());
+            assertEquals(1, inventory.getOrderTotals().getOrders());
+            assertEquals(2 * TestPrices.ADULT + TestPrices.CHILD, inventory.getOrderTotals().getRevenue());
+        }
+    }
+}
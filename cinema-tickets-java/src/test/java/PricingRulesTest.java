@@ -0,0 +1,138 @@
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.pricing.PricingClock;
+import uk.gov.dwp.uc.pairtest.pricing.PricingRules;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+public class PricingRulesTest {
+    // 2024-01-01 was a Monday
+    private static final Instant MONDAY_NOON = Instant.parse("2024-01-01T12:00:00Z");
+    private static final Instant MONDAY_EVENING = Instant.parse("2024-01-01T18:30:00Z");
+    private static final Instant WEDNESDAY_NOON = Instant.parse("2024-01-03T12:00:00Z");
+    private static final Instant SATURDAY_NOON = Instant.parse("2024-01-06T12:00:00Z");
+
+    private static Properties rules() {
+        Properties rules = new Properties();
+        rules.setProperty("pricing.peak.hours", "17-22");
+        rules.setProperty("pricing.peak.days", "SATURDAY,SUNDAY");
+        rules.setProperty("pricing.peak.percent", "20");
+        rules.setProperty("pricing.weekday.discount.days", "MONDAY");
+        rules.setProperty("pricing.weekday.discount.percent", "10");
+        rules.setProperty("pricing.group.min.tickets", "10");
+        rules.setProperty("pricing.group.discount.percent", "20");
+        rules.setProperty("pricing.promo.SUMMER10", "10");
+        return rules;
+    }
+
+    private static int bucketAt(Instant instant) {
+        return new PricingClock(Clock.fixed(instant, ZoneOffset.UTC)).currentBucket();
+    }
+
+    @Test
+    void shouldApplyTimeOfDayAndWeekdayAdjustments() {
+        PricingRules pricing = new PriceTable(25, 15, 0, rules()).rules();
+
+        assertEquals(25, pricing.unitPrice(bucketAt(WEDNESDAY_NOON), TicketTypeRequest.Type.ADULT));
+        assertEquals(30, pricing.unitPrice(bucketAt(SATURDAY_NOON), TicketTypeRequest.Type.ADULT));
+        // Monday discount of 10% on 25, rounded half up
+        assertEquals(23, pricing.unitPrice(bucketAt(MONDAY_NOON), TicketTypeRequest.Type.ADULT));
+        // Peak (+20%) then Monday discount (-10%): 25 -> 30 -> 27
+        assertEquals(27, pricing.unitPrice(bucketAt(MONDAY_EVENING), TicketTypeRequest.Type.ADULT));
+        assertEquals(18, pricing.unitPrice(bucketAt(SATURDAY_NOON), TicketTypeRequest.Type.CHILD));
+    }
+
+    @Test
+    void shouldApplyGroupAndPromotionDiscounts() {
+        PricingRules pricing = new PriceTable(25, 15, 0, rules()).rules();
+        int wednesday = bucketAt(WEDNESDAY_NOON);
+
+        assertEquals(9 * 25, pricing.totalPrice(9, 0, 0, wednesday, PricingRules.NO_PROMO));
+        assertEquals(200, pricing.totalPrice(10, 0, 0, wednesday, PricingRules.NO_PROMO));
+        assertEquals(180, pricing.totalPrice(10, 0, 0, wednesday, pricing.promoIndex("SUMMER10")));
+        assertEquals(PricingRules.UNKNOWN_PROMO, pricing.promoIndex("WINTER"));
+        assertEquals(PricingRules.NO_PROMO, pricing.promoIndex(null));
+    }
+
+    @Test
+    void shouldMatchBasePricesWithoutRules() {
+        PriceTable table = new PriceTable(25, 15, 2);
+        for (int bucket = 0; bucket < PricingRules.TIME_BUCKETS; bucket++) {
+            assertEquals(table.totalPrice(3, 2, 1), table.rules().totalPrice(3, 2, 1, bucket, PricingRules.NO_PROMO));
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidRules() {
+        Properties badHours = new Properties();
+        badHours.setProperty("pricing.peak.hours", "22-17");
+        assertThrows(TicketServiceImpl.ConfigurationException.class, () -> new PriceTable(25, 15, 0, badHours));
+
+        Properties badDay = new Properties();
+        badDay.setProperty("pricing.weekday.discount.days", "FUNDAY");
+        assertThrows(TicketServiceImpl.ConfigurationException.class, () -> new PriceTable(25, 15, 0, badDay));
+
+        Properties badPercent = new Properties();
+        badPercent.setProperty("pricing.group.discount.percent", "150");
+        assertThrows(TicketServiceImpl.ConfigurationException.class, () -> new PriceTable(25, 15, 0, badPercent));
+    }
+
+    @Test
+    void shouldTrackBucketAcrossDaylightSavingChange() {
+        // Clocks go forward at 01:00 UTC on 2024-03-31 in London
+        ZoneId london = ZoneId.of("Europe/London");
+        assertEquals(6 * 24, new PricingClock(Clock.fixed(Instant.parse("2024-03-31T00:30:00Z"), london)).currentBucket());
+        assertEquals(6 * 24 + 2, new PricingClock(Clock.fixed(Instant.parse("2024-03-31T01:30:00Z"), london)).currentBucket());
+    }
+
+    @Test
+    void shouldPriceTicketServicePurchasesWithRulesAndPromotions() {
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+        SeatReservationService reservationService = Mockito.mock(SeatReservationService.class);
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "25");
+        prices.setProperty("child.ticket.price", "15");
+        ReloadablePriceTable priceTable = new ReloadablePriceTable(() -> prices, PricingRulesTest::rules);
+        TicketServiceImpl ticketService = new TicketServiceImpl(paymentService, reservationService, priceTable,
+                new PricingClock(Clock.fixed(SATURDAY_NOON, ZoneOffset.UTC)));
+
+        ticketService.purchaseTickets(1L, 2, 1, 0);
+        verify(paymentService).makePayment(1L, 2 * 30 + 18);
+
+        ticketService.purchaseTickets(2L, "SUMMER10", new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        verify(paymentService).makePayment(2L, 27);
+
+        InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> ticketService.purchaseTickets(3L, "WINTER", new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)));
+        assertSame(PurchaseRejection.UNKNOWN_PROMO_CODE, exception.getRejection());
+    }
+
+    @Test
+    void shouldApplyClasspathRulesByDefault() {
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "30");
+        TicketServiceImpl ticketService = new TicketServiceImpl(paymentService, Mockito.mock(SeatReservationService.class),
+                new ReloadablePriceTable(() -> prices));
+
+        // CLASSPATH20 is defined in the test pricing-rules.properties
+        ticketService.purchaseTickets(1L, "CLASSPATH20", new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2));
+
+        verify(paymentService).makePayment(1L, 48);
+    }
+}
@@ -0,0 +1,176 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.audit.AuditDurability;
+import uk.gov.dwp.uc.pairtest.audit.PurchaseAuditLog;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseAuditLogTest {
+    @TempDir
+    Path directory;
+
+    private List<Path> auditFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private List<String> auditLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Path file : auditFiles()) {
+            lines.addAll(Files.readAllLines(file));
+        }
+        return lines;
+    }
+
+    @Test
+    void shouldWriteRecordBeforeReturningWithPerRecordDurability() throws IOException {
+        try (PurchaseAuditLog auditLog = new PurchaseAuditLog(directory, 16, 1 << 20, AuditDurability.PER_RECORD, Duration.ofSeconds(1))) {
+            auditLog.record(7L, 2, 1, 1, 65);
+
+            List<String> lines = auditLines();
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0).matches("\\{\"ts\":\\d+,\"account\":7,\"adults\":2,\"children\":1,\"infants\":1,\"amount\":65}"), lines.get(0));
+        }
+    }
+
+    @Test
+    void shouldWriteEveryQueuedRecordOnClose() throws IOException {
+        PurchaseAuditLog auditLog = new PurchaseAuditLog(directory, 16, 1 << 20, AuditDurability.PERIODIC, Duration.ofMinutes(1));
+        for (int i = 1; i <= 100; i++) {
+            auditLog.record(i, 1, 0, 0, 25);
+        }
+        auditLog.close();
+
+        assertEquals(100, auditLines().size());
+        assertThrows(IllegalStateException.class, () -> auditLog.record(1L, 1, 0, 0, 25));
+    }
+
+    @Test
+    void shouldRollToNewFileWhenFull() throws IOException {
+        try (PurchaseAuditLog auditLog = new PurchaseAuditLog(directory, 16, 1024, AuditDurability.PER_RECORD, Duration.ofSeconds(1))) {
+            for (int i = 1; i <= 50; i++) {
+                auditLog.record(i, 1, 0, 0, 25);
+            }
+        }
+
+        List<Path> files = auditFiles();
+        assertTrue(files.size() > 1, "expected several files but got " + files);
+        for (Path file : files) {
+            assertTrue(Files.size(file) <= 1024);
+        }
+        assertEquals(50, auditLines().size());
+    }
+
+    @Test
+    void shouldContinueNumberingFilesAfterRestart() throws IOException {
+        try (PurchaseAuditLog auditLog = new PurchaseAuditLog(directory, 16, 1 << 20, AuditDurability.PERIODIC, Duration.ofMillis(10))) {
+            auditLog.record(1L, 1, 0, 0, 25);
+        }
+        try (PurchaseAuditLog auditLog = new PurchaseAuditLog(directory, 16, 1 << 20, AuditDurability.PERIODIC, Duration.ofMillis(10))) {
+            auditLog.record(2L, 1, 0, 0, 25);
+        }
+
+        List<Path> files = auditFiles();
+        assertEquals(2, files.size());
+        assertEquals("purchases-000001.jsonl", files.get(0).getFileName().toString());
+        assertEquals("purchases-000002.jsonl", files.get(1).getFileName().toString());
+    }
+
+    @Test
+    void shouldKeepEveryRecordFromConcurrentWritersWhenBufferFills() throws Exception {
+        int threads = 4;
+        int perThread = 5_000;
+        PurchaseAuditLog auditLog = new PurchaseAuditLog(directory, 8, 1 << 20, AuditDurability.PERIODIC, Duration.ofMillis(5));
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long firstAccount = (long) t * perThread + 1;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    auditLog.record(firstAccount + i, 1, 0, 0, 25);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        auditLog.close();
+
+        Set<String> accounts = new HashSet<>();
+        for (String line : auditLines()) {
+            accounts.add(line.replaceAll(".*\"account\":(\\d+),.*", "$1"));
+        }
+        assertEquals(threads * perThread, accounts.size());
+    }
+
+    @Test
+    void shouldWriteEveryRecordAcceptedWhileClosing() throws Exception {
+        PurchaseAuditLog auditLog = new PurchaseAuditLog(directory, 64, 1 << 20, AuditDurability.PERIODIC, Duration.ofMillis(5));
+        AtomicLong accepted = new AtomicLong();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long firstAccount = t * 1_000_000L + 1;
+            Thread writer = new Thread(() -> {
+                for (long account = firstAccount; ; account++) {
+                    try {
+                        auditLog.record(account, 1, 0, 0, 25);
+                    } catch (IllegalStateException e) {
+                        return;
+                    }
+                    accepted.incrementAndGet();
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        Thread.sleep(50);
+        auditLog.close();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // Every record() that returned normally is in the file; the rest were refused, not dropped
+        assertEquals(accepted.get(), auditLines().size());
+        assertThrows(IllegalStateException.class, () -> auditLog.record(1L, 1, 0, 0, 25));
+    }
+
+    @Test
+    void shouldAuditPurchasesFromTicketService() throws IOException {
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "25");
+        prices.setProperty("child.ticket.price", "15");
+        try (PurchaseAuditLog auditLog = new PurchaseAuditLog(directory, 16, 1 << 20, AuditDurability.PER_RECORD, Duration.ofSeconds(1))) {
+            TicketServiceImpl ticketService = new TicketServiceImpl(Mockito.mock(TicketPaymentService.class), Mockito.mock(SeatReservationService.class),
+                    new ReloadablePriceTable(() -> prices)).withAuditLog(auditLog);
+
+            ticketService.purchaseTickets(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1), new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2));
+            ticketService.purchaseTickets(4L, 2, 0, 0);
+        }
+
+        List<String> lines = auditLines();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"account\":3,\"adults\":1,\"children\":2,\"infants\":0,\"amount\":55"), lines.get(0));
+        assertTrue(lines.get(1).contains("\"account\":4,\"adults\":2,\"children\":0,\"infants\":0,\"amount\":50"), lines.get(1));
+    }
+}
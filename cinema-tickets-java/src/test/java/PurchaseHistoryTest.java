@@ -0,0 +1,173 @@
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.history.HourlyTotals;
+import uk.gov.dwp.uc.pairtest.history.PurchaseHistory;
+import uk.gov.dwp.uc.pairtest.persistence.JournalSyncMode;
+import uk.gov.dwp.uc.pairtest.persistence.PersistentSeatInventory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseHistoryTest {
+    private static final long HOUR = 3_600_000L;
+    private static final long START = 1_700_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(START);
+    private final PurchaseHistory history = new PurchaseHistory(now::get);
+
+    @Test
+    void shouldRecordPurchasesMadeThroughTheTicketService() {
+        TicketServiceImpl ticketService = new TicketServiceImpl(Mockito.mock(TicketPaymentService.class), Mockito.mock(SeatReservationService.class),
+                TestPrices.priceTable()).withHistory(history);
+
+        ticketService.purchaseTickets(7L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2), new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+        ticketService.purchaseTickets(7L, 1, 0, 1);
+        assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(7L, 0, 2, 0));
+
+        assertEquals(2, history.purchaseCount(7L));
+        assertEquals(5, history.ticketsBought(7L));
+        assertEquals(3 * TestPrices.ADULT + TestPrices.CHILD + TestPrices.INFANT, history.amountPaid(7L));
+    }
+
+    @Test
+    void shouldCompletePurchaseWhenTheJournalCannotRecordIt(@TempDir Path directory) throws IOException {
+        PersistentSeatInventory journal = PersistentSeatInventory.open(directory, 1L, 10, 20, JournalSyncMode.PERIODIC, Duration.ofMillis(5), Duration.ZERO);
+        journal.close();
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+        TicketServiceImpl ticketService = new TicketServiceImpl(paymentService, Mockito.mock(SeatReservationService.class),
+                TestPrices.priceTable()).withJournal(journal).withHistory(history);
+
+        // The customer has been charged by the time the journal fails, so the purchase must still succeed
+        ticketService.purchaseTickets(7L, 2, 0, 0);
+
+        Mockito.verify(paymentService).makePayment(7L, 2 * TestPrices.ADULT);
+        assertEquals(1, history.purchaseCount(7L));
+    }
+
+    @Test
+    void shouldListAnAccountsPurchasesNewestFirst() {
+        history.append(1L, 1, 0, 0, 25);
+        now.addAndGet(1000);
+        history.append(2L, 3, 0, 0, 75);
+        now.addAndGet(1000);
+        history.append(1L, 2, 1, 0, 65);
+
+        List<Long> timestamps = new ArrayList<>();
+        List<Integer> amounts = new ArrayList<>();
+        history.forEachPurchase(1L, (accountId, epochMillis, adults, children, infants, amountPaid) -> {
+            assertEquals(1L, accountId);
+            timestamps.add(epochMillis);
+            amounts.add(amountPaid);
+        });
+
+        assertEquals(List.of(START + 2000, START), timestamps);
+        assertEquals(List.of(65, 25), amounts);
+        assertEquals(0, history.purchaseCount(3L));
+        history.forEachPurchase(3L, (accountId, epochMillis, adults, children, infants, amountPaid) -> fail("No purchases expected"));
+    }
+
+    @Test
+    void shouldTotalPurchasesPerHour() {
+        history.append(1L, 2, 1, 0, 65);
+        now.addAndGet(HOUR / 2);
+        history.append(2L, 1, 0, 1, 25);
+        now.addAndGet(HOUR);
+        history.append(3L, 1, 2, 0, 55);
+        now.addAndGet(2 * HOUR);
+        history.append(4L, 4, 0, 0, 100);
+
+        HourlyTotals totals = history.hourlyTotals(START, START + 3 * HOUR);
+
+        assertEquals(3, totals.getHours());
+        assertEquals(2, totals.getPurchases(0));
+        assertEquals(3, totals.getAdultTickets(0));
+        assertEquals(1, totals.getChildTickets(0));
+        assertEquals(1, totals.getInfantTickets(0));
+        assertEquals(90, totals.getRevenue(0));
+        assertEquals(1, totals.getPurchases(1));
+        assertEquals(55, totals.getRevenue(1));
+        // The last purchase falls outside the range
+        assertEquals(0, totals.getPurchases(2));
+    }
+
+    @Test
+    void shouldKeepTimestampsOrderedWhenTheClockStepsBack() {
+        history.append(1L, 1, 0, 0, 25);
+        now.addAndGet(-HOUR);
+        history.append(2L, 1, 0, 0, 25);
+
+        List<Long> accounts = new ArrayList<>();
+        history.forEachPurchase(START, START + 1, (accountId, epochMillis, adults, children, infants, amountPaid) -> accounts.add(accountId));
+
+        assertEquals(List.of(1L, 2L), accounts);
+    }
+
+    @Test
+    void shouldRejectCountsThatDoNotFitTheColumns() {
+        assertThrows(IllegalArgumentException.class, () -> history.append(0L, 1, 0, 0, 25));
+        assertThrows(IllegalArgumentException.class, () -> history.append(1L, -1, 0, 0, 25));
+        assertThrows(IllegalArgumentException.class, () -> history.append(1L, 128, 0, 0, 25));
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    void shouldKeepColumnsAndIndexUnderThirtySixBytesPerPurchase() {
+        int purchases = 1 << 20;
+        int accounts = 1 << 16;
+        for (int i = 0; i < purchases; i++) {
+            history.append(1 + (i % accounts), 2, 1, i & 1, 65);
+        }
+
+        assertEquals(purchases, history.size());
+        assertEquals(16, history.purchaseCount(accounts));
+        // 27 bytes of columns per purchase, plus the index of the accounts
+        assertTrue(history.footprintBytes() < 36L * purchases, "footprint " + history.footprintBytes());
+    }
+
+    // Measures the heap itself, which depends on the collector, so it runs with the load tests
+    @Test
+    @Tag("load")
+    void shouldHoldTenMillionPurchasesInUnderFortyBytesEach() {
+        int purchases = 10_000_000;
+        int accounts = 1_000_000;
+        long heapBefore = usedHeap();
+        PurchaseHistory large = new PurchaseHistory(now::get);
+        for (int i = 0; i < purchases; i++) {
+            if ((i & 0xFFF) == 0) {
+                now.incrementAndGet();
+            }
+            large.append(1 + (i % accounts), 2, 1, i & 1, 65);
+        }
+        long heapAfter = usedHeap();
+
+        assertEquals(purchases, large.size());
+        assertEquals(10, large.purchaseCount(accounts));
+        assertEquals(40, large.ticketsBought(accounts));
+        // 27 bytes of columns per purchase, plus the index of a million accounts
+        assertTrue(large.footprintBytes() < 36L * purchases, "footprint " + large.footprintBytes());
+        // An object per purchase would need 40 bytes for its header and fields, before any reference to it or any index
+        assertTrue(heapAfter - heapBefore < 40L * purchases, "heap grew by " + (heapAfter - heapBefore));
+        HourlyTotals totals = large.hourlyTotals(START, START + HOUR);
+        assertEquals(purchases, totals.getPurchases(0));
+        assertEquals(65L * purchases, totals.getRevenue(0));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.metrics.DefaultPurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.metrics.LatencyHistogram;
+import uk.gov.dwp.uc.pairtest.metrics.LatencySnapshot;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseMetricsTest {
+    private final TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+    private final SeatReservationService reservationService = Mockito.mock(SeatReservationService.class);
+    private final DefaultPurchaseMetrics metrics = new DefaultPurchaseMetrics();
+
+    private TicketServiceImpl ticketService() {
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "25");
+        prices.setProperty("child.ticket.price", "15");
+        return new TicketServiceImpl(paymentService, reservationService, new ReloadablePriceTable(() -> prices)).withMetrics(metrics);
+    }
+
+    @Test
+    void shouldReportPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(50_000_000, snapshot.getP50(), 50_000_000 * 0.02);
+        assertEquals(99_000_000, snapshot.getP99(), 99_000_000 * 0.02);
+        assertEquals(99_900_000, snapshot.getP999(), 99_900_000 * 0.02);
+        assertTrue(snapshot.getP50() >= 50_000_000, "percentiles never understate");
+        assertEquals(100_000_000, snapshot.getMax());
+        assertEquals(50_000_500, snapshot.getMean(), 1.0);
+    }
+
+    @Test
+    void shouldRecordSmallValuesExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(100);
+
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(3, snapshot.getP50());
+        assertEquals(100, snapshot.getP99());
+    }
+
+    @Test
+    void shouldCountTicketsSoldAndRejections() {
+        TicketServiceImpl service = ticketService();
+        service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2), new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1));
+        service.purchaseTickets(1L, 1, 3, 0);
+        assertThrows(InvalidPurchaseException.class, () -> service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)));
+        assertThrows(InvalidPurchaseException.class, () -> service.purchaseTickets(0L, 1, 0, 0));
+        service.purchaseTicketsBatch(Arrays.asList(
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 26))));
+
+        assertEquals(4, metrics.ticketsSold(TicketTypeRequest.Type.ADULT));
+        assertEquals(3, metrics.ticketsSold(TicketTypeRequest.Type.CHILD));
+        assertEquals(1, metrics.ticketsSold(TicketTypeRequest.Type.INFANT));
+        assertEquals(1, metrics.rejections(PurchaseRejection.ADULT_REQUIRED));
+        assertEquals(1, metrics.rejections(PurchaseRejection.INVALID_ACCOUNT));
+        assertEquals(1, metrics.rejections(PurchaseRejection.INVALID_TOTAL));
+        assertEquals(3, metrics.getPaymentLatency().getCount());
+        assertEquals(3, metrics.getReservationLatency().getCount());
+    }
+
+    @Test
+    void shouldRecordGatewayLatencyWhenGatewayFails() {
+        Mockito.doThrow(new IllegalStateException("Gateway down")).when(paymentService).makePayment(1L, 25);
+
+        assertThrows(IllegalStateException.class, () -> ticketService().purchaseTickets(1L, 1, 0, 0));
+
+        assertEquals(1, metrics.getPaymentLatency().getCount());
+        assertEquals(0, metrics.getReservationLatency().getCount());
+        assertEquals(0, metrics.ticketsSold(TicketTypeRequest.Type.ADULT));
+    }
+
+    @Test
+    void shouldExposeSnapshotsOverJmx() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.register(server);
+        ticketService().purchaseTickets(1L, 2, 0, 0);
+
+        ObjectName name = new ObjectName(DefaultPurchaseMetrics.OBJECT_NAME);
+        CompositeData payment = (CompositeData) server.getAttribute(name, "PaymentLatency");
+        assertEquals(1L, payment.get("count"));
+        assertNotNull(server.getAttribute(name, "Rejections"));
+        assertNotNull(server.getAttribute(name, "TicketsSold"));
+    }
+}
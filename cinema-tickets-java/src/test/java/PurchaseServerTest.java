@@ -0,0 +1,193 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.RefundableTicketPaymentService;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.ShardedTicketService;
+import uk.gov.dwp.uc.pairtest.ShowingPartitioner;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.compensation.CompensationWorker;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.idempotency.IdempotencyCache;
+import uk.gov.dwp.uc.pairtest.wire.PurchaseClient;
+import uk.gov.dwp.uc.pairtest.wire.PurchaseResponse;
+import uk.gov.dwp.uc.pairtest.wire.PurchaseServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class PurchaseServerTest {
+    private final TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+    private final SeatReservationService reservationService = Mockito.mock(SeatReservationService.class);
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool();
+    private final TicketServiceImpl ticketService;
+    private ShardedTicketService shardedService;
+    private PurchaseServer server;
+    private PurchaseClient client;
+
+    public PurchaseServerTest() {
+        ticketService = new TicketServiceImpl(paymentService, reservationService, TestPrices.priceTable());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        if (shardedService != null) {
+            shardedService.close();
+        }
+        connectionExecutor.shutdownNow();
+    }
+
+    private PurchaseClient connect(TicketServiceImpl service, ShardedTicketService showings) throws IOException {
+        server = new PurchaseServer(service, showings, connectionExecutor, 4);
+        InetSocketAddress address = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = PurchaseClient.connect(address);
+        return client;
+    }
+
+    @Test
+    void shouldPurchaseAndTakePayment() throws IOException {
+        PurchaseResponse response = connect(ticketService, null).purchase(7L, 2, 1, 1);
+
+        assertEquals(PurchaseResponse.Status.SUCCESS, response.getStatus());
+        assertNull(response.getRejection());
+        verify(paymentService).makePayment(7L, 2 * TestPrices.ADULT + TestPrices.CHILD);
+        verify(reservationService).reserveSeat(7L, 3);
+    }
+
+    @Test
+    void shouldReportFailedReservation() throws IOException {
+        RefundableTicketPaymentService refundablePayments = Mockito.mock(RefundableTicketPaymentService.class);
+        doThrow(new IllegalStateException("Seat booking down")).when(reservationService).reserveSeat(anyLong(), anyInt());
+        CompensationWorker worker = new CompensationWorker(refundablePayments, 16, 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        try {
+            TicketServiceImpl compensating = new TicketServiceImpl(refundablePayments, reservationService, TestPrices.priceTable()).withCompensation(worker);
+
+            PurchaseResponse response = connect(compensating, null).purchase(7L, 2, 0, 0);
+
+            assertEquals(PurchaseResponse.Status.RESERVATION_FAILED, response.getStatus());
+            assertNull(response.getRejection());
+            verify(refundablePayments, Mockito.timeout(5000)).refundPayment(7L, 2 * TestPrices.ADULT);
+        } finally {
+            worker.close();
+        }
+    }
+
+    @Test
+    void shouldReportWhichRuleRejectedTheOrder() throws IOException {
+        PurchaseResponse response = connect(ticketService, null).purchase(7L, 0, 2, 0);
+
+        assertEquals(PurchaseResponse.Status.REJECTED, response.getStatus());
+        assertEquals(PurchaseRejection.ADULT_REQUIRED, response.getRejection());
+        verifyNoInteractions(paymentService);
+    }
+
+    @Test
+    void shouldReportRejectionOfIdempotentOrderFromTheResult() throws IOException {
+        PurchaseClient keyed = connect(ticketService.withIdempotency(new IdempotencyCache(100, Duration.ofMinutes(1))), null);
+
+        keyed.send(7L, 0, 2, 0, UUID.randomUUID());
+        keyed.flush();
+        PurchaseResponse response = keyed.readResponse();
+
+        assertEquals(PurchaseResponse.Status.REJECTED, response.getStatus());
+        assertEquals(PurchaseRejection.ADULT_REQUIRED, response.getRejection());
+    }
+
+    @Test
+    void shouldKeepWireCodesStable() {
+        // Codes already sent over the wire must keep their meaning whatever order the enums are declared in
+        assertEquals(0, PurchaseResponse.Status.SUCCESS.getCode());
+        assertEquals(1, PurchaseResponse.Status.REJECTED.getCode());
+        assertEquals(2, PurchaseResponse.Status.RESERVATION_FAILED.getCode());
+        assertEquals(3, PurchaseResponse.Status.SEATS_UNAVAILABLE.getCode());
+        assertEquals(4, PurchaseResponse.Status.UNSUPPORTED.getCode());
+        assertEquals(5, PurchaseResponse.Status.FAILED.getCode());
+        assertEquals(1, PurchaseRejection.INVALID_ACCOUNT.getCode());
+        assertEquals(7, PurchaseRejection.ADULT_REQUIRED.getCode());
+        assertEquals(12, PurchaseRejection.RATE_LIMITED.getCode());
+        for (PurchaseRejection rejection : PurchaseRejection.values()) {
+            assertSame(rejection, PurchaseRejection.fromCode(rejection.getCode()));
+        }
+        assertNull(PurchaseRejection.fromCode(0));
+        assertNull(PurchaseRejection.fromCode(200));
+    }
+
+    @Test
+    void shouldAnswerPipelinedRequestsInOrder() throws IOException {
+        PurchaseClient pipelined = connect(ticketService, null);
+        long[] requestIds = new long[1000];
+        for (int i = 0; i < requestIds.length; i++) {
+            // every tenth order has no adult and is rejected
+            requestIds[i] = pipelined.send(i + 1, i % 10 == 0 ? 0 : 1, 1, 0);
+        }
+        pipelined.flush();
+
+        for (int i = 0; i < requestIds.length; i++) {
+            PurchaseResponse response = pipelined.readResponse();
+            assertEquals(requestIds[i], response.getRequestId());
+            assertEquals(i % 10 == 0 ? PurchaseResponse.Status.REJECTED : PurchaseResponse.Status.SUCCESS, response.getStatus());
+        }
+        verify(paymentService, times(900)).makePayment(anyLong(), anyInt());
+    }
+
+    @Test
+    void shouldChargeRetriedIdempotentRequestOnce() throws IOException {
+        PurchaseClient retrying = connect(ticketService.withIdempotency(new IdempotencyCache(100, Duration.ofMinutes(1))), null);
+        UUID key = UUID.randomUUID();
+
+        retrying.send(7L, 2, 0, 0, key);
+        retrying.send(7L, 2, 0, 0, key);
+        retrying.flush();
+
+        assertEquals(PurchaseResponse.Status.SUCCESS, retrying.readResponse().getStatus());
+        assertEquals(PurchaseResponse.Status.SUCCESS, retrying.readResponse().getStatus());
+        verify(paymentService, times(1)).makePayment(7L, 2 * TestPrices.ADULT);
+    }
+
+    @Test
+    void shouldRoutePurchasesForAShowingThroughItsShard() throws IOException {
+        shardedService = new ShardedTicketService(ticketService, 2, ShowingPartitioner.hashing(), 1024);
+        shardedService.addShowing(10L, 1, 3).join();
+        PurchaseClient showingClient = connect(ticketService, shardedService);
+
+        showingClient.sendForShowing(10L, 7L, 2, 0, 0);
+        showingClient.sendForShowing(10L, 8L, 2, 0, 0);
+        showingClient.flush();
+
+        assertEquals(PurchaseResponse.Status.SUCCESS, showingClient.readResponse().getStatus());
+        assertEquals(PurchaseResponse.Status.SEATS_UNAVAILABLE, showingClient.readResponse().getStatus());
+        assertEquals(1, shardedService.availableSeats(10L).join());
+        verify(paymentService, times(1)).makePayment(7L, 2 * TestPrices.ADULT);
+    }
+
+    @Test
+    void shouldAnswerUnsupportedWhenNoShowingRouterIsConfigured() throws IOException {
+        PurchaseClient showingClient = connect(ticketService, null);
+
+        showingClient.sendForShowing(10L, 7L, 2, 0, 0);
+        showingClient.flush();
+
+        assertEquals(PurchaseResponse.Status.UNSUPPORTED, showingClient.readResponse().getStatus());
+        verifyNoInteractions(paymentService);
+    }
+}
@@ -0,0 +1,123 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.dwp.uc.pairtest.FileConfigurationLoader;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.PriceFileWatcher;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReloadablePriceTableTest {
+
+    private static void writePrices(Path file, int adult, int child, int infant) throws IOException {
+        // Write then move so the watcher never reads a half-written file
+        Path temp = Files.createTempFile(file.getParent(), "prices", ".tmp");
+        Files.write(temp, ("adult.ticket.price=" + adult + "\nchild.ticket.price=" + child + "\ninfant.ticket.price=" + infant + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Test
+    void shouldPriceEveryTicketTypeIncludingInfants() {
+        Properties properties = new Properties();
+        properties.setProperty("adult.ticket.price", "25");
+        properties.setProperty("child.ticket.price", "15");
+        properties.setProperty("infant.ticket.price", "2");
+
+        PriceTable table = PriceTable.fromProperties(properties);
+
+        assertEquals(25, table.priceOf(TicketTypeRequest.Type.ADULT));
+        assertEquals(15, table.priceOf(TicketTypeRequest.Type.CHILD));
+        assertEquals(2, table.priceOf(TicketTypeRequest.Type.INFANT));
+        assertEquals(25 * 2 + 15 + 2 * 3, table.totalPrice(2, 1, 3));
+    }
+
+    @Test
+    void shouldRejectInvalidPrices() {
+        assertThrows(TicketServiceImpl.ConfigurationException.class, () -> new PriceTable(25, 15, -1));
+        Properties properties = new Properties();
+        properties.setProperty("adult.ticket.price", "free");
+        Exception exception = assertThrows(TicketServiceImpl.ConfigurationException.class, () -> PriceTable.fromProperties(properties));
+        assertEquals("Invalid ticket price for adult.ticket.price: free", exception.getMessage());
+    }
+
+    @Test
+    void shouldSwapSnapshotOnReloadAndKeepItWhenInvalid(@TempDir Path tempDir) throws IOException {
+        Path pricesFile = tempDir.resolve("prices.properties");
+        writePrices(pricesFile, 25, 15, 0);
+        ReloadablePriceTable priceTable = new ReloadablePriceTable(new FileConfigurationLoader(pricesFile));
+        PriceTable original = priceTable.current();
+
+        writePrices(pricesFile, 30, 20, 5);
+        PriceTable reloaded = priceTable.reload();
+        assertSame(reloaded, priceTable.current());
+        assertEquals(30 * 2 + 20 + 5, priceTable.current().totalPrice(2, 1, 1));
+        assertEquals(25 * 2 + 15, original.totalPrice(2, 1, 1));
+
+        writePrices(pricesFile, 0, 20, 5);
+        assertThrows(TicketServiceImpl.ConfigurationException.class, priceTable::reload);
+        assertSame(reloaded, priceTable.current());
+    }
+
+    @Test
+    void shouldReloadWhenWatchedFileChanges(@TempDir Path tempDir) throws Exception {
+        Path pricesFile = tempDir.resolve("prices.properties");
+        writePrices(pricesFile, 25, 15, 0);
+        ReloadablePriceTable priceTable = new ReloadablePriceTable(new FileConfigurationLoader(pricesFile));
+
+        PriceFileWatcher watcher = new PriceFileWatcher(pricesFile, priceTable);
+        try {
+            writePrices(pricesFile, 40, 20, 0);
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (priceTable.current().priceOf(TicketTypeRequest.Type.ADULT) != 40 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            watcher.close();
+        }
+        assertEquals(40, priceTable.current().priceOf(TicketTypeRequest.Type.ADULT));
+    }
+
+    @Test
+    void shouldKeepWatchingAfterAMalformedFile(@TempDir Path tempDir) throws Exception {
+        Path pricesFile = tempDir.resolve("prices.properties");
+        writePrices(pricesFile, 25, 15, 0);
+        FileConfigurationLoader fileLoader = new FileConfigurationLoader(pricesFile);
+        AtomicInteger loads = new AtomicInteger();
+        ReloadablePriceTable priceTable = new ReloadablePriceTable(() -> {
+            loads.incrementAndGet();
+            return fileLoader.loadProperties();
+        });
+
+        PriceFileWatcher watcher = new PriceFileWatcher(pricesFile, priceTable);
+        try {
+            // A malformed escape makes Properties.load throw IllegalArgumentException rather than a ConfigurationException
+            Path temp = Files.createTempFile(tempDir, "prices", ".tmp");
+            Files.write(temp, "adult.ticket.price=\\uZZZZ\n".getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, pricesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (loads.get() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(25, priceTable.current().priceOf(TicketTypeRequest.Type.ADULT));
+
+            writePrices(pricesFile, 40, 20, 0);
+            while (priceTable.current().priceOf(TicketTypeRequest.Type.ADULT) != 40 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            watcher.close();
+        }
+        assertEquals(40, priceTable.current().priceOf(TicketTypeRequest.Type.ADULT));
+    }
+}
@@ -0,0 +1,175 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.HoldExpiredException;
+import uk.gov.dwp.uc.pairtest.inventory.InMemorySeatReservationService;
+import uk.gov.dwp.uc.pairtest.inventory.SeatHold;
+import uk.gov.dwp.uc.pairtest.inventory.SeatHoldService;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+import uk.gov.dwp.uc.pairtest.timer.HierarchicalTimingWheel;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doThrow;
+
+public class SeatHoldServiceTest {
+    private static final long SHOWING = 1L;
+    private final InMemorySeatReservationService inventory = new InMemorySeatReservationService(SHOWING, 10, 20);
+    private SeatHoldService seatHolds;
+
+    @AfterEach
+    void tearDown() {
+        if (seatHolds != null) {
+            seatHolds.close();
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    void shouldTakeSeatsOnHoldAndKeepThemOnConfirm() {
+        seatHolds = new SeatHoldService(inventory, Duration.ofMinutes(5));
+
+        SeatHold hold = seatHolds.hold(7L, SHOWING, 4);
+        assertEquals(196, inventory.showing(SHOWING).availableSeats());
+
+        assertEquals(4, seatHolds.confirm(hold).size());
+        assertEquals(SeatHold.State.CONFIRMED, hold.getState());
+        assertEquals(196, inventory.showing(SHOWING).availableSeats());
+        assertEquals(0, seatHolds.activeHolds());
+    }
+
+    @Test
+    void shouldReturnSeatsOnRelease() {
+        seatHolds = new SeatHoldService(inventory, Duration.ofMinutes(5));
+        SeatHold hold = seatHolds.hold(7L, SHOWING, 4);
+
+        assertTrue(seatHolds.release(hold));
+        assertFalse(seatHolds.release(hold));
+
+        assertEquals(200, inventory.showing(SHOWING).availableSeats());
+        assertThrows(HoldExpiredException.class, () -> seatHolds.confirm(hold));
+    }
+
+    @Test
+    void shouldReturnSeatsWhenHoldCannotBeScheduledToExpire() {
+        seatHolds = new SeatHoldService(inventory, Duration.ofMinutes(5));
+        seatHolds.close();
+
+        assertThrows(IllegalStateException.class, () -> seatHolds.hold(7L, SHOWING, 4));
+
+        assertEquals(200, inventory.showing(SHOWING).availableSeats());
+        assertEquals(0, seatHolds.activeHolds());
+    }
+
+    @Test
+    void shouldExpireUnconfirmedHoldAndReturnSeats() throws InterruptedException {
+        seatHolds = new SeatHoldService(inventory, Duration.ofMillis(50), Duration.ofMillis(5));
+        SeatHold expiring = seatHolds.hold(7L, SHOWING, 4);
+        SeatHold confirmed = seatHolds.hold(8L, SHOWING, 2);
+        seatHolds.confirm(confirmed);
+
+        awaitCondition(() -> expiring.getState() == SeatHold.State.EXPIRED);
+
+        assertEquals(198, inventory.showing(SHOWING).availableSeats());
+        assertEquals(SeatHold.State.CONFIRMED, confirmed.getState());
+        assertEquals(1, seatHolds.expiredHolds());
+        assertThrows(HoldExpiredException.class, () -> seatHolds.confirm(expiring));
+    }
+
+    @Test
+    void shouldExpireEveryItemNoEarlierThanItsDelayAcrossWheelLevels() throws Exception {
+        int items = 20_000;
+        long[] scheduledAt = new long[items];
+        long[] delays = new long[items];
+        ConcurrentMap<Integer, Long> expiredAt = new ConcurrentHashMap<>();
+        CountDownLatch allExpired = new CountDownLatch(items);
+        // 1 ms ticks and delays up to 300 ms, so items start on level 1 and cascade down
+        try (HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(Duration.ofMillis(1), item -> {
+            expiredAt.put(item, System.nanoTime());
+            allExpired.countDown();
+        }, "test-wheel")) {
+            Random random = new Random(42);
+            for (int i = 0; i < items; i++) {
+                delays[i] = TimeUnit.MILLISECONDS.toNanos(random.nextInt(300));
+                scheduledAt[i] = System.nanoTime();
+                wheel.schedule(i, Duration.ofNanos(delays[i]));
+            }
+            assertTrue(allExpired.await(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(items, expiredAt.size());
+        for (int i = 0; i < items; i++) {
+            assertTrue(expiredAt.get(i) - scheduledAt[i] >= delays[i], "item " + i + " expired early");
+        }
+    }
+
+    @Test
+    void shouldHoldThenPayThenConfirm() {
+        seatHolds = new SeatHoldService(inventory, Duration.ofMinutes(5));
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+
+        PurchaseResult result = ticketService(paymentService).purchaseWithHold(seatHolds, SHOWING, 3L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2), new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1));
+
+        assertTrue(result.isSuccess());
+        Mockito.verify(paymentService).makePayment(3L, 50);
+        assertEquals(198, inventory.showing(SHOWING).availableSeats());
+        assertEquals(0, seatHolds.activeHolds());
+    }
+
+    @Test
+    void shouldReleaseHoldWhenPaymentFails() {
+        seatHolds = new SeatHoldService(inventory, Duration.ofMinutes(5));
+        TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+        doThrow(new IllegalStateException("Card declined")).when(paymentService).makePayment(3L, 50);
+
+        assertThrows(IllegalStateException.class, () -> ticketService(paymentService).purchaseWithHold(seatHolds, SHOWING, 3L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)));
+
+        assertEquals(200, inventory.showing(SHOWING).availableSeats());
+        assertEquals(0, seatHolds.activeHolds());
+    }
+
+    @Test
+    void shouldFailWhenHoldExpiresDuringPayment() {
+        seatHolds = new SeatHoldService(inventory, Duration.ofMillis(20), Duration.ofMillis(5));
+        TicketPaymentService slowPayment = (accountId, amount) -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertThrows(HoldExpiredException.class, () -> ticketService(slowPayment).purchaseWithHold(seatHolds, SHOWING, 3L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)));
+
+        assertEquals(200, inventory.showing(SHOWING).availableSeats());
+    }
+
+    private TicketServiceImpl ticketService(TicketPaymentService paymentService) {
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", "25");
+        prices.setProperty("child.ticket.price", "15");
+        return new TicketServiceImpl(paymentService, inventory, new ReloadablePriceTable(() -> prices));
+    }
+}
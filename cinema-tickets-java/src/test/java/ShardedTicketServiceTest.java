@@ -0,0 +1,241 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.ShardedTicketService;
+import uk.gov.dwp.uc.pairtest.ShowingPartitioner;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.SeatsUnavailableException;
+import uk.gov.dwp.uc.pairtest.limits.AccountPurchaseLedger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class ShardedTicketServiceTest {
+    private final TicketPaymentService paymentService = Mockito.mock(TicketPaymentService.class);
+    private final SeatReservationService reservationService = Mockito.mock(SeatReservationService.class);
+    private final TicketServiceImpl ticketService;
+    private ShardedTicketService shardedService;
+
+    public ShardedTicketServiceTest() {
+        ticketService = new TicketServiceImpl(paymentService, reservationService, TestPrices.priceTable());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (shardedService != null) {
+            shardedService.close();
+        }
+    }
+
+    private static TicketTypeRequest adults(int count) {
+        return new TicketTypeRequest(TicketTypeRequest.Type.ADULT, count);
+    }
+
+    @Test
+    void shouldBookSeatsInOwningShardAndTakePayment() {
+        shardedService = new ShardedTicketService(ticketService, 4, ShowingPartitioner.hashing(), 1024);
+        shardedService.addShowing(10L, 10, 20).join();
+
+        PurchaseResult result = shardedService.purchaseTickets(10L, 7L, adults(2), new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)).join();
+
+        assertTrue(result.isSuccess());
+        assertEquals(2 * TestPrices.ADULT + TestPrices.CHILD, result.getTotalAmountPaid());
+        assertEquals(3, result.getSeatNumbers().length);
+        assertEquals(197, shardedService.availableSeats(10L).join());
+        Mockito.verify(paymentService).makePayment(7L, 2 * TestPrices.ADULT + TestPrices.CHILD);
+        verifyNoInteractions(reservationService);
+    }
+
+    @Test
+    void shouldRunEveryShowingOnTheShardChosenByThePartitioner() {
+        Set<String> threads = new HashSet<>();
+        shardedService = new ShardedTicketService(ticketService, 3, (showingId, shardCount) -> Math.toIntExact(showingId / 100), 1024);
+        shardedService.addShowing(101L, 5, 10).join();
+        shardedService.addShowing(102L, 5, 10).join();
+        assertEquals(1, shardedService.shardFor(101L));
+
+        threads.add(shardThreadOf(101L));
+        threads.add(shardThreadOf(102L));
+
+        assertEquals(Set.of("ticket-shard-1"), threads);
+    }
+
+    // A callback attached after the shard has already answered runs on the caller, so retry until one lands on the shard
+    private String shardThreadOf(long showingId) {
+        String caller = Thread.currentThread().getName();
+        for (int attempt = 0; attempt < 1000; attempt++) {
+            AtomicReference<String> thread = new AtomicReference<>();
+            shardedService.availableSeats(showingId).thenRun(() -> thread.set(Thread.currentThread().getName())).join();
+            if (!caller.equals(thread.get())) {
+                return thread.get();
+            }
+        }
+        return fail("No query for showing " + showingId + " completed on a shard thread");
+    }
+
+    @Test
+    void shouldKeepServingTheShardWhileAPaymentIsInFlight() throws Exception {
+        CountDownLatch paying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Set<String> paymentThreads = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            paymentThreads.add(Thread.currentThread().getName());
+            paying.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }).when(paymentService).makePayment(anyLong(), anyInt());
+        shardedService = new ShardedTicketService(ticketService, 1, ShowingPartitioner.hashing(), 1024);
+        shardedService.addShowing(1L, 10, 20).join();
+
+        CompletableFuture<PurchaseResult> purchase = shardedService.purchaseTickets(1L, 7L, adults(2));
+        assertTrue(paying.await(5, TimeUnit.SECONDS));
+
+        // The only shard answers while the gateway is still busy, with the seats already held
+        assertEquals(198, shardedService.availableSeats(1L).get(1, TimeUnit.SECONDS));
+        release.countDown();
+        assertTrue(purchase.join().isSuccess());
+        assertFalse(paymentThreads.contains("ticket-shard-0"));
+    }
+
+    @Test
+    void shouldNotTakeAllowanceWhenPartitionerFails() {
+        AccountPurchaseLedger ledger = new AccountPurchaseLedger(10, Duration.ofHours(1));
+        shardedService = new ShardedTicketService(ticketService.withAccountLimits(ledger), 2, (showingId, shardCount) -> {
+            if (showingId == 99L) {
+                throw new IllegalStateException("No shard for showing 99");
+            }
+            return 0;
+        }, 1024);
+        shardedService.addShowing(1L, 10, 20).join();
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalStateException.class, () -> shardedService.purchaseTickets(99L, 7L, adults(4)));
+        }
+
+        assertTrue(shardedService.purchaseTickets(1L, 7L, adults(10)).join().isSuccess());
+    }
+
+    @Test
+    void shouldNeverOversellUnderConcurrentPurchases() throws InterruptedException {
+        shardedService = new ShardedTicketService(ticketService, 2, ShowingPartitioner.hashing(), 100_000);
+        shardedService.addShowing(1L, 5, 10).join();
+        shardedService.addShowing(2L, 5, 10).join();
+        List<CompletableFuture<PurchaseResult>> purchases = new ArrayList<>();
+        List<Thread> buyers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread buyer = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    CompletableFuture<PurchaseResult> purchase = shardedService.purchaseTickets(1 + i % 2, 7L, adults(1));
+                    synchronized (purchases) {
+                        purchases.add(purchase);
+                    }
+                }
+            });
+            buyers.add(buyer);
+            buyer.start();
+        }
+        for (Thread buyer : buyers) {
+            buyer.join();
+        }
+
+        int sold = 0;
+        for (CompletableFuture<PurchaseResult> purchase : purchases) {
+            try {
+                purchase.join();
+                sold++;
+            } catch (CompletionException e) {
+                assertInstanceOf(SeatsUnavailableException.class, e.getCause());
+            }
+        }
+        assertEquals(100, sold);
+        assertEquals(0, shardedService.availableSeats(1L).join());
+        assertEquals(0, shardedService.availableSeats(2L).join());
+    }
+
+    @Test
+    void shouldReleaseSeatsWhenPaymentFails() {
+        doThrow(new IllegalStateException("Payment gateway down")).when(paymentService).makePayment(anyLong(), anyInt());
+        shardedService = new ShardedTicketService(ticketService, 2, ShowingPartitioner.hashing(), 1024);
+        shardedService.addShowing(1L, 10, 20).join();
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> shardedService.purchaseTickets(1L, 7L, adults(4)).join());
+
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(200, shardedService.availableSeats(1L).join());
+    }
+
+    @Test
+    void shouldRejectInvalidOrdersWithoutReachingAShard() {
+        shardedService = new ShardedTicketService(ticketService, 2, ShowingPartitioner.hashing(), 1024);
+
+        PurchaseResult result = shardedService.purchaseTickets(1L, 7L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)).join();
+
+        assertEquals(PurchaseResult.Status.REJECTED, result.getStatus());
+        verifyNoInteractions(paymentService);
+    }
+
+    @Test
+    void shouldFailPurchasesForUnknownShowings() {
+        shardedService = new ShardedTicketService(ticketService, 2, ShowingPartitioner.hashing(), 1024);
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> shardedService.purchaseTickets(99L, 7L, adults(1)).join());
+
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+        verifyNoInteractions(paymentService);
+    }
+
+    @Test
+    void shouldReturnReleasedSeatsToTheShowing() {
+        shardedService = new ShardedTicketService(ticketService, 2, ShowingPartitioner.hashing(), 1024);
+        shardedService.addShowing(1L, 10, 20).join();
+        PurchaseResult result = shardedService.purchaseTickets(1L, 7L, adults(5)).join();
+
+        shardedService.releaseSeats(1L, result.getSeatNumbers()).join();
+
+        assertEquals(200, shardedService.availableSeats(1L).join());
+    }
+
+    @Test
+    void shouldRunOrRejectEveryTaskSubmittedWhileClosing() throws Exception {
+        shardedService = new ShardedTicketService(ticketService, 2, ShowingPartitioner.hashing(), 1_000_000);
+        shardedService.addShowing(1L, 10, 20).join();
+        List<CompletableFuture<Integer>> accepted = new ArrayList<>();
+        Thread submitter = new Thread(() -> {
+            try {
+                while (true) {
+                    accepted.add(shardedService.availableSeats(1L));
+                }
+            } catch (RejectedExecutionException e) {
+                // Closed
+            }
+        });
+        submitter.start();
+        Thread.sleep(20);
+
+        shardedService.close();
+        submitter.join();
+
+        // A task that slipped in as the shard stopped must still run rather than leave its caller waiting forever
+        CompletableFuture.allOf(accepted.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+    }
+}
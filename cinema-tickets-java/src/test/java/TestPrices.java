@@ -0,0 +1,26 @@
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+
+import java.util.Properties;
+
+// Prices for tests that price through the real price table. They differ from PriceTable's defaults, so a test
+// that sets the wrong keys fails instead of silently pricing at the defaults.
+final class TestPrices {
+    static final int ADULT = 30;
+    static final int CHILD = 20;
+    static final int INFANT = 0;
+
+    private TestPrices() {
+    }
+
+    static Properties properties() {
+        Properties prices = new Properties();
+        prices.setProperty("adult.ticket.price", String.valueOf(ADULT));
+        prices.setProperty("child.ticket.price", String.valueOf(CHILD));
+        prices.setProperty("infant.ticket.price", String.valueOf(INFANT));
+        return prices;
+    }
+
+    static ReloadablePriceTable priceTable() {
+        return new ReloadablePriceTable(TestPrices::properties);
+    }
+}
@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.pricing.PricingRules;
+import uk.gov.dwp.uc.pairtest.pricing.ReloadablePriceTable;
+import uk.gov.dwp.uc.pairtest.pricing.TicketCombinations;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketCombinationsTest {
+
+    private static Properties rules() {
+        Properties rules = new Properties();
+        rules.setProperty("pricing.peak.hours", "17-22");
+        rules.setProperty("pricing.peak.days", "SATURDAY,SUNDAY");
+        rules.setProperty("pricing.peak.percent", "20");
+        rules.setProperty("pricing.offpeak.percent", "-5");
+        rules.setProperty("pricing.weekday.discount.days", "MONDAY");
+        rules.setProperty("pricing.weekday.discount.percent", "10");
+        rules.setProperty("pricing.group.min.tickets", "10");
+        rules.setProperty("pricing.group.discount.percent", "20");
+        rules.setProperty("pricing.promo.SUMMER10", "10");
+        return rules;
+    }
+
+    @Test
+    void shouldNumberEveryLegalCombinationOnce() {
+        boolean[] seen = new boolean[TicketCombinations.COUNT];
+        for (int adults = 0; adults <= 30; adults++) {
+            for (int children = 0; children <= 30; children++) {
+                for (int infants = 0; infants <= 30; infants++) {
+                    int index = TicketCombinations.indexOf(adults, children, infants);
+                    if (adults + children + infants > TicketCombinations.MAX_TICKETS) {
+                        assertEquals(TicketCombinations.INVALID, index);
+                        continue;
+                    }
+                    assertFalse(seen[index]);
+                    seen[index] = true;
+                    assertEquals(adults, TicketCombinations.adults(index));
+                    assertEquals(children, TicketCombinations.children(index));
+                    assertEquals(infants, TicketCombinations.infants(index));
+                    assertEquals(adults + children, TicketCombinations.seats(index));
+                }
+            }
+        }
+        for (boolean numbered : seen) {
+            assertTrue(numbered);
+        }
+    }
+
+    @Test
+    void shouldApplyTheTotalAndAdultRules() {
+        assertEquals(PurchaseRejection.INVALID_TOTAL, TicketCombinations.rejection(TicketCombinations.indexOf(0, 0, 0)));
+        assertEquals(PurchaseRejection.INVALID_TOTAL, TicketCombinations.rejection(TicketCombinations.indexOf(20, 5, 1)));
+        assertEquals(PurchaseRejection.ADULT_REQUIRED, TicketCombinations.rejection(TicketCombinations.indexOf(0, 2, 1)));
+        assertEquals(PurchaseRejection.ADULT_REQUIRED, TicketCombinations.rejection(TicketCombinations.indexOf(0, 0, 1)));
+        assertNull(TicketCombinations.rejection(TicketCombinations.indexOf(1, 0, 0)));
+        assertNull(TicketCombinations.rejection(TicketCombinations.indexOf(20, 4, 1)));
+    }
+
+    @Test
+    void shouldTreatNegativeAndOverflowingCountsAsInvalid() {
+        assertEquals(TicketCombinations.INVALID, TicketCombinations.indexOf(-1, 2, 0));
+        assertEquals(TicketCombinations.INVALID, TicketCombinations.indexOf(1, Integer.MIN_VALUE, 0));
+        assertEquals(TicketCombinations.INVALID, TicketCombinations.indexOf(Integer.MAX_VALUE, Integer.MAX_VALUE, 2));
+        assertEquals(TicketCombinations.INVALID, TicketCombinations.indexOf(26, 0, 0));
+    }
+
+    @Test
+    void shouldPriceEveryCombinationAsTheRulesDo() {
+        PricingRules rules = PricingRules.compile(25, 15, 5, rules());
+        int promoIndex = rules.promoIndex("SUMMER10");
+        for (int bucket = 0; bucket < PricingRules.TIME_BUCKETS; bucket++) {
+            for (int index = 0; index < TicketCombinations.COUNT; index++) {
+                int adults = TicketCombinations.adults(index);
+                int children = TicketCombinations.children(index);
+                int infants = TicketCombinations.infants(index);
+                assertEquals(rules.totalPrice(adults, children, infants, bucket, PricingRules.NO_PROMO),
+                        rules.combinationPrice(index, bucket, PricingRules.NO_PROMO));
+                assertEquals(rules.totalPrice(adults, children, infants, bucket, promoIndex),
+                        rules.combinationPrice(index, bucket, promoIndex));
+            }
+        }
+    }
+
+    @Test
+    void shouldRebuildPricesOnReload() {
+        AtomicReference<String> adultPrice = new AtomicReference<>("25");
+        ReloadablePriceTable priceTable = new ReloadablePriceTable(() -> {
+            Properties prices = new Properties();
+            prices.setProperty(PriceTable.ADULT_PRICE_KEY, adultPrice.get());
+            return prices;
+        });
+        int twoAdultsOneChild = TicketCombinations.indexOf(2, 1, 0);
+        assertEquals(65, priceTable.current().rules().combinationPrice(twoAdultsOneChild, 0, PricingRules.NO_PROMO));
+
+        adultPrice.set("30");
+        priceTable.reload();
+
+        assertEquals(75, priceTable.current().rules().combinationPrice(twoAdultsOneChild, 0, PricingRules.NO_PROMO));
+    }
+}
@@ -0,0 +1,46 @@
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import uk.gov.dwp.uc.pairtest.benchmark.TicketServiceBenchmark;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the primitive-path benchmarks under the JMH gc profiler and checks they allocate nothing per operation.
+// Forks a JVM and takes several seconds, so it only runs with -Pjmh.
+@Tag("jmh")
+public class TicketServiceAllocationTest {
+    // JMH's own bookkeeping can show up as a fraction of a byte per operation
+    private static final double MAX_BYTES_PER_OPERATION = 1.0;
+
+    @Test
+    void primitivePurchasesShouldNotAllocate() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TicketServiceBenchmark.class.getName() + ".primitive")
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(2)
+                .measurementTime(TimeValue.milliseconds(500))
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        assertEquals(2, results.size());
+        for (RunResult result : results) {
+            Result<?> allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            assertNotNull(allocation, "gc profiler result missing");
+            assertTrue(allocation.getScore() < MAX_BYTES_PER_OPERATION,
+                    result.getParams().getBenchmark() + " allocated " + allocation.getScore() + " bytes/op");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Implementations that only provide purchaseTickets(Long, TicketTypeRequest...) get the other entry points for free
+public class TicketServiceDefaultsTest {
+    private final List<Long> purchasedFor = new ArrayList<>();
+    private final List<String> purchased = new ArrayList<>();
+    private final TicketService ticketService = (accountId, ticketTypeRequests) -> {
+        if (Arrays.stream(ticketTypeRequests).noneMatch(request -> request.getTicketType() == TicketTypeRequest.Type.ADULT)) {
+            throw PurchaseRejection.ADULT_REQUIRED.exception();
+        }
+        if (accountId == 4L) {
+            throw new IllegalStateException("Payment gateway unavailable");
+        }
+        purchasedFor.add(accountId);
+        for (TicketTypeRequest request : ticketTypeRequests) {
+            purchased.add(request.getTicketType() + "=" + request.getNoOfTickets());
+        }
+    };
+
+    @Test
+    void shouldBuyEachOrderOfABatchOnItsOwn() {
+        List<PurchaseResult> results = ticketService.purchaseTicketsBatch(Arrays.asList(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2), new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1)),
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)),
+                null,
+                new PurchaseOrder(3L, "SUMMER10", new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1))));
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(2, results.get(0).getAdultTickets());
+        assertEquals(1, results.get(0).getInfantTickets());
+        assertEquals(2, results.get(0).getTotalSeatsReserved());
+        assertEquals(PurchaseRejection.ADULT_REQUIRED.getMessage(), results.get(1).getFailureReason());
+        assertEquals(PurchaseRejection.NULL_ORDER.getMessage(), results.get(2).getFailureReason());
+        assertSame(PurchaseRejection.PROMO_CODE_UNSUPPORTED, results.get(3).getRejection());
+        assertEquals(List.of(1L), purchasedFor);
+    }
+
+    @Test
+    void shouldCarryOnWithTheBatchAfterAnOrderFails() {
+        List<PurchaseResult> results = ticketService.purchaseTicketsBatch(List.of(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(4L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)),
+                new PurchaseOrder(5L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1))));
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(PurchaseResult.Status.PAYMENT_FAILED, results.get(1).getStatus());
+        assertEquals(2, results.get(1).getAdultTickets());
+        assertEquals("Payment gateway unavailable", results.get(1).getFailureReason());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(List.of(1L, 5L), purchasedFor);
+    }
+
+    @Test
+    void shouldBuyPrimitiveCountsAsTicketRequests() {
+        ticketService.purchaseTickets(5L, 2, 0, 1);
+
+        assertEquals(List.of(5L), purchasedFor);
+        assertEquals(List.of("ADULT=2", "INFANT=1"), purchased);
+        assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(5L, 0, 1, 0));
+    }
+}
@@ -5,25 +5,34 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import thirdparty.paymentgateway.BatchTicketPaymentService;
 import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.BatchSeatReservationService;
 import thirdparty.seatbooking.SeatReservationService;
 import uk.gov.dwp.uc.pairtest.ConfigurationLoader;
 import uk.gov.dwp.uc.pairtest.DefaultConfigurationLoader;
 import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
 import uk.gov.dwp.uc.pairtest.TicketServiceImpl.ConfigurationException;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class TicketServiceImplTest {
     public static final String ERROR_MESSAGE_CHILD_INFANT_WITHOUT_ADULT = "Child and Infant tickets require an accompanying Adult ticket purchase.";
+    private static final String ERR_INVALID_ACCOUNT_ID = "Invalid account ID";
     @Mock
     private TicketPaymentService ticketPaymentService;
     @Mock
@@ -214,4 +223,153 @@ public class TicketServiceImplTest {
                 () -> ticketService.purchaseTickets(12345L, new TicketTypeRequest[0]));
         assertEquals("No ticket requests provided", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReportPerOrderResultsForBatch() {
+        List<PurchaseResult> results = ticketService.purchaseTicketsBatch(Arrays.asList(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)),
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)),
+                new PurchaseOrder(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1),
+                        new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1),
+                        new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1)),
+                null));
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(50, results.get(0).getTotalAmountPaid());
+        assertEquals(2, results.get(0).getTotalSeatsReserved());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals(ERROR_MESSAGE_CHILD_INFANT_WITHOUT_ADULT, results.get(1).getFailureReason());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(40, results.get(2).getTotalAmountPaid());
+        assertEquals(2, results.get(2).getTotalSeatsReserved());
+        assertFalse(results.get(3).isSuccess());
+        assertEquals("Null purchase order encountered", results.get(3).getFailureReason());
+
+        verify(ticketPaymentService).makePayment(1L, 50);
+        verify(ticketPaymentService).makePayment(3L, 40);
+        verify(seatReservationService).reserveSeat(1L, 2);
+        verify(seatReservationService).reserveSeat(3L, 2);
+    }
+
+    @Test
+    void shouldKeepChargingTheRestOfABatchWhenOneOrdersPaymentFails() {
+        Mockito.lenient().doThrow(new IllegalStateException("card declined")).when(ticketPaymentService).makePayment(2L, 25);
+
+        List<PurchaseResult> results = ticketService.purchaseTicketsBatch(Arrays.asList(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)),
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1))));
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(PurchaseResult.Status.PAYMENT_FAILED, results.get(1).getStatus());
+        assertEquals("card declined", results.get(1).getFailureReason());
+        assertTrue(results.get(2).isSuccess());
+        verify(seatReservationService).reserveSeat(1L, 2);
+        verify(seatReservationService, never()).reserveSeat(2L, 1);
+        verify(seatReservationService).reserveSeat(3L, 1);
+    }
+
+    @Test
+    void shouldReportChargedOrdersWhoseSeatsFailedWithoutACompensationWorker() {
+        Mockito.lenient().doThrow(new IllegalStateException("no seats")).when(seatReservationService).reserveSeat(1L, 2);
+
+        List<PurchaseResult> results = ticketService.purchaseTicketsBatch(Arrays.asList(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)),
+                new PurchaseOrder(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1))));
+
+        assertEquals(PurchaseResult.Status.RESERVATION_FAILED, results.get(0).getStatus());
+        assertEquals(50, results.get(0).getTotalAmountPaid());
+        // Nobody to refund it, so the caller is told what was charged
+        assertNull(results.get(0).getCompensation());
+        assertTrue(results.get(1).isSuccess());
+    }
+
+    @Test
+    void shouldReportEveryOrderFailedWhenTheBatchPaymentCallFails() {
+        BatchTicketPaymentService batchPaymentService = Mockito.mock(BatchTicketPaymentService.class);
+        Mockito.doThrow(new IllegalStateException("gateway down")).when(batchPaymentService).makePayments(Mockito.any(), Mockito.any());
+        TicketServiceImpl batchTicketService = new TicketServiceImpl(batchPaymentService, seatReservationService, configLoader);
+
+        List<PurchaseResult> results = batchTicketService.purchaseTicketsBatch(Arrays.asList(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)),
+                new PurchaseOrder(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1))));
+
+        assertEquals(PurchaseResult.Status.PAYMENT_FAILED, results.get(0).getStatus());
+        assertEquals(PurchaseResult.Status.PAYMENT_FAILED, results.get(1).getStatus());
+        Mockito.verifyNoInteractions(seatReservationService);
+    }
+
+    @Test
+    void shouldDispatchValidOrdersThroughBatchGateways() {
+        BatchTicketPaymentService batchPaymentService = Mockito.mock(BatchTicketPaymentService.class);
+        BatchSeatReservationService batchReservationService = Mockito.mock(BatchSeatReservationService.class);
+        TicketServiceImpl batchTicketService = new TicketServiceImpl(batchPaymentService, batchReservationService, configLoader);
+
+        batchTicketService.purchaseTicketsBatch(Arrays.asList(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(0L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+                        new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2))));
+
+        verify(batchPaymentService).makePayments(new long[]{1L, 2L}, new int[]{25, 80});
+        verify(batchReservationService).reserveSeats(new long[]{1L, 2L}, new int[]{1, 4});
+        verify(batchPaymentService, never()).makePayment(Mockito.anyLong(), Mockito.anyInt());
+    }
+
+    @Test
+    void shouldSkipGatewaysWhenEveryOrderInBatchIsInvalid() {
+        List<PurchaseResult> results = ticketService.purchaseTicketsBatch(Arrays.asList(
+                new PurchaseOrder(null, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(1L)));
+
+        assertEquals(ERR_INVALID_ACCOUNT_ID, results.get(0).getFailureReason());
+        assertEquals("No ticket requests provided", results.get(1).getFailureReason());
+        verify(ticketPaymentService, never()).makePayment(Mockito.anyLong(), Mockito.anyInt());
+        verify(seatReservationService, never()).reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+    }
+
+    @Test
+    void shouldProcessPrimitivePurchase() {
+        ticketService.purchaseTickets(1L, 2, 1, 1);
+
+        verify(ticketPaymentService).makePayment(1L, 65);
+        verify(seatReservationService).reserveSeat(1L, 3);
+    }
+
+    @Test
+    void shouldRejectPrimitivePurchaseWithSharedStacklessException() {
+        InvalidPurchaseException first = assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 0, 2, 0));
+        InvalidPurchaseException second = assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(2L, 0, 0, 1));
+
+        assertSame(first, second);
+        assertSame(PurchaseRejection.ADULT_REQUIRED, first.getRejection());
+        assertEquals(ERROR_MESSAGE_CHILD_INFANT_WITHOUT_ADULT, first.getMessage());
+        assertEquals(0, first.getStackTrace().length);
+        verify(ticketPaymentService, never()).makePayment(Mockito.anyLong(), Mockito.anyInt());
+    }
+
+    @Test
+    void shouldApplySameRulesToPrimitivePurchase() {
+        assertSame(PurchaseRejection.INVALID_ACCOUNT, assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(0L, 1, 0, 0)).getRejection());
+        assertSame(PurchaseRejection.INVALID_TICKET_COUNT, assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 1, -1, 0)).getRejection());
+        assertSame(PurchaseRejection.INVALID_TOTAL, assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 0, 0, 0)).getRejection());
+        assertSame(PurchaseRejection.INVALID_TOTAL, assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 20, 5, 1)).getRejection());
+    }
+
+    @Test
+    void shouldChargeForInfantsWhenInfantPriceIsConfigured() {
+        Properties properties = new Properties();
+        properties.setProperty("adult.ticket.price", "25");
+        properties.setProperty("child.ticket.price", "15");
+        properties.setProperty("infant.ticket.price", "5");
+        DefaultConfigurationLoader infantPriceLoader = Mockito.mock(DefaultConfigurationLoader.class);
+        when(infantPriceLoader.loadProperties()).thenReturn(properties);
+        TicketServiceImpl service = new TicketServiceImpl(ticketPaymentService, seatReservationService, infantPriceLoader);
+
+        service.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1), new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1));
+
+        verify(ticketPaymentService).makePayment(1L, 30);
+        verify(seatReservationService).reserveSeat(1L, 1);
+    }
+}
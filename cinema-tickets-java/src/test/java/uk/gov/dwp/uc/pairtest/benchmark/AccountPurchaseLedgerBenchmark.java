@@ -0,0 +1,65 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.limits.AccountPurchaseLedger;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Acquire-and-release throughput on the per-account ledger. Run with {@code -t 1,2,4,...} to see
+ * scaling: distinct accounts should scale with threads, a shared account serialises on one stripe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@Threads(Threads.MAX)
+public class AccountPurchaseLedgerBenchmark {
+
+    private static final AtomicLong NEXT_ACCOUNT = new AtomicLong(1);
+
+    private AccountPurchaseLedger ledger;
+
+    @State(Scope.Thread)
+    public static class ThreadAccount {
+        long accountId;
+
+        @Setup
+        public void setUp() {
+            accountId = NEXT_ACCOUNT.incrementAndGet();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ledger = new AccountPurchaseLedger(Integer.MAX_VALUE, Duration.ofDays(1));
+    }
+
+    @Benchmark
+    public boolean distinctAccounts(ThreadAccount account) {
+        boolean acquired = ledger.tryAcquire(account.accountId, 2);
+        ledger.release(account.accountId, 2);
+        return acquired;
+    }
+
+    @Benchmark
+    public boolean sharedAccount() {
+        boolean acquired = ledger.tryAcquire(1L, 2);
+        ledger.release(1L, 2);
+        return acquired;
+    }
+}
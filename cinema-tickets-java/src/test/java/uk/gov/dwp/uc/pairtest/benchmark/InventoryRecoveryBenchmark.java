@@ -0,0 +1,74 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.inventory.SeatAllocation;
+import uk.gov.dwp.uc.pairtest.persistence.JournalSyncMode;
+import uk.gov.dwp.uc.pairtest.persistence.PersistentSeatInventory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Journal replay speed on startup: a journal of {@link #EVENTS} seat reservations and releases is
+ * written once, then each invocation recovers it from scratch. The score is journal events replayed
+ * per second. Run with {@code mvn -B -Pjmh verify -Djmh.args="InventoryRecoveryBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class InventoryRecoveryBenchmark {
+    private static final int EVENTS = 1_000_000;
+    private static final long SHOWING = 1L;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        directory = Files.createTempDirectory("inventory-recovery");
+        try (PersistentSeatInventory inventory = PersistentSeatInventory.open(directory, SHOWING, 64, 64,
+                JournalSyncMode.PERIODIC, Duration.ofMillis(50), Duration.ZERO)) {
+            for (int i = 0; i < EVENTS / 2; i++) {
+                SeatAllocation allocation = inventory.reserveSeats(SHOWING, 1 + i % 4);
+                inventory.release(allocation);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long recover() throws IOException {
+        try (PersistentSeatInventory inventory = PersistentSeatInventory.open(directory, SHOWING, 64, 64,
+                JournalSyncMode.PERIODIC, Duration.ofMillis(50), Duration.ZERO)) {
+            return inventory.getRecoveredEvents();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.AsyncTicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.payment.CoalescingPaymentService;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payment throughput against a {@link SimulatedPaymentGateway} with a 1 ms round trip, calling it
+ * directly ({@code direct}) or through a {@link CoalescingPaymentService} ({@code coalescing}).
+ * Run with {@code mvn -B -Pjmh verify -Djmh.args="PaymentCoalescingBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(32)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class PaymentCoalescingBenchmark {
+
+    @Param({"direct", "coalescing"})
+    public String mode;
+
+    private ExecutorService executor;
+    private CoalescingPaymentService coalescer;
+    private TicketPaymentService paymentService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(1, TimeUnit.MILLISECONDS);
+        if ("coalescing".equals(mode)) {
+            executor = AsyncTicketServiceImpl.newGatewayExecutor();
+            coalescer = new CoalescingPaymentService(gateway, executor, 64, Duration.ofMillis(2), 1);
+            paymentService = coalescer;
+        } else {
+            paymentService = gateway;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (coalescer != null) {
+            coalescer.close();
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void makePayment() {
+        paymentService.makePayment(1L, 25);
+    }
+}
@@ -0,0 +1,77 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.DefaultConfigurationLoader;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.metrics.DefaultPurchaseMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of instrumentation: the same purchases with metrics off ({@code none}) and with
+ * {@link DefaultPurchaseMetrics} ({@code default}), on several threads so the counters contend.
+ * Run with {@code mvn -B -Pjmh verify -Djmh.args="PurchaseMetricsBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class PurchaseMetricsBenchmark {
+
+    private static final TicketPaymentService NO_OP_PAYMENT = (accountId, totalAmountToPay) -> { };
+    private static final SeatReservationService NO_OP_RESERVATION = (accountId, totalSeatsToAllocate) -> { };
+
+    @Param({"none", "default"})
+    public String metrics;
+
+    private TicketServiceImpl ticketService;
+
+    @Setup
+    public void setUp() {
+        ticketService = new TicketServiceImpl(NO_OP_PAYMENT, NO_OP_RESERVATION, new DefaultConfigurationLoader());
+        if ("default".equals(metrics)) {
+            ticketService = ticketService.withMetrics(new DefaultPurchaseMetrics());
+        }
+    }
+
+    @Benchmark
+    public void adultChildInfant() {
+        ticketService.purchaseTickets(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+                new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2),
+                new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1));
+    }
+
+    @Benchmark
+    public void primitiveAdultChildInfant() {
+        ticketService.purchaseTickets(1L, 2, 2, 1);
+    }
+
+    @Benchmark
+    public void primitiveRejectChildWithoutAdult(Blackhole blackhole) {
+        try {
+            ticketService.purchaseTickets(1L, 0, 2, 0);
+        } catch (InvalidPurchaseException e) {
+            blackhole.consume(e);
+        }
+    }
+}
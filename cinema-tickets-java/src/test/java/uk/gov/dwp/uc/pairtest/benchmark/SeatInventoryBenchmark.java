@@ -0,0 +1,51 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.inventory.SeatAllocation;
+import uk.gov.dwp.uc.pairtest.inventory.ShowingSeatMap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserve-and-release throughput with every thread contending for a single showing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@Threads(Threads.MAX)
+public class SeatInventoryBenchmark {
+
+    @Param({"1", "4", "25"})
+    public int seatsPerPurchase;
+
+    private ShowingSeatMap seatMap;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        seatMap = new ShowingSeatMap(1L, 30, 40);
+    }
+
+    @Benchmark
+    public SeatAllocation reserveAndRelease() {
+        SeatAllocation allocation = seatMap.reserveBestAvailable(seatsPerPurchase);
+        if (allocation != null) {
+            seatMap.release(allocation);
+        }
+        return allocation;
+    }
+}
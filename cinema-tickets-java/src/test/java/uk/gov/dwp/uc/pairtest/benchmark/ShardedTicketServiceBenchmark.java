@@ -0,0 +1,88 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.DefaultConfigurationLoader;
+import uk.gov.dwp.uc.pairtest.ShardedTicketService;
+import uk.gov.dwp.uc.pairtest.ShowingPartitioner;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Purchase throughput of {@link ShardedTicketService} as the shard count grows, with every core
+ * submitting purchases across {@link #SHOWINGS} showings. Each invocation submits a burst of purchases,
+ * waits for them and hands the seats back, so the showings never sell out. Throughput should rise
+ * close to linearly with shards until they outnumber the cores. Run with
+ * {@code mvn -B -Pjmh verify -Djmh.args="ShardedTicketServiceBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@Threads(Threads.MAX)
+public class ShardedTicketServiceBenchmark {
+    private static final int SHOWINGS = 64;
+    private static final int BURST = 32;
+    private static final TicketPaymentService NO_OP_PAYMENT = (accountId, totalAmountToPay) -> { };
+    private static final SeatReservationService NO_OP_RESERVATION = (accountId, totalSeatsToAllocate) -> { };
+    private static final TicketTypeRequest TWO_ADULTS = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    private ShardedTicketService shardedService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TicketServiceImpl ticketService = new TicketServiceImpl(NO_OP_PAYMENT, NO_OP_RESERVATION, new DefaultConfigurationLoader());
+        shardedService = new ShardedTicketService(ticketService, shards, ShowingPartitioner.hashing(), 1 << 16);
+        for (long showing = 1; showing <= SHOWINGS; showing++) {
+            shardedService.addShowing(showing, 30, 40).join();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shardedService.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void purchaseBurst() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] showings = new long[BURST];
+        @SuppressWarnings("unchecked")
+        CompletableFuture<PurchaseResult>[] purchases = (CompletableFuture<PurchaseResult>[]) new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            showings[i] = 1 + random.nextInt(SHOWINGS);
+            purchases[i] = shardedService.purchaseTickets(showings[i], 1L, TWO_ADULTS);
+        }
+        CompletableFuture<?>[] releases = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            releases[i] = shardedService.releaseSeats(showings[i], purchases[i].join().getSeatNumbers());
+        }
+        CompletableFuture.allOf(releases).join();
+    }
+}
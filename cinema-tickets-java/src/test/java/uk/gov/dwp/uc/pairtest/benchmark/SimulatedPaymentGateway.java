@@ -0,0 +1,49 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import thirdparty.paymentgateway.BatchTicketPaymentService;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stand-in payment gateway where every call, single or batch, costs a fixed round trip over one
+ * connection, so calls are served one at a time. Per-call overhead dominates, as with the real gateway.
+ */
+public class SimulatedPaymentGateway implements BatchTicketPaymentService {
+    private final long callLatencyNanos;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicLong payments = new AtomicLong();
+
+    public SimulatedPaymentGateway(long callLatency, TimeUnit unit) {
+        this.callLatencyNanos = unit.toNanos(callLatency);
+    }
+
+    @Override
+    public synchronized void makePayment(long accountId, int totalAmountToPay) {
+        roundTrip(1);
+    }
+
+    @Override
+    public synchronized void makePayments(long[] accountIds, int[] totalAmountsToPay) {
+        roundTrip(accountIds.length);
+    }
+
+    private void roundTrip(int paymentCount) {
+        calls.incrementAndGet();
+        payments.addAndGet(paymentCount);
+        long deadline = System.nanoTime() + callLatencyNanos;
+        for (long remaining = callLatencyNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    public int calls() {
+        return calls.get();
+    }
+
+    public long payments() {
+        return payments.get();
+    }
+}
@@ -0,0 +1,98 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseRejection;
+import uk.gov.dwp.uc.pairtest.pricing.PricingRules;
+import uk.gov.dwp.uc.pairtest.pricing.TicketCombinations;
+
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating and pricing ticket counts with the original branches and arithmetic ({@code branching})
+ * against one {@link TicketCombinations} index and two table reads ({@code lookup}). The counts are
+ * random, about one in five invalid, so the branches are not perfectly predicted.
+ * Run with {@code mvn -B -Pjmh verify -Djmh.args="TicketCombinationBenchmark"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class TicketCombinationBenchmark {
+    private static final int ORDERS = 1024;
+    private static final int MAX_TICKETS = 25;
+
+    private final int[] adults = new int[ORDERS];
+    private final int[] children = new int[ORDERS];
+    private final int[] infants = new int[ORDERS];
+    private PricingRules rules;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("pricing.peak.hours", "17-22");
+        properties.setProperty("pricing.peak.percent", "20");
+        properties.setProperty("pricing.group.min.tickets", "10");
+        properties.setProperty("pricing.group.discount.percent", "10");
+        rules = PricingRules.compile(25, 15, 0, properties);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < ORDERS; i++) {
+            adults[i] = random.nextInt(10) == 0 ? 0 : random.nextInt(1, 12);
+            children[i] = random.nextInt(0, 10);
+            infants[i] = random.nextInt(0, 6);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public long branching() {
+        long total = 0;
+        for (int i = 0; i < ORDERS; i++) {
+            int a = adults[i];
+            int c = children[i];
+            int n = infants[i];
+            if (check(a, c, n) == null) {
+                total += rules.totalPrice(a, c, n, i % PricingRules.TIME_BUCKETS, PricingRules.NO_PROMO) + a + c;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public long lookup() {
+        long total = 0;
+        for (int i = 0; i < ORDERS; i++) {
+            int combination = TicketCombinations.indexOf(adults[i], children[i], infants[i]);
+            if (TicketCombinations.rejection(combination) == null) {
+                total += rules.combinationPrice(combination, i % PricingRules.TIME_BUCKETS, PricingRules.NO_PROMO) + TicketCombinations.seats(combination);
+            }
+        }
+        return total;
+    }
+
+    // The rules as TicketServiceImpl applied them before the combination table
+    private static PurchaseRejection check(int adults, int children, int infants) {
+        int totalTickets = adults + children + infants;
+        if (totalTickets == 0 || totalTickets > MAX_TICKETS) {
+            return PurchaseRejection.INVALID_TOTAL;
+        }
+        if (adults == 0) {
+            return PurchaseRejection.ADULT_REQUIRED;
+        }
+        return null;
+    }
+}
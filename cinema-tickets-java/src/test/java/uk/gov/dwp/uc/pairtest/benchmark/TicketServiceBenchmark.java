@@ -0,0 +1,104 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.DefaultConfigurationLoader;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline throughput and allocation rate of {@link TicketServiceImpl#purchaseTickets}.
+ * Run with {@code mvn -B -Pjmh verify}; the gc profiler is enabled by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class TicketServiceBenchmark {
+
+    // No-op gateways so only the purchase logic itself is measured
+    private static final TicketPaymentService NO_OP_PAYMENT = (accountId, totalAmountToPay) -> { };
+    private static final SeatReservationService NO_OP_RESERVATION = (accountId, totalSeatsToAllocate) -> { };
+
+    private TicketServiceImpl ticketService;
+
+    @Setup
+    public void setUp() {
+        ticketService = new TicketServiceImpl(NO_OP_PAYMENT, NO_OP_RESERVATION, new DefaultConfigurationLoader());
+    }
+
+    @Benchmark
+    public void singleAdult() {
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+    }
+
+    @Benchmark
+    public void maximumTickets() {
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 25));
+    }
+
+    @Benchmark
+    public void adultChildInfant() {
+        ticketService.purchaseTickets(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+                new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2),
+                new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1));
+    }
+
+    @Benchmark
+    public void rejectChildWithoutAdult(Blackhole blackhole) {
+        try {
+            ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2));
+        } catch (InvalidPurchaseException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void rejectTooManyTickets(Blackhole blackhole) {
+        try {
+            ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 26));
+        } catch (InvalidPurchaseException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void rejectInvalidAccount(Blackhole blackhole) {
+        try {
+            ticketService.purchaseTickets(0L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        } catch (InvalidPurchaseException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void primitiveAdultChildInfant() {
+        ticketService.purchaseTickets(1L, 2, 2, 1);
+    }
+
+    @Benchmark
+    public void primitiveRejectChildWithoutAdult(Blackhole blackhole) {
+        try {
+            ticketService.purchaseTickets(1L, 0, 2, 0);
+        } catch (InvalidPurchaseException e) {
+            blackhole.consume(e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.metrics.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator for {@link TicketService}. Requests are scheduled at a fixed offered rate
+ * regardless of how quickly earlier ones complete, either evenly spaced or as a Poisson process, and
+ * handed to a pool of worker threads. Each request's latency is measured from the time it was
+ * scheduled to start, so time spent queued behind a slow system counts against it; measuring from
+ * the actual start would hide exactly the stalls a load test is for (coordinated omission).
+ * <p>
+ * Requests scheduled during the warm-up are run but not measured. Requests still queued or running
+ * when the run gives up waiting are recorded with the latency they had reached by then, and reported
+ * as unfinished.
+ */
+public class LoadGenerator {
+    private final double ratePerSecond;
+    private final boolean poissonArrivals;
+    private final Duration warmup;
+    private final Duration duration;
+    private final int workerThreads;
+    private final TicketMix mix;
+    private final int accounts;
+    private final long seed;
+
+    public LoadGenerator(double ratePerSecond, boolean poissonArrivals, Duration warmup, Duration duration,
+                         int workerThreads, TicketMix mix, int accounts, long seed) {
+        if (!(ratePerSecond > 0) || workerThreads <= 0 || accounts <= 0) {
+            throw new IllegalArgumentException("Rate, worker threads and accounts must be positive");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.poissonArrivals = poissonArrivals;
+        this.warmup = Objects.requireNonNull(warmup, "Warm-up must not be null");
+        this.duration = Objects.requireNonNull(duration, "Duration must not be null");
+        this.workerThreads = workerThreads;
+        this.mix = Objects.requireNonNull(mix, "TicketMix must not be null");
+        this.accounts = accounts;
+        this.seed = seed;
+    }
+
+    public LoadReport run(TicketService service) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "load-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder succeeded = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder scheduledMeasured = new LongAdder();
+        AtomicLong lastCompletion = new AtomicLong();
+        // Measured requests not yet recorded; whoever removes one, its worker or the cutoff, records it
+        Set<ScheduledRequest> outstanding = ConcurrentHashMap.newKeySet();
+        SplittableRandom random = new SplittableRandom(seed);
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        double scheduled = start;
+        while (scheduled < end) {
+            long intendedStart = (long) scheduled;
+            for (long wait = intendedStart - System.nanoTime(); wait > 0; wait = intendedStart - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = intendedStart >= measureFrom;
+            long accountId = 1 + random.nextInt(accounts);
+            TicketTypeRequest[] requests = mix.next(random);
+            ScheduledRequest request = new ScheduledRequest(intendedStart) {
+                @Override
+                public void run() {
+                    LongAdder outcome;
+                    try {
+                        service.purchaseTickets(accountId, requests);
+                        outcome = succeeded;
+                    } catch (InvalidPurchaseException e) {
+                        outcome = rejected;
+                    } catch (RuntimeException e) {
+                        outcome = failed;
+                    }
+                    if (outstanding.remove(this)) {
+                        long completed = System.nanoTime();
+                        latency.record(completed - intendedStart);
+                        outcome.increment();
+                        lastCompletion.accumulateAndGet(completed, Math::max);
+                    }
+                }
+            };
+            if (measured) {
+                scheduledMeasured.increment();
+                outstanding.add(request);
+            }
+            workers.execute(request);
+            scheduled += poissonArrivals ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+        }
+        workers.shutdown();
+        // Give queued requests as long again as the run itself to finish
+        workers.awaitTermination(Math.max(1, duration.toMillis()), TimeUnit.MILLISECONDS);
+        // Requests still queued or running waited at least until now; leaving them out would flatter the latency
+        long stopped = System.nanoTime();
+        for (ScheduledRequest request : outstanding) {
+            if (outstanding.remove(request)) {
+                latency.record(stopped - request.intendedStart);
+            }
+        }
+        workers.shutdownNow();
+
+        long completed = succeeded.sum() + rejected.sum() + failed.sum();
+        long window = Math.max(end, lastCompletion.get()) - measureFrom;
+        double throughput = completed / (window / (double) TimeUnit.SECONDS.toNanos(1));
+        return new LoadReport(ratePerSecond, throughput, succeeded.sum(), rejected.sum(), failed.sum(),
+                scheduledMeasured.sum() - completed, latency.snapshot());
+    }
+
+    // A request with the time it was meant to start, kept until it completes or the run gives up on it
+    private abstract static class ScheduledRequest implements Runnable {
+        private final long intendedStart;
+
+        private ScheduledRequest(long intendedStart) {
+            this.intendedStart = intendedStart;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import uk.gov.dwp.uc.pairtest.metrics.LatencySnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+// Outcome of a measured load run; latencies are from each request's scheduled start, not its actual one
+public class LoadReport {
+    private final double offeredRate;
+    private final double throughput;
+    private final long succeeded;
+    private final long rejected;
+    private final long failed;
+    private final long unfinished;
+    private final LatencySnapshot latency;
+
+    LoadReport(double offeredRate, double throughput, long succeeded, long rejected, long failed, long unfinished, LatencySnapshot latency) {
+        this.offeredRate = offeredRate;
+        this.throughput = throughput;
+        this.succeeded = succeeded;
+        this.rejected = rejected;
+        this.failed = failed;
+        this.unfinished = unfinished;
+        this.latency = latency;
+    }
+
+    public double getOfferedRate() {
+        return offeredRate;
+    }
+
+    // Completed requests per second over the measured window
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    // Turned away with InvalidPurchaseException
+    public long getRejected() {
+        return rejected;
+    }
+
+    // Failed with any other exception, e.g. an injected gateway failure
+    public long getFailed() {
+        return failed;
+    }
+
+    // Scheduled requests still running or never started when the harness stopped waiting
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    public LatencySnapshot getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("offered %.0f/s, throughput %.0f/s, succeeded %d, rejected %d, failed %d, unfinished %d%n"
+                        + "latency p50 %s, p99 %s, p99.9 %s, max %s",
+                offeredRate, throughput, succeeded, rejected, failed, unfinished,
+                millis(latency.getP50()), millis(latency.getP99()), millis(latency.getP999()), millis(latency.getMax()));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,138 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import uk.gov.dwp.uc.pairtest.AdmissionControlledTicketService;
+import uk.gov.dwp.uc.pairtest.DefaultConfigurationLoader;
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.admission.AdmissionController;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command-line entry point for load and soak tests; run with
+ * {@code mvn -B -Ploadtest verify -Dload.args="--rate 500 --duration 60s --slo-p99 20ms"}.
+ * Prints a {@link LoadReport} and exits with status 1 when a latency objective is missed or any
+ * measured request did not finish, so a regression fails the build. Options, with defaults:
+ * <pre>
+ *   --target direct|admission   service under test (direct)
+ *   --rate 200                  offered requests per second
+ *   --arrivals poisson|uniform  arrival process (poisson)
+ *   --warmup 5s --duration 30s
+ *   --threads 64                worker threads issuing requests
+ *   --accounts 10000            account ids drawn uniformly from 1..n
+ *   --mix ADULT=1..4,CHILD=0..3,INFANT=0..1
+ *   --payment-latency 2ms --payment-jitter 1ms --payment-failure 0
+ *   --reservation-latency 1ms --reservation-jitter 0ms --reservation-failure 0
+ *   --slo-p50, --slo-p99, --slo-p999   latency objectives, unchecked unless given
+ *   --seed 42
+ * </pre>
+ */
+public final class LoadTestMain {
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = parse(args);
+        StandInGateway payment = new StandInGateway(duration(options, "payment-latency", "2ms"),
+                duration(options, "payment-jitter", "1ms"), Double.parseDouble(options.getOrDefault("payment-failure", "0")));
+        StandInGateway reservation = new StandInGateway(duration(options, "reservation-latency", "1ms"),
+                duration(options, "reservation-jitter", "0ms"), Double.parseDouble(options.getOrDefault("reservation-failure", "0")));
+        TicketService service = target(options.getOrDefault("target", "direct"), new TicketServiceImpl(payment, reservation, new DefaultConfigurationLoader()));
+
+        LoadGenerator generator = new LoadGenerator(
+                Double.parseDouble(options.getOrDefault("rate", "200")),
+                !"uniform".equals(options.getOrDefault("arrivals", "poisson")),
+                duration(options, "warmup", "5s"),
+                duration(options, "duration", "30s"),
+                Integer.parseInt(options.getOrDefault("threads", "64")),
+                TicketMix.parse(options.getOrDefault("mix", "ADULT=1..4,CHILD=0..3,INFANT=0..1")),
+                Integer.parseInt(options.getOrDefault("accounts", "10000")),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+        LoadReport report = generator.run(service);
+        System.out.println(report);
+
+        boolean met = meets(options, "slo-p50", report.getLatency().getP50())
+                & meets(options, "slo-p99", report.getLatency().getP99())
+                & meets(options, "slo-p999", report.getLatency().getP999())
+                & finished(report);
+        if (!met) {
+            System.exit(1);
+        }
+    }
+
+    private static TicketService target(String name, TicketServiceImpl ticketService) {
+        switch (name) {
+            case "direct":
+                return ticketService;
+            case "admission":
+                return new AdmissionControlledTicketService(ticketService, new AdmissionController(5, 10, 10_000, 1_000, 1 << 16), PurchaseMetrics.NOOP);
+            default:
+                throw new IllegalArgumentException("Unknown target: " + name);
+        }
+    }
+
+    // Requests that never finished have no real latency, so the objectives above cannot vouch for them
+    private static boolean finished(LoadReport report) {
+        if (report.getUnfinished() > 0) {
+            System.out.printf("FAILED: %d requests did not finish%n", report.getUnfinished());
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean meets(Map<String, String> options, String objective, long latencyNanos) {
+        if (!options.containsKey(objective)) {
+            return true;
+        }
+        long limit = duration(options, objective, null).toNanos();
+        if (latencyNanos > limit) {
+            System.out.printf("FAILED %s: %.3fms > %.3fms%n", objective, latencyNanos / 1e6, limit / 1e6);
+            return false;
+        }
+        return true;
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value pairs but got: " + String.join(" ", args));
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    // Durations are written as a number and a unit: 500us, 20ms, 5s or 2m
+    static Duration duration(Map<String, String> options, String name, String defaultValue) {
+        String value = options.getOrDefault(name, defaultValue).trim();
+        int unitStart = 0;
+        while (unitStart < value.length() && (Character.isDigit(value.charAt(unitStart)) || value.charAt(unitStart) == '.')) {
+            unitStart++;
+        }
+        double amount = Double.parseDouble(value.substring(0, unitStart));
+        TimeUnit unit;
+        switch (value.substring(unitStart)) {
+            case "us":
+                unit = TimeUnit.MICROSECONDS;
+                break;
+            case "ms":
+                unit = TimeUnit.MILLISECONDS;
+                break;
+            case "s":
+                unit = TimeUnit.SECONDS;
+                break;
+            case "m":
+                unit = TimeUnit.MINUTES;
+                break;
+            default:
+                throw new IllegalArgumentException("Expected a duration such as 20ms for --" + name + " but got: " + value);
+        }
+        return Duration.ofNanos((long) (amount * unit.toNanos(1)));
+    }
+}
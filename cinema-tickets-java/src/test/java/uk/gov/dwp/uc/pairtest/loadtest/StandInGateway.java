@@ -0,0 +1,67 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Payment or seat-reservation gateway for load tests. Each call takes the base latency plus a random
+ * jitter of up to {@code jitter}, and fails with the given probability. Calls run concurrently, as
+ * against a pooled gateway client. {@link #stallFor} simulates a gateway pause: the next call, and
+ * every call made while it lasts, waits until the pause is over.
+ */
+public class StandInGateway implements TicketPaymentService, SeatReservationService {
+    private final long baseLatencyNanos;
+    private final long jitterNanos;
+    private final double failureRate;
+    private final AtomicLong stalledUntil = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong pendingStallNanos = new AtomicLong();
+
+    public StandInGateway(Duration baseLatency, Duration jitter, double failureRate) {
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("Failure rate must be between 0 and 1");
+        }
+        this.baseLatencyNanos = baseLatency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        this.failureRate = failureRate;
+    }
+
+    public static StandInGateway instant() {
+        return new StandInGateway(Duration.ZERO, Duration.ZERO, 0);
+    }
+
+    // The pause starts with the next call, so it lands inside the load run rather than before it
+    public void stallFor(Duration pause) {
+        pendingStallNanos.set(pause.toNanos());
+    }
+
+    @Override
+    public void makePayment(long accountId, int totalAmountToPay) {
+        call();
+    }
+
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        call();
+    }
+
+    private void call() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.nanoTime();
+        long pause = pendingStallNanos.get();
+        if (pause > 0 && pendingStallNanos.compareAndSet(pause, 0)) {
+            stalledUntil.set(now + pause);
+        }
+        long deadline = Math.max(now, stalledUntil.get()) + baseLatencyNanos + (jitterNanos > 0 ? random.nextLong(jitterNanos) : 0);
+        for (long remaining = deadline - now; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            throw new IllegalStateException("Injected gateway failure");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Distribution of ticket counts per purchase: each {@link TicketTypeRequest.Type} gets a count drawn
+ * uniformly from its own inclusive range, written as {@code ADULT=1..4,CHILD=0..3,INFANT=0..1}. Types
+ * left out are never bought. A range that allows zero adults alongside children deliberately yields
+ * some invalid orders, as real traffic does.
+ */
+public final class TicketMix {
+    private static final TicketTypeRequest.Type[] TYPES = TicketTypeRequest.Type.values();
+    private final int[] min = new int[TYPES.length];
+    private final int[] max = new int[TYPES.length];
+
+    private TicketMix() {
+    }
+
+    public static TicketMix parse(String spec) {
+        TicketMix mix = new TicketMix();
+        for (String part : spec.split(",")) {
+            String[] typeAndRange = part.trim().split("=");
+            String[] range = typeAndRange.length == 2 ? typeAndRange[1].split("\\.\\.") : new String[0];
+            if (range.length != 2) {
+                throw new IllegalArgumentException("Expected TYPE=min..max but got: " + part);
+            }
+            int type = TicketTypeRequest.Type.valueOf(typeAndRange[0].trim().toUpperCase()).ordinal();
+            mix.min[type] = Integer.parseInt(range[0].trim());
+            mix.max[type] = Integer.parseInt(range[1].trim());
+            if (mix.min[type] < 0 || mix.max[type] < mix.min[type]) {
+                throw new IllegalArgumentException("Invalid range for " + typeAndRange[0] + ": " + typeAndRange[1]);
+            }
+        }
+        return mix;
+    }
+
+    // One request per type with a non-zero count
+    public TicketTypeRequest[] next(SplittableRandom random) {
+        List<TicketTypeRequest> requests = new ArrayList<>(TYPES.length);
+        for (TicketTypeRequest.Type type : TYPES) {
+            int count = min[type.ordinal()] + random.nextInt(max[type.ordinal()] - min[type.ordinal()] + 1);
+            if (count > 0) {
+                requests.add(new TicketTypeRequest(type, count));
+            }
+        }
+        return requests.toArray(new TicketTypeRequest[0]);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder spec = new StringBuilder();
+        for (TicketTypeRequest.Type type : TYPES) {
+            if (max[type.ordinal()] > 0) {
+                spec.append(spec.length() == 0 ? "" : ",").append(type).append('=').append(min[type.ordinal()]).append("..").append(max[type.ordinal()]);
+            }
+        }
+        return spec.toString();
+    }
+}